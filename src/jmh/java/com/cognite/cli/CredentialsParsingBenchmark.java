@@ -0,0 +1,46 @@
+package com.cognite.cli;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing the credentials file, which every invocation of the CLI does before authenticating.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CredentialsParsingBenchmark {
+
+    private Path credentialsFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        credentialsFile = Files.createTempFile("jmh-credentials", ".json");
+        Files.writeString(credentialsFile, """
+                {
+                    "cdfHost" : "https://api.cognitedata.com",
+                    "cdfProject" : "my-project",
+                    "clientId" : "6f1d8c2e-0b7a-4c55-9a1e-3f2b7d9c4e10",
+                    "clientSecret" : "a-client-secret-of-typical-length-0123456789",
+                    "aadTenantId" : "0b1c2d3e-4f50-6172-8394-a5b6c7d8e9f0"
+                }
+                """);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Files.delete(credentialsFile);
+    }
+
+    @Benchmark
+    public JsonNode parseCredentialsFile() throws Exception {
+        return CogClientMixin.parseCredentialsFile(credentialsFile);
+    }
+}
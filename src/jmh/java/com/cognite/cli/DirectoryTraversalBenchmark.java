@@ -0,0 +1,66 @@
+package com.cognite.cli;
+
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+import picocli.CommandLine;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures the recursive traversal of the input directory, {@link FileUpload#walkInputPath}, over trees of empty
+ * files with 100 files per directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DirectoryTraversalBenchmark {
+    private static final int FILES_PER_DIRECTORY = 100;
+
+    @Param({"1000", "100000"})
+    public int fileCount;
+
+    private Path tempDir;
+    private FileUpload fileUpload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        tempDir = Files.createTempDirectory("jmh-traversal");
+        for (int i = 0; i < fileCount; i++) {
+            Path directory = tempDir.resolve("dir-" + i / FILES_PER_DIRECTORY);
+            if (i % FILES_PER_DIRECTORY == 0) {
+                Files.createDirectories(directory);
+            }
+            Files.createFile(directory.resolve("file-" + i + ".bin"));
+        }
+
+        // Keep the per-walk info message out of the measurement
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(FileUpload.class))
+                .setLevel(ch.qos.logback.classic.Level.WARN);
+        fileUpload = new FileUpload();
+        new CommandLine(fileUpload).parseArgs("--recursive", "--source=benchmark", tempDir.toString());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        try (Stream<Path> paths = Files.walk(tempDir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public int walkInputPath() throws Exception {
+        LinkedBlockingQueue<FileEntry> queue = new LinkedBlockingQueue<>();
+        fileUpload.walkInputPath(queue);
+        return queue.size();
+    }
+}
@@ -0,0 +1,55 @@
+package com.cognite.cli;
+
+import com.cognite.client.dto.FileContainer;
+import org.openjdk.jmh.annotations.*;
+import picocli.CommandLine;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link FileUpload#buildFileContainer(FileEntry)} for different file sizes. The binary is referenced by
+ * URI and streamed at upload time, so the cost should not depend on the file size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileContainerBenchmark {
+
+    @Param({"1024", "1048576", "104857600"})
+    public long fileSize;
+
+    private Path tempDir;
+    private FileUpload fileUpload;
+    private FileEntry fileEntry;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        tempDir = Files.createTempDirectory("jmh-file-container");
+        Path file = tempDir.resolve("file.bin");
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(fileSize);
+        }
+
+        fileUpload = new FileUpload();
+        new CommandLine(fileUpload).parseArgs("--source=benchmark", tempDir.toString());
+        fileEntry = FileEntry.of(tempDir, file, Files.readAttributes(file, BasicFileAttributes.class));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Files.delete(fileEntry.path());
+        Files.delete(tempDir);
+    }
+
+    @Benchmark
+    public FileContainer buildFileContainer() throws Exception {
+        return fileUpload.buildFileContainer(fileEntry);
+    }
+}
@@ -0,0 +1,59 @@
+package com.cognite.cli;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading the id files of {@code files delete --id-file} and {@code --ext-id-file}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdParsingBenchmark {
+
+    @Param({"1000000"})
+    public int idCount;
+
+    private Path idFile;
+    private Path externalIdFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        idFile = Files.createTempFile("jmh-ids", ".csv");
+        externalIdFile = Files.createTempFile("jmh-ext-ids", ".csv");
+        try (BufferedWriter ids = Files.newBufferedWriter(idFile);
+             BufferedWriter externalIds = Files.newBufferedWriter(externalIdFile)) {
+            ids.write("id,name\n");
+            externalIds.write("externalId,name\n");
+            for (int i = 0; i < idCount; i++) {
+                ids.write(String.valueOf(1_000_000_000_000L + (i * 7919L) % idCount));
+                ids.write(",file\n");
+                externalIds.write("prefix/dir/file-" + i + ".bin,file\n");
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Files.delete(idFile);
+        Files.delete(externalIdFile);
+    }
+
+    @Benchmark
+    public long[] readIds() throws Exception {
+        return IdFileReader.readIds(idFile);
+    }
+
+    @Benchmark
+    public void readExternalIds(Blackhole blackhole) throws Exception {
+        IdFileReader.readExternalIds(externalIdFile, blackhole::consume);
+    }
+}
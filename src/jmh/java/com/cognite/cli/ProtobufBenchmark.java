@@ -0,0 +1,55 @@
+package com.cognite.cli;
+
+import com.cognite.client.dto.FileMetadata;
+import com.cognite.client.dto.Item;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the construction of the protobuf DTOs the CLI builds per file: the upload metadata and the delete items.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProtobufBenchmark {
+
+    private long nextId = 0;
+
+    @Benchmark
+    public FileMetadata fileMetadata() {
+        return FileMetadata.newBuilder()
+                .setExternalId("prefix/dir/file-" + nextId++ + ".bin")
+                .setName("file.bin")
+                .setDirectory("/dir")
+                .setSource("benchmark")
+                .setDataSetId(123L)
+                .putMetadata("sha256", "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08")
+                .build();
+    }
+
+    @Benchmark
+    public Item itemById() {
+        return Item.newBuilder().setId(nextId++).build();
+    }
+
+    @Benchmark
+    public Item itemByExternalId() {
+        return Item.newBuilder().setExternalId("file-" + nextId++).build();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<Item> deleteBatchById() {
+        List<Item> batch = new ArrayList<>(1000);
+        for (int i = 0; i < 1000; i++) {
+            batch.add(Item.newBuilder().setId(nextId++).build());
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,118 @@
+package com.cognite.cli;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A concurrency limit that adapts to the responses from the server using additive increase, multiplicative decrease
+ * (AIMD).
+ *
+ * The limit grows by one after a full window of successful requests (one window is {@code limit} requests). It is
+ * halved when a request fails, for example due to throttling (429) or server errors (5xx), or when the latency
+ * of a request is more than twice the best recent latency. The limit stays between 1 and the configured maximum.
+ *
+ * The best recent latency is the minimum over the current and the previous window of {@value #LATENCY_WINDOW_SAMPLES}
+ * successful requests. A single unusually fast response, or a server that has become slower for good, therefore only
+ * affects the baseline for up to two windows, instead of throttling the limit for the rest of the run.
+ *
+ * Waiting requests block on a {@link ReentrantLock} condition rather than a monitor, so a blocked virtual thread does
+ * not pin its carrier thread.
+ */
+class AimdLimiter {
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final int LATENCY_WINDOW_SAMPLES = 100;
+
+    private final int maxLimit;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition completed = lock.newCondition();
+    private int limit;
+    private int inFlight = 0;
+    private int successesInWindow = 0;
+    private long minLatencyNanos = Long.MAX_VALUE;
+    private long previousMinLatencyNanos = Long.MAX_VALUE;
+    private int latencySamples = 0;
+
+    /**
+     * Creates a limiter.
+     *
+     * @param initialLimit The initial concurrency limit.
+     * @param maxLimit The maximum concurrency limit.
+     */
+    AimdLimiter(int initialLimit, int maxLimit) {
+        this.maxLimit = Math.max(1, maxLimit);
+        this.limit = Math.min(this.maxLimit, Math.max(1, initialLimit));
+    }
+
+    /*
+    Waits until a request can be started within the current limit.
+     */
+    void acquire() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (inFlight >= limit) {
+                completed.await();
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+    Registers a successful request and its latency.
+     */
+    void onSuccess(long latencyNanos) {
+        lock.lock();
+        try {
+            inFlight--;
+            minLatencyNanos = Math.min(minLatencyNanos, latencyNanos);
+            long baselineNanos = Math.min(minLatencyNanos, previousMinLatencyNanos);
+            if (++latencySamples >= LATENCY_WINDOW_SAMPLES) {
+                previousMinLatencyNanos = minLatencyNanos;
+                minLatencyNanos = Long.MAX_VALUE;
+                latencySamples = 0;
+            }
+
+            if (latencyNanos > baselineNanos * LATENCY_TOLERANCE) {
+                decrease();
+            } else if (++successesInWindow >= limit) {
+                limit = Math.min(maxLimit, limit + 1);
+                successesInWindow = 0;
+            }
+            completed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+    Registers a failed request. Failures are treated as a sign of overload.
+     */
+    void onFailure() {
+        lock.lock();
+        try {
+            inFlight--;
+            decrease();
+            completed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+    Halves the limit. Called with the lock held.
+     */
+    private void decrease() {
+        limit = Math.max(1, limit / 2);
+        successesInWindow = 0;
+    }
+}
@@ -0,0 +1,183 @@
+package com.cognite.cli;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reads the entries of a zip or tar archive, so they can be uploaded without extracting the archive to disk.
+ *
+ * Zip archives are read in the physical order of their entries, and tar archives, optionally gzip compressed, as a
+ * single stream. Each regular file entry is handed to an {@link EntryHandler} together with a stream of its content,
+ * one entry at a time. The handler decides whether to buffer the content or stream it on, so the memory used per
+ * entry is bounded by the handler.
+ *
+ * The entry paths in the archive become the relative paths of the files. Entries with absolute paths are read
+ * relative to the archive root, and entries with {@code ..} segments are skipped.
+ */
+final class ArchiveReader {
+    private static Logger LOG = LoggerFactory.getLogger(ArchiveReader.class);
+
+    private static final List<String> ZIP_EXTENSIONS = List.of(".zip");
+    private static final List<String> TAR_EXTENSIONS = List.of(".tar");
+    private static final List<String> TAR_GZIP_EXTENSIONS = List.of(".tar.gz", ".tgz");
+
+    private final Path archiveFile;
+    private final boolean recursive;
+    private long entryCounter = 0;
+    private long skippedCounter = 0;
+
+    /**
+     * Handles one archive entry.
+     */
+    @FunctionalInterface
+    interface EntryHandler {
+        /**
+         * @param entry The entry, with the path below the archive path and without content.
+         * @param content The entry content. Read at most {@code entry.size()} bytes, and do not close it.
+         */
+        void accept(FileEntry entry, InputStream content) throws Exception;
+    }
+
+    /**
+     * Creates a reader.
+     *
+     * @param archiveFile The archive: {@code .zip}, {@code .tar}, {@code .tar.gz} or {@code .tgz}.
+     * @param recursive Whether to read the entries in sub-directories of the archive, like a recursive directory walk.
+     */
+    ArchiveReader(Path archiveFile, boolean recursive) {
+        this.archiveFile = archiveFile;
+        this.recursive = recursive;
+    }
+
+    /*
+    Returns true if the file name has one of the supported archive extensions.
+     */
+    static boolean isArchive(Path file) {
+        String fileName = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return hasExtension(fileName, ZIP_EXTENSIONS)
+                || hasExtension(fileName, TAR_EXTENSIONS)
+                || hasExtension(fileName, TAR_GZIP_EXTENSIONS);
+    }
+
+    long getEntryCount() {
+        return entryCounter;
+    }
+
+    long getSkippedCount() {
+        return skippedCounter;
+    }
+
+    /*
+    Reads the archive and passes each regular file entry to the handler.
+     */
+    void read(EntryHandler handler) throws Exception {
+        String fileName = archiveFile.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (hasExtension(fileName, ZIP_EXTENSIONS)) {
+            readZip(handler);
+        } else {
+            readTar(handler, hasExtension(fileName, TAR_GZIP_EXTENSIONS));
+        }
+    }
+
+    private void readZip(EntryHandler handler) throws Exception {
+        try (ZipFile zipFile = ZipFile.builder().setPath(archiveFile).get()) {
+            Enumeration<ZipArchiveEntry> entries = zipFile.getEntriesInPhysicalOrder();
+            while (entries.hasMoreElements()) {
+                ZipArchiveEntry zipEntry = entries.nextElement();
+                if (zipEntry.isDirectory() || zipEntry.isUnixSymlink()) {
+                    continue;
+                }
+                if (!zipFile.canReadEntryData(zipEntry)) {
+                    LOG.warn("Skipping {} in {}. The entry is encrypted or uses an unsupported compression method.",
+                            zipEntry.getName(), archiveFile);
+                    skippedCounter++;
+                    continue;
+                }
+
+                FileEntry entry = toFileEntry(zipEntry.getName(), zipEntry.getSize(), zipEntry.getTime());
+                if (null != entry) {
+                    try (InputStream content = zipFile.getInputStream(zipEntry)) {
+                        handler.accept(entry, content);
+                    }
+                }
+            }
+        }
+    }
+
+    private void readTar(EntryHandler handler, boolean gzip) throws Exception {
+        InputStream fileStream = new BufferedInputStream(Files.newInputStream(archiveFile));
+        try (TarArchiveInputStream tarStream = new TarArchiveInputStream(gzip
+                ? new GzipCompressorInputStream(fileStream, true)
+                : fileStream)) {
+            TarArchiveEntry tarEntry;
+            while (null != (tarEntry = tarStream.getNextEntry())) {
+                if (!tarEntry.isFile()) {
+                    continue;
+                }
+                if (!tarStream.canReadEntryData(tarEntry)) {
+                    LOG.warn("Skipping {} in {}. The entry data cannot be read.", tarEntry.getName(), archiveFile);
+                    skippedCounter++;
+                    continue;
+                }
+
+                FileEntry entry = toFileEntry(tarEntry.getName(), tarEntry.getSize(),
+                        tarEntry.getLastModifiedTime().toMillis());
+                if (null != entry) {
+                    handler.accept(entry, tarStream);
+                }
+            }
+        }
+    }
+
+    /*
+    Builds the file entry of an archive entry. Returns null if the entry should be skipped.
+     */
+    private FileEntry toFileEntry(String entryName, long size, long lastModified) throws IOException {
+        List<String> segments = new ArrayList<>();
+        for (String segment : entryName.replace('\\', '/').split("/")) {
+            if (segment.equals("..")) {
+                LOG.warn("Skipping {} in {}. The entry path points outside the archive.", entryName, archiveFile);
+                skippedCounter++;
+                return null;
+            }
+            if (!segment.isEmpty() && !segment.equals(".")) {
+                segments.add(segment);
+            }
+        }
+        if (segments.isEmpty()) {
+            return null;
+        }
+        if (!recursive && segments.size() > 1) {
+            LOG.warn("Skipping {} in {}. The entry is in a sub-directory, and --recursive is not set.",
+                    entryName, archiveFile);
+            skippedCounter++;
+            return null;
+        }
+        if (size < 0) {
+            throw new IOException(String.format("The size of %s in %s is unknown.", entryName, archiveFile));
+        }
+
+        entryCounter++;
+        String relativePath = String.join("/", segments);
+        return new FileEntry(archiveFile.resolve(relativePath), relativePath, size, lastModified);
+    }
+
+    private static boolean hasExtension(String fileName, List<String> extensions) {
+        return extensions.stream().anyMatch(fileName::endsWith);
+    }
+}
@@ -0,0 +1,96 @@
+package com.cognite.cli;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+import picocli.CommandLine.Spec;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+@Command(name = "batch",
+        description = "Runs the commands in a script file, one command per line, in a single process. "
+                + "The JVM start-up and authentication are shared by all commands.")
+public class BatchCommand implements Callable<Integer> {
+    private static Logger LOG = LoggerFactory.getLogger(BatchCommand.class);
+
+    @Spec
+    private CommandSpec spec;
+
+    @Parameters(index = "0", description = "The script file. One command per line, for example "
+            + "'files upload /data/a'. Lines starting with # are comments. Use - to read from stdin.")
+    private String script;
+
+    @Option(names = "--continue-on-error", description = "Keep running the remaining commands when a command fails.",
+            defaultValue = "false")
+    private boolean continueOnError;
+
+    @Override
+    public Integer call() throws Exception {
+        // The writers of this command, so the output of a batch run via serve goes to the client
+        PrintWriter out = spec.commandLine().getOut();
+        PrintWriter err = spec.commandLine().getErr();
+        int commandCounter = 0;
+        int failedCounter = 0;
+        Instant startInstant = Instant.now();
+
+        try (BufferedReader reader = script.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Path.of(script), StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while (null != (line = reader.readLine())) {
+                lineNumber++;
+                List<String> args;
+                try {
+                    args = CommandScript.tokenize(line);
+                } catch (IllegalArgumentException e) {
+                    args = null;
+                }
+                if (null != args && args.isEmpty()) {
+                    continue;
+                }
+
+                commandCounter++;
+                int exitCode;
+                if (null == args) {
+                    // A line that cannot be parsed is a failed command
+                    String message = String.format("Error: Line %d has an unterminated quote.", lineNumber);
+                    LOG.error(message);
+                    err.println(message);
+                    err.flush();
+                    exitCode = 2;
+                } else {
+                    Instant commandStartInstant = Instant.now();
+                    LOG.info("Running line {}: {}", lineNumber, line.strip());
+                    exitCode = CdfCli.execute(args, out, err);
+                    LOG.info("Line {} completed with exit code {}. Duration: {}",
+                            lineNumber, exitCode, Duration.between(commandStartInstant, Instant.now()));
+                }
+
+                if (exitCode != 0) {
+                    failedCounter++;
+                    if (!continueOnError) {
+                        LOG.error("Line {} failed. Stopping the batch.", lineNumber);
+                        return exitCode;
+                    }
+                }
+            }
+        }
+
+        LOG.info("Batch completed. {} commands run, {} failed. Duration: {}",
+                commandCounter, failedCounter, Duration.between(startInstant, Instant.now()));
+        return failedCounter > 0 ? 1 : 0;
+    }
+}
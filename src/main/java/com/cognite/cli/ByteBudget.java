@@ -0,0 +1,80 @@
+package com.cognite.cli;
+
+import io.prometheus.client.Gauge;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the number of file binary bytes in flight, that is, queued for upload or being uploaded.
+ *
+ * Producers call {@link #acquire(long)} before handing a file to the upload stage and block while the budget is
+ * exhausted. The upload stage calls {@link #release(long)} when the file has been processed. A single item larger
+ * than the full budget is admitted when nothing else is in flight, so oversized files cannot stall the pipeline.
+ *
+ * Producers wait on a {@link ReentrantLock} condition rather than a monitor, so a blocked virtual thread does not pin
+ * its carrier thread.
+ */
+class ByteBudget {
+    private final long maxBytes;
+    private final Gauge inFlightGauge;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private long inFlightBytes = 0;
+
+    /**
+     * Creates a budget.
+     *
+     * @param maxBytes The maximum number of bytes in flight. A value {@code <= 0} disables the limit.
+     * @param inFlightGauge The gauge reporting the number of bytes in flight.
+     */
+    ByteBudget(long maxBytes, Gauge inFlightGauge) {
+        this.maxBytes = maxBytes;
+        this.inFlightGauge = inFlightGauge;
+    }
+
+    /*
+    Reserves bytes from the budget, blocking until enough bytes are available.
+     */
+    void acquire(long bytes) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            if (maxBytes > 0) {
+                while (inFlightBytes > 0 && inFlightBytes + bytes > maxBytes) {
+                    released.await();
+                }
+            }
+            inFlightBytes += bytes;
+            inFlightGauge.set(inFlightBytes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+    Returns bytes to the budget and wakes up blocked producers.
+     */
+    void release(long bytes) {
+        lock.lock();
+        try {
+            inFlightBytes -= bytes;
+            inFlightGauge.set(inFlightBytes);
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getInFlightBytes() {
+        lock.lock();
+        try {
+            return inFlightBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getMaxBytes() {
+        return maxBytes;
+    }
+}
@@ -0,0 +1,42 @@
+package com.cognite.cli;
+
+import picocli.CommandLine.ITypeConverter;
+import picocli.CommandLine.TypeConversionException;
+
+import java.util.Locale;
+
+/**
+ * Converts a byte size option value to a number of bytes. Accepts a plain number of bytes or a number with a
+ * binary unit suffix: {@code k}, {@code m}, {@code g} or {@code t}, optionally followed by {@code b}
+ * (for example {@code 512m} or {@code 2GB}).
+ */
+class ByteSizeConverter implements ITypeConverter<Long> {
+
+    @Override
+    public Long convert(String value) {
+        String normalized = value.strip().toLowerCase(Locale.ROOT);
+        if (normalized.endsWith("b")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+
+        long multiplier = 1L;
+        if (!normalized.isEmpty()) {
+            switch (normalized.charAt(normalized.length() - 1)) {
+                case 'k' -> multiplier = 1L << 10;
+                case 'm' -> multiplier = 1L << 20;
+                case 'g' -> multiplier = 1L << 30;
+                case 't' -> multiplier = 1L << 40;
+                default -> multiplier = 1L;
+            }
+            if (multiplier > 1L) {
+                normalized = normalized.substring(0, normalized.length() - 1);
+            }
+        }
+
+        try {
+            return Math.multiplyExact(Long.parseLong(normalized.strip()), multiplier);
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new TypeConversionException(String.format("Invalid byte size: %s", value));
+        }
+    }
+}
@@ -5,11 +5,13 @@ import org.slf4j.LoggerFactory;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
 
+import java.io.PrintWriter;
+import java.util.List;
 import java.util.concurrent.Callable;
 
 @Command(name = "cdf",
         description = "The CDF CLI entry point.",
-        subcommands = {FileParent.class})
+        subcommands = {FileParent.class, ServeCommand.class, BatchCommand.class})
 public class CdfCli implements Callable<Integer> {
     private static Logger LOG = LoggerFactory.getLogger(CdfCli.class);
 
@@ -18,6 +20,23 @@ public class CdfCli implements Callable<Integer> {
         return 1;
     }
 
+    /*
+    Runs a single command in this process and returns its exit code. The command output is written to the given
+    writers. Used by the serve and batch modes to run many commands in one warm JVM.
+     */
+    static int execute(List<String> args, PrintWriter out, PrintWriter err) {
+        List<String> commandArgs = !args.isEmpty() && args.get(0).equals("cdf") ? args.subList(1, args.size()) : args;
+        if (!commandArgs.isEmpty() && commandArgs.get(0).equals(ServeCommand.NAME)) {
+            err.println("The serve command cannot be run from within serve or batch mode.");
+            return 2;
+        }
+
+        return new CommandLine(new CdfCli())
+                .setOut(out)
+                .setErr(err)
+                .execute(commandArgs.toArray(new String[0]));
+    }
+
     /*
     The main entry point to the code. Activates the CLI, parses the input arguments and starts the execution method.
      */
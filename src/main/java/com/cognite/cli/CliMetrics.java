@@ -0,0 +1,137 @@
+package com.cognite.cli;
+
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import io.prometheus.client.Histogram;
+
+/**
+ * Holds the metrics collected by the CLI.
+ *
+ * The metrics are recorded on the hot path of the upload and delete stages. Labelled metrics are resolved to their
+ * children once, here, so recording a value is a lock-free add without allocations. The metrics are pushed to a
+ * Prometheus Pushgateway by {@link MetricsPusher}.
+ */
+final class CliMetrics {
+    static final CollectorRegistry registry = new CollectorRegistry();
+
+    private static final double[] LATENCY_BUCKETS = {0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 120};
+
+    static final Gauge uploadInFlightBytes = Gauge.build()
+            .name("cdf_cli_upload_inflight_bytes")
+            .help("File binary bytes held in memory while queued for upload or being uploaded.")
+            .register(registry);
+
+    static final Gauge uploadInFlightBytesLimit = Gauge.build()
+            .name("cdf_cli_upload_inflight_bytes_limit")
+            .help("The configured limit on file binary bytes in flight. 0 means no limit.")
+            .register(registry);
+
+    static final Counter uploadFilesQueued = Counter.build()
+            .name("cdf_cli_upload_files_queued_total")
+            .help("Files read and queued for upload.")
+            .register(registry);
+
+    static final Counter uploadBytesQueued = Counter.build()
+            .name("cdf_cli_upload_bytes_queued_total")
+            .help("File binary bytes read and queued for upload.")
+            .register(registry);
+
+    static final Counter uploadFiles = Counter.build()
+            .name("cdf_cli_upload_files_total")
+            .help("Files uploaded to CDF.")
+            .register(registry);
+
+    static final Counter uploadBytes = Counter.build()
+            .name("cdf_cli_upload_bytes_total")
+            .help("File binary bytes uploaded to CDF.")
+            .register(registry);
+
+    static final Counter uploadFailedFiles = Counter.build()
+            .name("cdf_cli_upload_failed_files_total")
+            .help("Files that could not be read or uploaded.")
+            .register(registry);
+
+    static final Gauge uploadQueueDepth = Gauge.build()
+            .name("cdf_cli_upload_queue_depth")
+            .help("Items waiting in the upload pipeline queues. Stage read: files waiting to be read. "
+                    + "Stage upload: file containers waiting to be uploaded.")
+            .labelNames("stage")
+            .register(registry);
+
+    static final Histogram uploadBatchLatency = Histogram.build()
+            .name("cdf_cli_upload_batch_latency_seconds")
+            .help("The duration of upload batch requests to CDF.")
+            .buckets(LATENCY_BUCKETS)
+            .register(registry);
+
+    static final Counter deleteFiles = Counter.build()
+            .name("cdf_cli_delete_files_total")
+            .help("Files deleted from CDF.")
+            .register(registry);
+
+    static final Counter deleteFailedFiles = Counter.build()
+            .name("cdf_cli_delete_failed_files_total")
+            .help("Files that could not be deleted after all retries.")
+            .register(registry);
+
+    static final Histogram deleteBatchLatency = Histogram.build()
+            .name("cdf_cli_delete_batch_latency_seconds")
+            .help("The duration of delete batch requests to CDF, including failed requests.")
+            .buckets(LATENCY_BUCKETS)
+            .register(registry);
+
+    static final Gauge deleteConcurrencyLimit = Gauge.build()
+            .name("cdf_cli_delete_concurrency_limit")
+            .help("The current adaptive limit on concurrent delete batches.")
+            .register(registry);
+
+    static final Counter downloadFiles = Counter.build()
+            .name("cdf_cli_download_files_total")
+            .help("Files downloaded from CDF.")
+            .register(registry);
+
+    static final Counter downloadBytes = Counter.build()
+            .name("cdf_cli_download_bytes_total")
+            .help("File binary bytes downloaded from CDF.")
+            .register(registry);
+
+    static final Counter downloadSkippedFiles = Counter.build()
+            .name("cdf_cli_download_skipped_files_total")
+            .help("Files not downloaded because a local file with the same size exists.")
+            .register(registry);
+
+    static final Counter downloadFailedFiles = Counter.build()
+            .name("cdf_cli_download_failed_files_total")
+            .help("Files that could not be downloaded after all retries.")
+            .register(registry);
+
+    private static final Counter requestRetries = Counter.build()
+            .name("cdf_cli_request_retries_total")
+            .help("Batch requests to CDF that were retried.")
+            .labelNames("command")
+            .register(registry);
+
+    private static final Counter requestErrors = Counter.build()
+            .name("cdf_cli_request_errors_total")
+            .help("Batch requests to CDF that failed.")
+            .labelNames("command")
+            .register(registry);
+
+    static final Counter.Child uploadErrors = requestErrors.labels("upload");
+    static final Counter.Child deleteErrors = requestErrors.labels("delete");
+    static final Counter.Child uploadRetries = requestRetries.labels("upload");
+    static final Counter.Child deleteRetries = requestRetries.labels("delete");
+    static final Counter.Child downloadErrors = requestErrors.labels("download");
+    static final Counter.Child downloadRetries = requestRetries.labels("download");
+
+    private CliMetrics() {
+    }
+
+    /*
+    Returns the seconds elapsed since the given System.nanoTime() value, for recording in a latency histogram.
+     */
+    static double secondsSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1e9;
+    }
+}
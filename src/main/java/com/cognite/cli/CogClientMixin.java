@@ -11,8 +11,11 @@ import org.slf4j.LoggerFactory;
 import picocli.CommandLine.Option;
 
 import java.io.IOException;
+import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Shared utility class offering access to the {@link CogniteClient} and helper methods.
@@ -21,10 +24,14 @@ public class CogClientMixin {
     private static Logger LOG = LoggerFactory.getLogger(CogClientMixin.class);
     
     // global data structures
-    private static CogniteClient cogniteClient;
-    private static JsonNode credentialsFileRootNode;
+    // Clients are shared by all commands in the process, keyed by their credentials. This lets the serve and batch
+    // modes reuse a warm, authenticated client across commands.
+    private static final Map<String, CogniteClient> cogniteClients = new HashMap<>();
     private static ObjectMapper objectMapper = new ObjectMapper();
 
+    private CogniteClient cogniteClient;
+    private JsonNode credentialsFileRootNode;
+
     @Option(names = {"-p", "--cdf-project"}, description = "The CDF project to authenticate to.", arity = "0..1",
             interactive = true, echo = true)
     private String cdfProject;
@@ -42,9 +49,21 @@ public class CogClientMixin {
     @Option(names = "--tenant-id", description = "The AAD tenant ID to authenticate towards.", arity = "0..1", interactive = true)
     private String aadTenantId;
 
+    @Option(names = "--token-url", description = "The OAuth token endpoint. Defaults to the Azure AD endpoint of the "
+            + "tenant.", arity = "0..1", interactive = true, echo = true)
+    private String tokenUrl;
+
     @Option(names = "--credentials-file", description = "A file hosting CDF credentials.", arity = "0..1", interactive = true)
     private Path credentialsFile;
 
+    @Option(names = "--token-cache", description = "Cache the access token on disk and reuse it across invocations "
+            + "until it expires.", defaultValue = "false")
+    private boolean tokenCache;
+
+    @Option(names = "--token-cache-dir", description = "The directory hosting the token cache.", arity = "0..1",
+            interactive = true, echo = true, defaultValue = "${sys:user.home}/.cdf-cli/token-cache")
+    private Path tokenCacheDirectory;
+
     public void verify() {
         // Check all mandatory parameters
         // If a credentials file is specified, then we don't need to check the individual parameters
@@ -58,7 +77,7 @@ public class CogClientMixin {
             clientId = System.console().readPassword("Enter value for --client-id: ").toString();
         if (null == clientSecret && null != System.console())
             clientSecret = System.console().readPassword("Enter value for --client-secret: ").toString();
-        if (null == aadTenantId && null != System.console())
+        if (null == aadTenantId && null == tokenUrl && null != System.console())
             aadTenantId = System.console().readPassword("Enter value for --tenant-id: ").toString();
     }
 
@@ -66,26 +85,61 @@ public class CogClientMixin {
     Return the Cognite client.
 
     If the client isn't instantiated, it will be created according to the configured authentication options. After the
-    initial instantiation, the client will be cached and reused.
+    initial instantiation, the client will be cached and reused by all commands with the same credentials.
      */
     public CogniteClient getCogniteClient() throws Exception {
         if (null == cogniteClient) {
             // The client has not been instantiated yet
             verify();
 
-            ClientConfig clientConfig = ClientConfig.create()
-                    .withUpsertMode(UpsertMode.REPLACE);
+            String clientKey = String.join("\n", getCdfHost(), getCdfProject(), getClientId(), getClientSecret(),
+                    getTokenUrl().toString(), String.valueOf(tokenCache));
+            synchronized (cogniteClients) {
+                cogniteClient = cogniteClients.get(clientKey);
+                if (null == cogniteClient) {
+                    StageEvent setupEvent = StageTracer.begin(StageTracer.Stage.CLIENT_SETUP);
+                    cogniteClient = buildCogniteClient();
+                    StageTracer.end(setupEvent);
+                    cogniteClients.put(clientKey, cogniteClient);
+                }
+            }
+        }
 
-            cogniteClient = CogniteClient.ofClientCredentials(
+        return cogniteClient;
+    }
+
+    /*
+    Returns the base URL of the CDF project API, for requests that are not covered by the SDK.
+     */
+    String getProjectUrl() throws Exception {
+        String host = getCdfHost().endsWith("/") ? getCdfHost().substring(0, getCdfHost().length() - 1) : getCdfHost();
+        return host + "/api/v1/projects/" + getCdfProject();
+    }
+
+    private CogniteClient buildCogniteClient() throws Exception {
+        ClientConfig clientConfig = ClientConfig.create()
+                .withUpsertMode(UpsertMode.REPLACE);
+
+        if (tokenCache) {
+            // Fetch and cache the token ourselves so it can be reused by later invocations of the CLI
+            return CogniteClient.ofToken(new TokenCache(
+                            tokenCacheDirectory,
+                            getTokenUrl(),
                             getClientId(),
                             getClientSecret(),
-                            TokenUrl.generateAzureAdURL(getAadTenantId()))
+                            getCdfHost()))
                     .withProject(getCdfProject())
                     .withBaseUrl(getCdfHost())
                     .withClientConfig(clientConfig);
         }
 
-        return cogniteClient;
+        return CogniteClient.ofClientCredentials(
+                        getClientId(),
+                        getClientSecret(),
+                        getTokenUrl())
+                .withProject(getCdfProject())
+                .withBaseUrl(getCdfHost())
+                .withClientConfig(clientConfig);
     }
 
     private String getCdfHost() throws Exception {
@@ -96,7 +150,7 @@ public class CogClientMixin {
         }
     }
 
-    private String getCdfProject() throws Exception {
+    String getCdfProject() throws Exception {
         if (null != cdfProject) {
             return cdfProject;
         } else {
@@ -128,6 +182,16 @@ public class CogClientMixin {
         }
     }
 
+    private URL getTokenUrl() throws Exception {
+        if (null != tokenUrl) {
+            return new URL(tokenUrl);
+        } else if (null != credentialsFile && getCredentialsFileRootNode().path("tokenUrl").isTextual()) {
+            return new URL(getCredentialsFileRootNode().path("tokenUrl").textValue());
+        } else {
+            return TokenUrl.generateAzureAdURL(getAadTenantId());
+        }
+    }
+
     private JsonNode getCredentialsFileRootNode() throws Exception {
         if (null == credentialsFileRootNode) {
             if (null == credentialsFile) {
@@ -135,10 +199,17 @@ public class CogClientMixin {
                 LOG.error(message);
                 throw new IOException(message);
             }
-            String jsonFileString = Files.readString(credentialsFile);
-            credentialsFileRootNode = objectMapper.readTree(jsonFileString);
+            credentialsFileRootNode = parseCredentialsFile(credentialsFile);
         }
 
         return credentialsFileRootNode;
     }
+
+    /*
+    Parses a credentials file into a JSON tree.
+     */
+    static JsonNode parseCredentialsFile(Path credentialsFile) throws IOException {
+        String jsonFileString = Files.readString(credentialsFile);
+        return objectMapper.readTree(jsonFileString);
+    }
 }
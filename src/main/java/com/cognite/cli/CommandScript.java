@@ -0,0 +1,70 @@
+package com.cognite.cli;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a command line into arguments, the way a POSIX shell would for simple commands.
+ *
+ * Arguments are separated by whitespace. Single quotes keep the enclosed text as is, double quotes keep whitespace
+ * but allow backslash escapes, and a backslash outside quotes escapes the next character. A line starting with
+ * {@code #} is a comment.
+ */
+final class CommandScript {
+
+    private CommandScript() {
+    }
+
+    /*
+    Returns the arguments of the command line. Blank lines and comments give an empty list.
+     */
+    static List<String> tokenize(String line) {
+        List<String> args = new ArrayList<>();
+        if (line.isBlank() || line.strip().startsWith("#")) {
+            return args;
+        }
+
+        StringBuilder current = new StringBuilder();
+        boolean inArgument = false;
+        char quote = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quote == '\'') {
+                if (c == '\'') {
+                    quote = 0;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '\\' && i + 1 < line.length() && (quote == 0 || "\"\\$`".indexOf(line.charAt(i + 1)) >= 0)) {
+                current.append(line.charAt(++i));
+                inArgument = true;
+            } else if (quote == '"') {
+                if (c == '"') {
+                    quote = 0;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+                inArgument = true;
+            } else if (Character.isWhitespace(c)) {
+                if (inArgument) {
+                    args.add(current.toString());
+                    current.setLength(0);
+                    inArgument = false;
+                }
+            } else {
+                current.append(c);
+                inArgument = true;
+            }
+        }
+
+        if (quote != 0) {
+            throw new IllegalArgumentException("Unterminated quote in command: " + line);
+        }
+        if (inArgument) {
+            args.add(current.toString());
+        }
+        return args;
+    }
+}
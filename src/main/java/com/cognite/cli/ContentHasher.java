@@ -0,0 +1,69 @@
+package com.cognite.cli;
+
+import com.google.protobuf.ByteString;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Computes content hashes of files. Each thread reuses its own read buffer, so hashing runs in parallel without
+ * allocating per file.
+ */
+final class ContentHasher {
+    static final String ALGORITHM = "SHA-256";
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private static final ThreadLocal<ByteBuffer> buffer =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    private ContentHasher() {
+    }
+
+    /*
+    Returns the SHA-256 digest of the file content.
+     */
+    static byte[] hash(Path path) throws IOException {
+        MessageDigest digest = newDigest();
+        ByteBuffer readBuffer = buffer.get();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            readBuffer.clear();
+            while (channel.read(readBuffer) != -1) {
+                readBuffer.flip();
+                digest.update(readBuffer);
+                readBuffer.clear();
+            }
+        }
+        return digest.digest();
+    }
+
+    /*
+    Returns the SHA-256 digest of content held in memory.
+     */
+    static byte[] hash(ByteString content) {
+        MessageDigest digest = newDigest();
+        digest.update(content.asReadOnlyByteBuffer());
+        return digest.digest();
+    }
+
+    /*
+    Returns the digest as a lower case hex string.
+     */
+    static String toHex(byte[] hash) {
+        return HexFormat.of().formatHex(hash);
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // All Java platforms are required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
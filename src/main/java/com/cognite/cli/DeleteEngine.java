@@ -0,0 +1,226 @@
+package com.cognite.cli;
+
+import com.cognite.client.CogniteClient;
+import com.cognite.client.dto.Item;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Deletes files from CDF in concurrent, API-sized batches.
+ *
+ * Producers submit items as they become available, for example one page of list results at a time. The engine
+ * regroups them into batches of at most {@code batchSize} items and runs them on up to {@code maxWorkers} workers.
+ * The number of concurrent batches adapts to the responses from CDF via an {@link AimdLimiter}: it backs off on
+ * throttling, errors and rising latency, and grows again while requests succeed. {@link #submit(List)} blocks while
+ * the limit is reached, so memory usage stays constant regardless of how many files are deleted.
+ *
+ * Failed batches are retried with exponential backoff and full jitter. The outcome per item is recorded in a
+ * {@link DeleteReport}.
+ */
+class DeleteEngine implements AutoCloseable {
+    private static Logger LOG = LoggerFactory.getLogger(DeleteEngine.class);
+
+    private static final long BASE_BACKOFF_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    private final CogniteClient cogniteClient;
+    private final DeleteReport deleteReport;
+    private final AimdLimiter limiter;
+    private final ExecutorService executorService;
+    private final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor();
+
+    private int batchSize = 1000;
+    private int maxRetries = 3;
+
+    private final List<Item> pendingItems = new ArrayList<>();
+    private final ReentrantLock batchLock = new ReentrantLock();
+    private final Condition batchCompleted = batchLock.newCondition();
+    private int outstandingBatches = 0;
+
+    DeleteEngine(CogniteClient cogniteClient, int maxWorkers, DeleteReport deleteReport) {
+        this.cogniteClient = cogniteClient;
+        this.deleteReport = deleteReport;
+        int workers = Math.max(1, maxWorkers);
+        this.limiter = new AimdLimiter(Math.max(1, workers / 2), workers);
+        this.executorService = IoExecutors.newExecutor("delete");
+        CliMetrics.deleteConcurrencyLimit.set(limiter.getLimit());
+    }
+
+    DeleteEngine withBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+        return this;
+    }
+
+    DeleteEngine withMaxRetries(int maxRetries) {
+        this.maxRetries = Math.max(0, maxRetries);
+        return this;
+    }
+
+    /*
+    Submits items for deletion. Full batches are dispatched right away, blocking while the concurrency limit is reached.
+     */
+    void submit(List<Item> items) throws InterruptedException {
+        for (Item item : items) {
+            pendingItems.add(item);
+            if (pendingItems.size() >= batchSize) {
+                dispatchPending();
+            }
+        }
+    }
+
+    /*
+    Dispatches the remaining items and waits for all batches, including retries, to complete.
+     */
+    void awaitCompletion() throws InterruptedException {
+        if (!pendingItems.isEmpty()) {
+            dispatchPending();
+        }
+
+        batchLock.lockInterruptibly();
+        try {
+            while (outstandingBatches > 0) {
+                batchCompleted.await();
+            }
+        } finally {
+            batchLock.unlock();
+        }
+        LOG.debug("All delete batches completed. Final concurrency limit: {}", limiter.getLimit());
+    }
+
+    @Override
+    public void close() {
+        retryScheduler.shutdownNow();
+        executorService.shutdown();
+        try {
+            executorService.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            // Stop the remaining batches, and let the caller see the interrupt
+            executorService.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void dispatchPending() throws InterruptedException {
+        List<Item> batch = List.copyOf(pendingItems);
+        pendingItems.clear();
+        batchLock.lock();
+        try {
+            outstandingBatches++;
+        } finally {
+            batchLock.unlock();
+        }
+        dispatch(batch, 0);
+    }
+
+    private void dispatch(List<Item> batch, int attempt) throws InterruptedException {
+        StageEvent waitEvent = StageTracer.begin(StageTracer.Stage.DELETE_QUEUE_WAIT);
+        limiter.acquire();
+        StageTracer.end(waitEvent);
+        executorService.execute(() -> deleteBatch(batch, attempt));
+    }
+
+    /*
+    Deletes a batch. On failure, the batch is scheduled for a retry after a backoff, without occupying a worker.
+     */
+    private void deleteBatch(List<Item> batch, int attempt) {
+        long startNanos = System.nanoTime();
+        StageEvent deleteEvent = StageTracer.begin(StageTracer.Stage.DELETE);
+        List<Item> deleted;
+        try {
+            deleted = cogniteClient.files().delete(batch);
+        } catch (Exception e) {
+            StageTracer.end(deleteEvent, batch.size(), 0);
+            CliMetrics.deleteBatchLatency.observe(CliMetrics.secondsSince(startNanos));
+            CliMetrics.deleteErrors.inc();
+            limiter.onFailure();
+            CliMetrics.deleteConcurrencyLimit.set(limiter.getLimit());
+            if (attempt < maxRetries) {
+                CliMetrics.deleteRetries.inc();
+                long backoffMillis = ThreadLocalRandom.current()
+                        .nextLong(Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << attempt) + 1);
+                LOG.warn("Error when deleting a batch of {} files. Retrying in {} ms. Concurrency limit: {}. {}",
+                        batch.size(), backoffMillis, limiter.getLimit(), e.toString());
+                retryScheduler.schedule(() -> {
+                    try {
+                        dispatch(batch, attempt + 1);
+                    } catch (InterruptedException interruptedException) {
+                        Thread.currentThread().interrupt();
+                    }
+                }, backoffMillis, TimeUnit.MILLISECONDS);
+            } else {
+                LOG.warn("Error when deleting a batch of {} files. Giving up after {} attempts. {}",
+                        batch.size(), attempt + 1, e.toString());
+                CliMetrics.deleteFailedFiles.inc(batch.size());
+                record(() -> deleteReport.failed(batch, e));
+                completeBatch();
+            }
+            return;
+        }
+
+        long latencyNanos = System.nanoTime() - startNanos;
+        StageTracer.end(deleteEvent, batch.size(), 0);
+        CliMetrics.deleteBatchLatency.observe(latencyNanos / 1e9);
+        CliMetrics.deleteFiles.inc(deleted.size());
+        limiter.onSuccess(latencyNanos);
+        CliMetrics.deleteConcurrencyLimit.set(limiter.getLimit());
+        record(() -> {
+            deleteReport.deleted(deleted);
+            deleteReport.missing(findMissing(batch, deleted));
+        });
+        completeBatch();
+    }
+
+    private void completeBatch() {
+        batchLock.lock();
+        try {
+            outstandingBatches--;
+            batchCompleted.signalAll();
+        } finally {
+            batchLock.unlock();
+        }
+    }
+
+    /*
+    Returns the items in the batch that were not reported as deleted, i.e. the items that do not exist in CDF.
+     */
+    private static List<Item> findMissing(List<Item> batch, List<Item> deleted) {
+        if (deleted.size() >= batch.size()) {
+            return List.of();
+        }
+
+        Set<String> deletedKeys = new HashSet<>();
+        deleted.forEach(item -> deletedKeys.add(itemKey(item)));
+        return batch.stream()
+                .filter(item -> !deletedKeys.contains(itemKey(item)))
+                .toList();
+    }
+
+    private static String itemKey(Item item) {
+        return item.getIdTypeCase() == Item.IdTypeCase.EXTERNAL_ID ? "e:" + item.getExternalId() : "i:" + item.getId();
+    }
+
+    private static void record(ReportAction action) {
+        try {
+            action.run();
+        } catch (Exception e) {
+            LOG.warn("Error when writing the delete report: {}", e.toString());
+        }
+    }
+
+    @FunctionalInterface
+    private interface ReportAction {
+        void run() throws Exception;
+    }
+}
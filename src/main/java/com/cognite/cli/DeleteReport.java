@@ -0,0 +1,151 @@
+package com.cognite.cli;
+
+import com.cognite.client.dto.Item;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps track of the outcome of a delete run: which files were deleted, which did not exist and which could not be
+ * deleted.
+ *
+ * If a report file is configured, one JSON line per file is streamed to it, for example
+ * {@code {"status":"deleted","id":123}}. The report is never held in memory, so it scales to any number of files.
+ * Without a report file, the first {@value #MAX_LOGGED_FAILED_IDS} failed ids are kept, so they can be logged with the
+ * summary.
+ */
+class DeleteReport implements Closeable {
+    private static Logger LOG = LoggerFactory.getLogger(DeleteReport.class);
+
+    static final String DELETED = "deleted";
+    static final String MISSING = "missing";
+    static final String FAILED = "failed";
+
+    private static final int MAX_LOGGED_FAILED_IDS = 100;
+
+    private final JsonGenerator jsonGenerator;
+    private final List<String> failedIds = new ArrayList<>();
+    private long deletedCounter = 0;
+    private long missingCounter = 0;
+    private long failedCounter = 0;
+
+    /**
+     * Creates a report.
+     *
+     * @param reportFile The file to write the report to. If {@code null}, only the counts are kept.
+     */
+    DeleteReport(Path reportFile) throws IOException {
+        if (null == reportFile) {
+            jsonGenerator = null;
+        } else {
+            jsonGenerator = new JsonFactory().createGenerator(Files.newBufferedWriter(reportFile));
+            jsonGenerator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+        }
+    }
+
+    synchronized void deleted(List<Item> items) throws IOException {
+        deletedCounter += items.size();
+        write(DELETED, items, null);
+    }
+
+    synchronized void missing(List<Item> items) throws IOException {
+        missingCounter += items.size();
+        write(MISSING, items, null);
+    }
+
+    synchronized void failed(List<Item> items, Exception exception) throws IOException {
+        failedCounter += items.size();
+        if (null == jsonGenerator) {
+            for (int i = 0; i < items.size() && failedIds.size() < MAX_LOGGED_FAILED_IDS; i++) {
+                failedIds.add(itemId(items.get(i)));
+            }
+        }
+        write(FAILED, items, exception);
+    }
+
+    synchronized long getDeletedCount() {
+        return deletedCounter;
+    }
+
+    synchronized long getMissingCount() {
+        return missingCounter;
+    }
+
+    synchronized long getFailedCount() {
+        return failedCounter;
+    }
+
+    /*
+    Logs the counts. Lists the location of the report file for the individual ids, or the first failed ids if there is
+    no report file.
+     */
+    synchronized void logSummary(Path reportFile) {
+        LOG.info("Delete report: {} deleted, {} missing, {} failed.", deletedCounter, missingCounter, failedCounter);
+        if (null != reportFile) {
+            LOG.info("The deleted, missing and failed ids are listed in {}.", reportFile);
+        } else {
+            logFailedIds();
+            if (failedCounter > failedIds.size()) {
+                LOG.info("Use --report-file to list all the failed ids.");
+            }
+        }
+    }
+
+    /*
+    Logs the failed ids kept without a report file.
+     */
+    synchronized void logFailedIds() {
+        if (failedIds.isEmpty()) {
+            return;
+        }
+        if (failedCounter > failedIds.size()) {
+            LOG.warn("The first {} of {} ids that could not be deleted: {}.",
+                    failedIds.size(), failedCounter, String.join(", ", failedIds));
+        } else {
+            LOG.warn("The ids that could not be deleted: {}.", String.join(", ", failedIds));
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (null != jsonGenerator) {
+            jsonGenerator.close();
+        }
+    }
+
+    private void write(String status, List<Item> items, Exception exception) throws IOException {
+        if (null == jsonGenerator) {
+            return;
+        }
+
+        for (Item item : items) {
+            jsonGenerator.writeStartObject();
+            jsonGenerator.writeStringField("status", status);
+            if (item.getIdTypeCase() == Item.IdTypeCase.EXTERNAL_ID) {
+                jsonGenerator.writeStringField("externalId", item.getExternalId());
+            } else {
+                jsonGenerator.writeNumberField("id", item.getId());
+            }
+            if (null != exception) {
+                jsonGenerator.writeStringField("error", String.valueOf(exception.getMessage()));
+            }
+            jsonGenerator.writeEndObject();
+        }
+        jsonGenerator.flush();
+    }
+
+    private static String itemId(Item item) {
+        return item.getIdTypeCase() == Item.IdTypeCase.EXTERNAL_ID
+                ? "externalId " + item.getExternalId()
+                : "id " + item.getId();
+    }
+}
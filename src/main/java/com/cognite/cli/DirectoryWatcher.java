@@ -0,0 +1,234 @@
+package com.cognite.cli;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches a directory for new and modified files and hands them to the upload pipeline once they are completely
+ * written.
+ *
+ * The watcher uses the platform {@link WatchService} (inotify on Linux), so it is idle while nothing changes. A file
+ * is considered completely written when its size and last modified time have not changed for the settle time. Each
+ * new event for a pending file restarts its settle time, so a file being written is uploaded once, after the last
+ * write. Only the files waiting to settle are held in memory.
+ *
+ * If the platform drops events (overflow), the directory is rescanned. Files that are unchanged since the last upload
+ * are skipped by the upload journal, if configured.
+ */
+class DirectoryWatcher implements AutoCloseable {
+    private static Logger LOG = LoggerFactory.getLogger(DirectoryWatcher.class);
+
+    private final Path root;
+    private final boolean recursive;
+    private final long settleNanos;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+    private final Map<Path, PendingFile> pendingFiles = new HashMap<>();
+
+    /*
+    A file waiting to settle: the attributes when it was last seen and when it is due to be checked again.
+     */
+    private record PendingFile(long size, long lastModified, long settleDeadlineNanos) {}
+
+    /**
+     * Creates a watcher and starts watching for changes. Changes from this point on are picked up by
+     * {@link #run(BlockingQueue)}.
+     *
+     * @param root The directory to watch.
+     * @param recursive Whether to watch sub-directories, including sub-directories created later.
+     * @param settleTime How long a file must be unchanged before it is uploaded.
+     */
+    DirectoryWatcher(Path root, boolean recursive, Duration settleTime) throws IOException {
+        this.root = root;
+        this.recursive = recursive;
+        this.settleNanos = settleTime.toNanos();
+        this.watchService = root.getFileSystem().newWatchService();
+        registerDirectories(root);
+    }
+
+    /**
+     * Puts new and modified files on the queue as they settle. Runs until the thread is interrupted or the watcher is
+     * closed.
+     */
+    void run(BlockingQueue<FileEntry> queue) throws IOException, InterruptedException {
+        LOG.info("Watching {}{} for new and modified files.", root, recursive ? " recursively" : "");
+        try {
+            while (true) {
+                WatchKey key = pendingFiles.isEmpty()
+                        ? watchService.take()
+                        : watchService.poll(nanosToNextDeadline(), TimeUnit.NANOSECONDS);
+                while (null != key) {
+                    processEvents(key);
+                    key = watchService.poll();
+                }
+                submitSettledFiles(queue);
+            }
+        } catch (ClosedWatchServiceException e) {
+            LOG.info("Stopped watching {}.", root);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    private void processEvents(WatchKey key) throws IOException {
+        Path directory = watchedDirectories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                LOG.warn("Missed file events in {}. Rescanning the directory.", root);
+                scan(root);
+                continue;
+            }
+            if (null == directory) {
+                continue;
+            }
+
+            Path path = directory.resolve((Path) event.context());
+            if (Files.isDirectory(path)) {
+                if (recursive && event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                    // Files may have been created before the new directory was registered
+                    registerDirectories(path);
+                    scan(path);
+                }
+            } else {
+                markPending(path);
+            }
+        }
+
+        if (!key.reset()) {
+            watchedDirectories.remove(key);
+        }
+    }
+
+    /*
+    Hands the files that have been unchanged for the settle time to the pipeline. Files that changed since they were
+    last seen get a new settle time.
+     */
+    private void submitSettledFiles(BlockingQueue<FileEntry> queue) throws InterruptedException {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<Path, PendingFile>> iterator = pendingFiles.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, PendingFile> entry = iterator.next();
+            PendingFile pendingFile = entry.getValue();
+            if (pendingFile.settleDeadlineNanos() - now > 0) {
+                continue;
+            }
+
+            Path path = entry.getKey();
+            BasicFileAttributes attributes = readAttributes(path);
+            if (null == attributes || !attributes.isRegularFile()) {
+                iterator.remove();
+            } else if (attributes.size() != pendingFile.size()
+                    || attributes.lastModifiedTime().toMillis() != pendingFile.lastModified()) {
+                entry.setValue(new PendingFile(attributes.size(), attributes.lastModifiedTime().toMillis(),
+                        now + settleNanos));
+            } else {
+                iterator.remove();
+                LOG.debug("{} has settled. Adding it to the upload queue.", path);
+                queue.put(FileEntry.of(root, path, attributes));
+            }
+        }
+    }
+
+    private void markPending(Path path) {
+        BasicFileAttributes attributes = readAttributes(path);
+        if (null == attributes || !attributes.isRegularFile()) {
+            pendingFiles.remove(path);
+            return;
+        }
+
+        pendingFiles.put(path, new PendingFile(attributes.size(), attributes.lastModifiedTime().toMillis(),
+                System.nanoTime() + settleNanos));
+    }
+
+    private long nanosToNextDeadline() {
+        long now = System.nanoTime();
+        long next = Long.MAX_VALUE;
+        for (PendingFile pendingFile : pendingFiles.values()) {
+            next = Math.min(next, pendingFile.settleDeadlineNanos() - now);
+        }
+        return Math.max(0, next);
+    }
+
+    /*
+    Marks all regular files in the directory as pending. Walks sub-directories when watching recursively.
+     */
+    private void scan(Path directory) throws IOException {
+        Files.walkFileTree(directory, EnumSet.noneOf(FileVisitOption.class),
+                recursive ? Integer.MAX_VALUE : 1, new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                        if (attributes.isRegularFile()) {
+                            markPending(file);
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException exception) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+    }
+
+    private void registerDirectories(Path directory) throws IOException {
+        if (!recursive) {
+            register(directory);
+            return;
+        }
+
+        Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) throws IOException {
+                register(dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exception) {
+                LOG.warn("{} is not readable. Skipping. {}", file, exception.toString());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void register(Path directory) throws IOException {
+        WatchKey key = directory.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        watchedDirectories.put(key, directory);
+    }
+
+    private static BasicFileAttributes readAttributes(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            LOG.warn("Unable to read the attributes of {}. Skipping. {}", path, e.toString());
+            return null;
+        }
+    }
+}
@@ -2,28 +2,57 @@ package com.cognite.cli;
 
 import com.cognite.client.Request;
 import com.cognite.client.dto.*;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
 import picocli.CommandLine.Option;
+import picocli.CommandLine.Spec;
 
+import java.io.PrintWriter;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.OptionalLong;
 import java.util.concurrent.Callable;
+import java.util.function.Predicate;
+import java.util.stream.LongStream;
 
 @Command(name = "delete",
         description = "Deletes a set of files from Cognite Data Fusion")
 public class FileDelete implements Callable<Integer> {
     private static Logger LOG = LoggerFactory.getLogger(FileDelete.class);
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
     
     // global data structures
+    private long otherShardCounter = 0;
+    private long dryRunCounter = 0;
+
+    @Spec
+    private CommandSpec spec;
 
     @CommandLine.Mixin
     private CogClientMixin cogClientMixin;
 
+    @CommandLine.Mixin
+    private MetricsMixin metricsMixin;
+
+    @CommandLine.Mixin
+    private PerfReportMixin perfReportMixin;
+
+    @CommandLine.Mixin
+    private ShardMixin shardMixin;
+
+    @CommandLine.Mixin
+    private IndexMixin indexMixin;
+
     @Option(names = "--id", description = "The internal id of the files to delete.",
             arity = "0..1", interactive = true, echo = true)
     private long[] fileIds;
@@ -32,96 +61,312 @@ public class FileDelete implements Callable<Integer> {
             arity = "0..1", interactive = true, echo = true)
     private String[] fileExternalIds;
 
-    @Option(names = {"--filter"}, description = "A file filter expression in the format <key=value>. You can specify multiple filters",
+    @Option(names = "--id-file", description = "A file with the internal ids of the files to delete. One id per line, "
+            + "or a CSV file with the id in the first column.",
+            arity = "0..1", interactive = true, echo = true)
+    private Path fileIdFile;
+
+    @Option(names = "--ext-id-file", description = "A file with the external ids of the files to delete. One "
+            + "external id per line, or a CSV file with the external id in the first column.",
             arity = "0..1", interactive = true, echo = true)
-    private Map<String, Object> filter;
+    private Path fileExternalIdFile;
+
+    @CommandLine.Mixin
+    private FilterMixin filterMixin;
+
+    @Option(names = "--delete-threads", description = "The maximum number of delete batches to run concurrently. "
+            + "The concurrency adapts to throttling and latency within this limit.",
+            arity = "0..1", interactive = true, echo = true, defaultValue = "8")
+    private int deleteThreads;
+
+    @Option(names = "--delete-batch-size", description = "The number of files per delete request.",
+            arity = "0..1", interactive = true, echo = true, defaultValue = "1000")
+    private int deleteBatchSize;
 
-    @Option(names = {"--metadata-filter"}, description = "A file metadata filter expression in the format <key=value>. You can specify multiple filters",
+    @Option(names = "--delete-retries", description = "The number of times to retry a failed delete batch.",
+            arity = "0..1", interactive = true, echo = true, defaultValue = "3")
+    private int deleteRetries;
+
+    @Option(names = "--report-file", description = "A file to write the deleted, missing and failed ids to, "
+            + "one JSON object per line.",
             arity = "0..1", interactive = true, echo = true)
-    private Map<String, String> metadataFilter;
+    private Path reportFile;
+
+    @Option(names = "--dry-run", description = "Print the files matching the filters in the metadata index, one JSON "
+            + "object per line, without deleting them. Requires --index-file and a filter.")
+    private boolean dryRun;
 
     @Override
     public Integer call() throws Exception {
+        perfReportMixin.start();
+        try (MetricsPusher metricsPusher = metricsMixin.startPushing("delete")) {
+            int exitCode = delete();
+            if (exitCode == 0 && null != metricsPusher) {
+                metricsPusher.markSuccess();
+            }
+            return exitCode;
+        } finally {
+            perfReportMixin.finish();
+        }
+    }
+
+    /*
+    Deletes the files matching the ids and filters. Returns the exit code.
+     */
+    private int delete() throws Exception {
+        shardMixin.validate();
+
         // Check that we have some input specified
-        if (null == fileIds && null == fileExternalIds && null == filter && null == metadataFilter) {
+        if (null == fileIds && null == fileExternalIds && null == fileIdFile && null == fileExternalIdFile
+                && !filterMixin.isSpecified()) {
             LOG.info("No file (external) ids specified nor any filter. No files to delete.");
             return 0;
         }
+        if (dryRun && (!indexMixin.isEnabled() || !filterMixin.isSpecified() || null != fileIds
+                || null != fileExternalIds || null != fileIdFile || null != fileExternalIdFile)) {
+            String message = "Error: --dry-run evaluates the filters on the metadata index. It requires --index-file "
+                    + "and --filter or --metadata-filter, without (external) ids.";
+            LOG.error(message);
+            throw new Exception(message);
+        }
 
-        int totalDeleteCounter = 0;
+        DeleteReport deleteReport = new DeleteReport(reportFile);
+        try (deleteReport;
+             DeleteEngine deleteEngine = new DeleteEngine(cogClientMixin.getCogniteClient(), deleteThreads, deleteReport)
+                     .withBatchSize(deleteBatchSize)
+                     .withMaxRetries(deleteRetries)) {
+            if (null != fileIds && fileIds.length > 0) {
+                LOG.info("Start deleting files based on id...");
+                List<Item> deleteIdItems = Arrays.stream(fileIds)
+                        .mapToObj(id -> Item.newBuilder().setId(id).build())
+                        .toList();
 
-        if (null != fileIds && fileIds.length > 0) {
-            LOG.info("Start deleting files based on id...");
-            List<Item> deleteIdItems = Arrays.stream(fileIds)
-                    .mapToObj(id -> Item.newBuilder().setId(id).build())
-                    .toList();
+                submit(deleteEngine, inShard(deleteIdItems));
+                LOG.info("Submitted {} files for deletion based on ids: {}",
+                        fileIds.length,
+                        fileIds);
+            }
+
+            if (null != fileExternalIds && fileExternalIds.length > 0) {
+                LOG.info("Start deleting files based on external id...");
+                List<Item> deleteExtIdItems = Arrays.stream(fileExternalIds)
+                        .map(extId -> Item.newBuilder().setExternalId(extId).build())
+                        .toList();
+
+                submit(deleteEngine, inShard(deleteExtIdItems));
+                LOG.info("Submitted {} files for deletion based on external ids: {}",
+                        fileExternalIds.length,
+                        fileExternalIds);
+            }
+
+            if (null != fileIdFile) {
+                LOG.info("Start deleting files based on ids from {}...", fileIdFile);
+                StageEvent readEvent = StageTracer.begin(StageTracer.Stage.ID_FILE_READ);
+                long[] ids = IdFileReader.readIds(fileIdFile);
+                StageTracer.end(readEvent, ids.length, 0);
+                LOG.info("Read {} unique ids from {}.", ids.length, fileIdFile);
 
-            cogClientMixin.getCogniteClient()
-                    .files()
-                    .delete(deleteIdItems);
+                List<Item> batch = new ArrayList<>(deleteBatchSize);
+                for (long id : ids) {
+                    batch.add(Item.newBuilder().setId(id).build());
+                    if (batch.size() >= deleteBatchSize) {
+                        submit(deleteEngine, inShard(batch));
+                        batch = new ArrayList<>(deleteBatchSize);
+                    }
+                }
+                submit(deleteEngine, inShard(batch));
+                LOG.info("Submitted {} files for deletion based on ids from {}.", ids.length, fileIdFile);
+            }
 
-            totalDeleteCounter += fileIds.length;
-            LOG.info("Completed deleting {} files based on ids: {}",
-                    fileIds.length,
-                    fileIds);
+            if (null != fileExternalIdFile) {
+                LOG.info("Start deleting files based on external ids from {}...", fileExternalIdFile);
+                List<Item> batch = new ArrayList<>(deleteBatchSize);
+                long[] externalIdCounter = {0};
+                IdFileReader.readExternalIds(fileExternalIdFile, externalId -> {
+                    batch.add(Item.newBuilder().setExternalId(externalId).build());
+                    externalIdCounter[0]++;
+                    if (batch.size() >= deleteBatchSize) {
+                        submit(deleteEngine, inShard(batch));
+                        batch.clear();
+                    }
+                });
+                submit(deleteEngine, inShard(batch));
+                LOG.info("Submitted {} files for deletion based on external ids from {}.",
+                        externalIdCounter[0], fileExternalIdFile);
+            }
+
+            if (filterMixin.isSpecified()) {
+                LOG.info("Start deleting files based on filter...");
+                if (!indexMixin.isEnabled() || !deleteFromIndex(deleteEngine, deleteReport)) {
+                    deleteFromListing(deleteEngine);
+                }
+            }
+
+            deleteEngine.awaitCompletion();
         }
 
-        if (null != fileExternalIds && fileExternalIds.length > 0) {
-            LOG.info("Start deleting files based on external id...");
-            List<Item> deleteExtIdItems = Arrays.stream(fileExternalIds)
-                    .map(extId -> Item.newBuilder().setExternalId(extId).build())
+        return completeDelete(deleteReport);
+    }
+
+    /*
+    Lists the files matching the filters from CDF and submits them for deletion.
+     */
+    private void deleteFromListing(DeleteEngine deleteEngine) throws Exception {
+        Request request = filterMixin.buildRequest();
+        LOG.info("Matching files for request:\n {}", request.getRequestParameters());
+
+        // Stream the results page by page into the delete engine. Deletion starts as soon as the first page
+        // is listed, and only the pages in flight are held in memory.
+        long[] matchCounter = {0};
+        StageTracer.forEachPage(cogClientMixin.getCogniteClient().files().list(request), page -> {
+            List<Item> deleteIdItems = page.stream()
+                    .filter(fileMetadata -> isInShard(fileMetadata.hasExternalId()
+                            ? fileMetadata.getExternalId() : String.valueOf(fileMetadata.getId())))
+                    .map(fileMetadata -> Item.newBuilder().setId(fileMetadata.getId()).build())
                     .toList();
+            submit(deleteEngine, deleteIdItems);
+            matchCounter[0] += deleteIdItems.size();
+        });
+
+        LOG.info("Found {} files matching the filter{}. Submitted them for deletion.",
+                matchCounter[0],
+                shardMixin.isSharded() ? " in this shard" : "");
+    }
 
-            cogClientMixin.getCogniteClient()
-                    .files()
-                    .delete(deleteExtIdItems);
+    /*
+    Logs the outcome of the delete and writes the summary. Returns the exit code.
+     */
+    private int completeDelete(DeleteReport deleteReport) throws Exception {
+        if (dryRun) {
+            LOG.info("Dry run completed. {} files would be deleted.", dryRunCounter);
+            Map<String, Long> summaryCounts = new LinkedHashMap<>();
+            summaryCounts.put("wouldDelete", dryRunCounter);
+            summaryCounts.put("otherShards", otherShardCounter);
+            shardMixin.writeSummary("delete", 0, summaryCounts);
+            return 0;
+        }
 
-            totalDeleteCounter += fileExternalIds.length;
-            LOG.info("Completed deleting {} files based on external ids: {}",
-                    fileExternalIds.length,
-                    fileExternalIds);
+        deleteReport.logSummary(reportFile);
+        if (otherShardCounter > 0) {
+            LOG.info("{} files belong to other shards and were skipped.", otherShardCounter);
+        }
+        int exitCode = 0;
+        if (deleteReport.getFailedCount() > 0) {
+            LOG.error("File deletion completed with errors. {} files deleted, {} files could not be deleted.",
+                    deleteReport.getDeletedCount(),
+                    deleteReport.getFailedCount());
+            exitCode = 1;
+        } else {
+            LOG.info("File deletion completed. {} files deleted.", deleteReport.getDeletedCount());
         }
 
-        if (null != filter && filter.size() > 0 || null != metadataFilter && metadataFilter.size() > 0) {
-            LOG.info("Start deleting files based on filter...");
+        Map<String, Long> summaryCounts = new LinkedHashMap<>();
+        summaryCounts.put("deleted", deleteReport.getDeletedCount());
+        summaryCounts.put("missing", deleteReport.getMissingCount());
+        summaryCounts.put("failed", deleteReport.getFailedCount());
+        summaryCounts.put("otherShards", otherShardCounter);
+        shardMixin.writeSummary("delete", exitCode, summaryCounts);
+        return exitCode;
+    }
 
-            // Build the request to filter files
-            Request request = Request.create();
-            if (null != filter) {
-                for (Map.Entry<String, Object> entry : filter.entrySet()) {
-                    request = request.withFilterParameter(entry.getKey(), entry.getValue());
-                }
+    /*
+    Deletes the files matching the filters in the local index. Returns false if the filters cannot be evaluated on the
+    index, so the files have to be listed from CDF instead.
+
+    The deleted files are removed from the index. If some files could not be deleted, the index is left as it is, and
+    the next refresh detects the difference.
+     */
+    private boolean deleteFromIndex(DeleteEngine deleteEngine, DeleteReport deleteReport) throws Exception {
+        Predicate<FileMetadata> predicate;
+        try {
+            predicate = filterMixin.buildPredicate();
+        } catch (IllegalArgumentException e) {
+            if (dryRun) {
+                String message = String.format("Error: --dry-run cannot evaluate the filters on the metadata index. %s",
+                        e.getMessage());
+                LOG.error(message);
+                throw new Exception(message);
             }
+            LOG.warn("{} Listing the matching files from CDF instead.", e.getMessage());
+            return false;
+        }
 
-            if (null != metadataFilter) {
-                for (Map.Entry<String, String> entry : metadataFilter.entrySet()) {
-                    request = request.withFilterMetadataParameter(entry.getKey(), entry.getValue());
+        try (MetadataIndex index = indexMixin.open(cogClientMixin, OptionalLong.empty(), false)) {
+            // Matches are streamed into delete batches. Only their ids are kept, to remove them from the index after
+            // the delete has completed.
+            Predicate<FileMetadata> shardPredicate = predicate.and(fileMetadata -> isInShard(
+                    fileMetadata.hasExternalId() ? fileMetadata.getExternalId() : String.valueOf(fileMetadata.getId())));
+            List<Item> batch = new ArrayList<>(deleteBatchSize);
+            LongStream.Builder matchedIds = LongStream.builder();
+            long matchCounter = index.forEachMatch(shardPredicate, fileMetadata -> {
+                matchedIds.accept(fileMetadata.getId());
+                batch.add(Item.newBuilder().setId(fileMetadata.getId()).build());
+                if (batch.size() >= deleteBatchSize) {
+                    submit(deleteEngine, List.copyOf(batch));
+                    batch.clear();
                 }
+            });
+            if (!batch.isEmpty()) {
+                submit(deleteEngine, List.copyOf(batch));
             }
+            LOG.info("Submitted {} files matching the filter{} in the metadata index for deletion.",
+                    matchCounter,
+                    shardMixin.isSharded() ? " in this shard" : "");
 
-            LOG.info("Matching files for request:\n {}", request.getRequestParameters());
+            deleteEngine.awaitCompletion();
+            if (!dryRun && deleteReport.getFailedCount() == 0) {
+                index.remove(matchedIds.build().toArray());
+            }
+        }
+        return true;
+    }
 
-            List<FileMetadata> fileFilterResults = new ArrayList<>();
-            cogClientMixin.getCogniteClient().files()
-                    .list(request)
-                    .forEachRemaining(fileFilterResults::addAll);
-            LOG.info("Found {} files matching the filter.", fileFilterResults.size());
+    /*
+    Submits the items for deletion, or prints them with --dry-run. Dry runs only come from the metadata index.
+     */
+    private void submit(DeleteEngine deleteEngine, List<Item> items) throws InterruptedException {
+        if (!dryRun) {
+            deleteEngine.submit(items);
+            return;
+        }
 
-            // Convert the file filter results to items to prepare for delete operation
-            List<Item> deleteIdItems = fileFilterResults.stream()
-                    .map(fileMetadata -> Item.newBuilder().setId(fileMetadata.getId()).build())
-                    .toList();
+        PrintWriter out = spec.commandLine().getOut();
+        for (Item item : items) {
+            ObjectNode node = objectMapper.createObjectNode();
+            if (item.hasExternalId()) {
+                node.put("externalId", item.getExternalId());
+            } else {
+                node.put("id", item.getId());
+            }
+            out.println(node);
+        }
+        out.flush();
+        dryRunCounter += items.size();
+    }
 
-            cogClientMixin.getCogniteClient()
-                    .files()
-                    .delete(deleteIdItems);
+    /*
+    Returns the items that belong to this shard. Items are assigned to shards by their external id, or by their id
+    when they are given by id.
+     */
+    private List<Item> inShard(List<Item> items) {
+        if (!shardMixin.isSharded()) {
+            return items;
+        }
 
-            totalDeleteCounter += deleteIdItems.size();
-            LOG.info("Completed deleting {} files based on filter.",
-                    deleteIdItems.size());
+        List<Item> shardItems = new ArrayList<>(items.size());
+        for (Item item : items) {
+            if (isInShard(item.hasExternalId() ? item.getExternalId() : String.valueOf(item.getId()))) {
+                shardItems.add(item);
+            }
         }
+        return shardItems;
+    }
 
-        LOG.info("File deletion completed. {} files deleted.", totalDeleteCounter);
-        return 0;
+    private boolean isInShard(String key) {
+        if (shardMixin.includes(key)) {
+            return true;
+        }
+        otherShardCounter++;
+        return false;
     }
 }
@@ -0,0 +1,146 @@
+package com.cognite.cli;
+
+import com.cognite.client.Request;
+import com.cognite.client.dto.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+@Command(name = "download",
+        description = "Downloads a set of files from Cognite Data Fusion")
+public class FileDownload implements Callable<Integer> {
+    private static Logger LOG = LoggerFactory.getLogger(FileDownload.class);
+
+    @CommandLine.Mixin
+    private CogClientMixin cogClientMixin;
+
+    @CommandLine.Mixin
+    private MetricsMixin metricsMixin;
+
+    @CommandLine.Mixin
+    private PerfReportMixin perfReportMixin;
+
+    @Parameters(index = "0", description = "The directory to download the files to.")
+    private Path outputDirectory;
+
+    @Option(names = "--id", description = "The internal id of the files to download.",
+            arity = "0..1", interactive = true, echo = true)
+    private long[] fileIds;
+
+    @Option(names = {"--ext-id"}, description = "The external id of the files to download.",
+            arity = "0..1", interactive = true, echo = true)
+    private String[] fileExternalIds;
+
+    @CommandLine.Mixin
+    private FilterMixin filterMixin;
+
+    @Option(names = "--download-threads", description = "The number of files to download concurrently.",
+            arity = "0..1", interactive = true, echo = true, defaultValue = "8")
+    private int downloadThreads;
+
+    @Option(names = "--download-batch-size", description = "The number of files per download link request.",
+            arity = "0..1", interactive = true, echo = true, defaultValue = "100")
+    private int downloadBatchSize;
+
+    @Option(names = "--download-retries", description = "The number of times to retry a failed download.",
+            arity = "0..1", interactive = true, echo = true, defaultValue = "3")
+    private int downloadRetries;
+
+    @Override
+    public Integer call() throws Exception {
+        perfReportMixin.start();
+        try (MetricsPusher metricsPusher = metricsMixin.startPushing("download")) {
+            int exitCode = download();
+            if (exitCode == 0 && null != metricsPusher) {
+                metricsPusher.markSuccess();
+            }
+            return exitCode;
+        } finally {
+            perfReportMixin.finish();
+        }
+    }
+
+    /*
+    Downloads the files matching the ids and filters. Returns the exit code.
+     */
+    private int download() throws Exception {
+        // Check that we have some input specified
+        if (null == fileIds && null == fileExternalIds && !filterMixin.isSpecified()) {
+            LOG.info("No file (external) ids specified nor any filter. No files to download.");
+            return 0;
+        }
+
+        Files.createDirectories(outputDirectory);
+        FileDownloader fileDownloader = new FileDownloader(cogClientMixin.getCogniteClient(),
+                cogClientMixin.getProjectUrl(), downloadThreads, outputDirectory)
+                .withBatchSize(downloadBatchSize)
+                .withMaxRetries(downloadRetries);
+        try (fileDownloader) {
+            if (null != fileIds && fileIds.length > 0) {
+                LOG.info("Start downloading files based on id...");
+                fileDownloader.submit(retrieve(Arrays.stream(fileIds)
+                        .mapToObj(id -> Item.newBuilder().setId(id).build())
+                        .toList()));
+            }
+
+            if (null != fileExternalIds && fileExternalIds.length > 0) {
+                LOG.info("Start downloading files based on external id...");
+                fileDownloader.submit(retrieve(Arrays.stream(fileExternalIds)
+                        .map(extId -> Item.newBuilder().setExternalId(extId).build())
+                        .toList()));
+            }
+
+            if (filterMixin.isSpecified()) {
+                LOG.info("Start downloading files based on filter...");
+                Request request = filterMixin.buildRequest();
+                LOG.info("Matching files for request:\n {}", request.getRequestParameters());
+
+                // Stream the results page by page into the downloader, so only the pages in flight are held in memory
+                long matchCounter = StageTracer.forEachPage(cogClientMixin.getCogniteClient().files().list(request),
+                        fileDownloader::submit);
+
+                LOG.info("Found {} files matching the filter. Submitted them for download.", matchCounter);
+            }
+
+            fileDownloader.awaitCompletion();
+        }
+
+        if (fileDownloader.getRenamedCount() > 0) {
+            LOG.warn("{} files have the same directory and name as another file, and were saved with their id "
+                    + "appended to the name.", fileDownloader.getRenamedCount());
+        }
+        if (fileDownloader.getSkippedCount() > 0) {
+            LOG.info("{} files already exist locally with the same size and were skipped.",
+                    fileDownloader.getSkippedCount());
+        }
+        if (fileDownloader.getFailedCount() > 0) {
+            LOG.error("File download completed with errors. {} files downloaded, {} files could not be downloaded.",
+                    fileDownloader.getDownloadedCount(),
+                    fileDownloader.getFailedCount());
+            return 1;
+        }
+
+        LOG.info("File download completed. {} files downloaded.", fileDownloader.getDownloadedCount());
+        return 0;
+    }
+
+    /*
+    Retrieves the metadata of the files with the given ids. Unknown ids are logged and ignored.
+     */
+    private List<FileMetadata> retrieve(List<Item> items) throws Exception {
+        List<FileMetadata> files = cogClientMixin.getCogniteClient().files().retrieve(items);
+        if (files.size() < items.size()) {
+            LOG.warn("{} of the specified files do not exist in CDF.", items.size() - files.size());
+        }
+        return files;
+    }
+}
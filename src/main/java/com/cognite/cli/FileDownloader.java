@@ -0,0 +1,388 @@
+package com.cognite.cli;
+
+import com.cognite.client.CogniteClient;
+import com.cognite.client.dto.FileMetadata;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import shaded.okhttp3.MediaType;
+import shaded.okhttp3.OkHttpClient;
+import shaded.okhttp3.Request;
+import shaded.okhttp3.RequestBody;
+import shaded.okhttp3.Response;
+import shaded.okhttp3.ResponseBody;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Downloads files from CDF to a local directory with bounded concurrency.
+ *
+ * Producers submit file metadata as it becomes available, for example one page of list results at a time. The
+ * download links are resolved in batches, and the files are downloaded on up to {@code maxWorkers} workers.
+ * {@link #submit(List)} blocks while all workers are busy, so the files and content in flight are bounded regardless of
+ * how many files are downloaded. The only state that grows with the number of files is the set of claimed local paths,
+ * one hash and id per file (under 100 bytes), which is kept to detect duplicate paths.
+ *
+ * Each response body is transferred straight from the connection into a {@link FileChannel}, so the file content is
+ * never held in the heap. The content is written to a temporary file that is moved into place when complete, so an
+ * interrupted download never leaves a partial file behind.
+ *
+ * Local files with the same size as the file in CDF are skipped. When the file metadata has the {@code size} key
+ * written by sync, the size is compared before the download link is requested, so present files cost no requests.
+ * Otherwise the size is compared with the length of the download response.
+ *
+ * Directory and name are not unique in CDF. When several files resolve to the same local path in one run, the first
+ * file keeps the path and the others get their id appended to the name, for example {@code report-123.pdf}. If that
+ * name is claimed as well, or taken by a directory, a counter is appended too, for example {@code report-123-2.pdf}.
+ * Existing regular files are taken to be earlier downloads, like for the first file, so a renamed file is still
+ * skipped when the download is run again.
+ */
+class FileDownloader implements AutoCloseable {
+    private static Logger LOG = LoggerFactory.getLogger(FileDownloader.class);
+
+    private static final MediaType JSON = MediaType.get("application/json");
+    private static final long TRANSFER_CHUNK_BYTES = 8L * 1024 * 1024;
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final OkHttpClient apiClient;
+    private final OkHttpClient downloadClient;
+    private final String downloadLinkUrl;
+    private final Path outputDirectory;
+    private final int maxWorkers;
+    private final Semaphore workers;
+    private final ExecutorService executorService;
+
+    private int batchSize = 100;
+    private int maxRetries = 3;
+
+    private final List<FileMetadata> pendingFiles = new ArrayList<>();
+    // The local paths claimed in this run, by the stable hash of the path, mapped to the id of the file claiming it
+    private final Map<Long, Long> claimedTargets = new HashMap<>();
+    private long renamedCounter = 0;
+    private final AtomicLong downloadedCounter = new AtomicLong();
+    private final AtomicLong skippedCounter = new AtomicLong();
+    private final AtomicLong failedCounter = new AtomicLong();
+
+    /**
+     * Creates a downloader.
+     *
+     * @param cogniteClient The client to authenticate the CDF API requests with.
+     * @param projectUrl The CDF project API URL.
+     * @param maxWorkers The maximum number of files to download concurrently.
+     * @param outputDirectory The directory to download the files to.
+     */
+    FileDownloader(CogniteClient cogniteClient, String projectUrl, int maxWorkers, Path outputDirectory) {
+        this.apiClient = cogniteClient.getHttpClient();
+        // The download URLs are pre-signed. Send the requests without the CDF authentication.
+        OkHttpClient.Builder downloadClientBuilder = cogniteClient.getHttpClient().newBuilder();
+        downloadClientBuilder.interceptors().clear();
+        this.downloadClient = downloadClientBuilder.build();
+        this.downloadLinkUrl = projectUrl + "/files/downloadlink";
+        this.outputDirectory = outputDirectory.toAbsolutePath().normalize();
+        this.maxWorkers = Math.max(1, maxWorkers);
+        this.workers = new Semaphore(this.maxWorkers);
+        this.executorService = IoExecutors.newExecutor("download");
+    }
+
+    /*
+    Sets the number of files per download link request.
+     */
+    FileDownloader withBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+        return this;
+    }
+
+    FileDownloader withMaxRetries(int maxRetries) {
+        this.maxRetries = Math.max(0, maxRetries);
+        return this;
+    }
+
+    long getDownloadedCount() {
+        return downloadedCounter.get();
+    }
+
+    long getSkippedCount() {
+        return skippedCounter.get();
+    }
+
+    long getFailedCount() {
+        return failedCounter.get();
+    }
+
+    /*
+    Returns the number of files saved with their id appended, because another file has the same directory and name.
+     */
+    long getRenamedCount() {
+        return renamedCounter;
+    }
+
+    /*
+    Submits files for download. Full batches are dispatched right away, blocking while all workers are busy.
+     */
+    void submit(List<FileMetadata> files) throws InterruptedException {
+        for (FileMetadata file : files) {
+            pendingFiles.add(file);
+            if (pendingFiles.size() >= batchSize) {
+                dispatchPending();
+            }
+        }
+    }
+
+    /*
+    Dispatches the remaining files and waits for all downloads to complete.
+     */
+    void awaitCompletion() throws InterruptedException {
+        if (!pendingFiles.isEmpty()) {
+            dispatchPending();
+        }
+
+        workers.acquire(maxWorkers);
+        workers.release(maxWorkers);
+    }
+
+    @Override
+    public void close() {
+        executorService.shutdown();
+        try {
+            executorService.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            // Stop the remaining downloads, and let the caller see the interrupt
+            executorService.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+    Resolves the download links of the pending files and hands each file to a worker.
+     */
+    private void dispatchPending() throws InterruptedException {
+        List<FileMetadata> batch = new ArrayList<>(pendingFiles.size());
+        Map<Long, Path> targets = new HashMap<>();
+        for (FileMetadata file : pendingFiles) {
+            Path target = claimTarget(file);
+            if (isPresent(file, target)) {
+                LOG.debug("{} exists with the same size. Skipping.", target);
+                skippedCounter.incrementAndGet();
+                CliMetrics.downloadSkippedFiles.inc();
+            } else {
+                batch.add(file);
+                targets.put(file.getId(), target);
+            }
+        }
+        pendingFiles.clear();
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        Map<Long, String> downloadUrls;
+        StageEvent linkEvent = StageTracer.begin(StageTracer.Stage.DOWNLOAD_LINK);
+        try {
+            downloadUrls = resolveDownloadUrls(batch);
+        } catch (IOException e) {
+            LOG.warn("Unable to get the download links for a batch of {} files. {}", batch.size(), e.toString());
+            CliMetrics.downloadErrors.inc();
+            failedCounter.addAndGet(batch.size());
+            CliMetrics.downloadFailedFiles.inc(batch.size());
+            return;
+        } finally {
+            StageTracer.end(linkEvent, batch.size(), 0);
+        }
+
+        for (FileMetadata file : batch) {
+            String downloadUrl = downloadUrls.get(file.getId());
+            if (null == downloadUrl) {
+                LOG.warn("No download link for file id {}. The file may not have been uploaded.", file.getId());
+                failedCounter.incrementAndGet();
+                CliMetrics.downloadFailedFiles.inc();
+                continue;
+            }
+
+            StageEvent waitEvent = StageTracer.begin(StageTracer.Stage.DOWNLOAD_QUEUE_WAIT);
+            workers.acquire();
+            StageTracer.end(waitEvent);
+            Path target = targets.get(file.getId());
+            executorService.execute(() -> {
+                try {
+                    download(file, downloadUrl, target);
+                } finally {
+                    workers.release();
+                }
+            });
+        }
+    }
+
+    private Map<Long, String> resolveDownloadUrls(List<FileMetadata> batch) throws IOException, InterruptedException {
+        ObjectNode requestBody = objectMapper.createObjectNode();
+        ArrayNode items = requestBody.putArray("items");
+        batch.forEach(file -> items.addObject().put("id", file.getId()));
+        Request request = new Request.Builder()
+                .url(downloadLinkUrl)
+                .post(RequestBody.create(objectMapper.writeValueAsBytes(requestBody), JSON))
+                .build();
+
+        JsonNode response = HttpRetry.execute(maxRetries, "download link request", CliMetrics.downloadRetries, () -> {
+            try (Response linkResponse = apiClient.newCall(request).execute()) {
+                HttpRetry.checkStatus(linkResponse);
+                return objectMapper.readTree(linkResponse.body().byteStream());
+            }
+        });
+
+        Map<Long, String> downloadUrls = new HashMap<>();
+        for (JsonNode item : response.path("items")) {
+            downloadUrls.put(item.path("id").asLong(), item.path("downloadUrl").asText());
+        }
+        return downloadUrls;
+    }
+
+    /*
+    Downloads a file. Failures are logged and counted, so one file does not stop the others.
+     */
+    private void download(FileMetadata file, String downloadUrl, Path target) {
+        Request request = new Request.Builder().url(downloadUrl).get().build();
+        StageEvent downloadEvent = StageTracer.begin(StageTracer.Stage.DOWNLOAD);
+        long bytes = 0;
+        try {
+            Files.createDirectories(target.getParent());
+            bytes = HttpRetry.execute(maxRetries, "download of " + target, CliMetrics.downloadRetries, () -> {
+                try (Response response = downloadClient.newCall(request).execute()) {
+                    HttpRetry.checkStatus(response);
+                    return writeBody(response.body(), target);
+                }
+            });
+            if (bytes < 0) {
+                LOG.debug("{} exists with the same size. Skipping.", target);
+                skippedCounter.incrementAndGet();
+                CliMetrics.downloadSkippedFiles.inc();
+            } else {
+                LOG.debug("Downloaded file id {} to {}.", file.getId(), target);
+                downloadedCounter.incrementAndGet();
+                CliMetrics.downloadFiles.inc();
+                CliMetrics.downloadBytes.inc(bytes);
+            }
+        } catch (Exception e) {
+            LOG.warn("Unable to download file id {} to {}. {}", file.getId(), target, e.toString());
+            CliMetrics.downloadErrors.inc();
+            failedCounter.incrementAndGet();
+            CliMetrics.downloadFailedFiles.inc();
+        } finally {
+            StageTracer.end(downloadEvent, 1, Math.max(0, bytes));
+        }
+    }
+
+    /*
+    Writes the response body to the target file via a temporary file. Returns the number of bytes written, or -1 if the
+    target already exists with the same size and the body was not read.
+     */
+    private static long writeBody(ResponseBody body, Path target) throws IOException {
+        long contentLength = body.contentLength();
+        if (contentLength >= 0 && Files.isRegularFile(target) && Files.size(target) == contentLength) {
+            return -1;
+        }
+
+        Path tempFile = Files.createTempFile(target.getParent(), "." + target.getFileName(), ".part");
+        try {
+            long position = 0;
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                long transferred;
+                while ((transferred = channel.transferFrom(body.source(), position, TRANSFER_CHUNK_BYTES)) > 0) {
+                    position += transferred;
+                }
+            }
+            if (contentLength >= 0 && position != contentLength) {
+                throw new IOException(String.format("The download was truncated after %d of %d bytes.",
+                        position, contentLength));
+            }
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return position;
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /*
+    Returns true if the local file exists with the size recorded in the file metadata.
+     */
+    private static boolean isPresent(FileMetadata file, Path target) {
+        String size = file.getMetadataOrDefault(FileUpload.SIZE_METADATA_KEY, "");
+        try {
+            return !size.isEmpty() && Files.isRegularFile(target) && Files.size(target) == Long.parseLong(size);
+        } catch (IOException | NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /*
+    Returns the local path of a file, unique within this run. If another file has already claimed the path, the file
+    id is appended to the file name, followed by a counter until the name is neither claimed nor taken by a directory.
+     */
+    private Path claimTarget(FileMetadata file) {
+        Path target = resolveTarget(file);
+        Long claimedBy = claimedTargets.putIfAbsent(StableHash.of(target.toString()), file.getId());
+        if (null == claimedBy || claimedBy == file.getId()) {
+            return target;
+        }
+
+        String fileName = target.getFileName().toString();
+        int extensionIndex = fileName.lastIndexOf('.');
+        String baseName = extensionIndex > 0 ? fileName.substring(0, extensionIndex) : fileName;
+        String extension = extensionIndex > 0 ? fileName.substring(extensionIndex) : "";
+        Path uniqueTarget = target.resolveSibling(baseName + "-" + file.getId() + extension);
+        for (int counter = 2; !isAvailable(uniqueTarget, file.getId()); counter++) {
+            uniqueTarget = target.resolveSibling(baseName + "-" + file.getId() + "-" + counter + extension);
+        }
+        LOG.warn("File id {} has the same directory and name as file id {}. Saving it as {}.",
+                file.getId(), claimedBy, uniqueTarget);
+        renamedCounter++;
+        return uniqueTarget;
+    }
+
+    /*
+    Claims the path for the file if it is not claimed by another file in this run and is not a directory or other
+    non-file on disk. Returns false if the path is taken.
+     */
+    private boolean isAvailable(Path target, long fileId) {
+        if (Files.exists(target) && !Files.isRegularFile(target)) {
+            return false;
+        }
+        Long claimedBy = claimedTargets.putIfAbsent(StableHash.of(target.toString()), fileId);
+        return null == claimedBy || claimedBy == fileId;
+    }
+
+    /*
+    Returns the local path of a file: the CDF directory and file name below the output directory. Falls back to the
+    file id when the name is missing or would resolve outside the output directory.
+     */
+    Path resolveTarget(FileMetadata file) {
+        String fileName = file.getName().isBlank() ? String.valueOf(file.getId()) : file.getName();
+        Path target = outputDirectory;
+        for (String segment : file.getDirectory().split("/")) {
+            if (!segment.isBlank()) {
+                target = target.resolve(segment);
+            }
+        }
+        target = target.resolve(fileName).normalize();
+
+        if (!target.startsWith(outputDirectory) || target.equals(outputDirectory)) {
+            LOG.warn("The path of file id {} is outside the output directory. Saving it as {}.",
+                    file.getId(), file.getId());
+            return outputDirectory.resolve(String.valueOf(file.getId()));
+        }
+        return target;
+    }
+}
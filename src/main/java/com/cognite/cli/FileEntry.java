@@ -0,0 +1,66 @@
+package com.cognite.cli;
+
+import com.cognite.client.dto.FileMetadata;
+import com.google.protobuf.ByteString;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * A file to upload, together with the attributes read once when the file was discovered.
+ *
+ * @param path The path to the file on disk. For an archive entry, the entry path below the archive path.
+ * @param relativePath The path relative to the upload root, always using {@code /} as separator.
+ * @param size The file size in bytes.
+ * @param lastModified The last modified time in epoch milliseconds.
+ * @param overrides The file metadata given for this file in a manifest, overriding the defaults. {@code null} if none.
+ * @param content The file content, when it was read from an archive instead of a file on disk. {@code null} if none.
+ */
+record FileEntry(Path path, String relativePath, long size, long lastModified, FileMetadata overrides,
+                 ByteString content) {
+
+    FileEntry(Path path, String relativePath, long size, long lastModified) {
+        this(path, relativePath, size, lastModified, null, null);
+    }
+
+    /*
+    Builds an entry from the attributes obtained during a directory walk.
+     */
+    static FileEntry of(Path root, Path path, BasicFileAttributes attributes) {
+        String relativePath = root.equals(path) ? path.getFileName().toString() : root.relativize(path).toString();
+
+        return new FileEntry(path,
+                relativePath.replace(path.getFileSystem().getSeparator(), "/"),
+                attributes.size(),
+                attributes.lastModifiedTime().toMillis());
+    }
+
+    /*
+    Returns a copy of this entry with the given metadata overrides.
+     */
+    FileEntry withOverrides(FileMetadata overrides) {
+        return new FileEntry(path, relativePath, size, lastModified, overrides, content);
+    }
+
+    /*
+    Returns a copy of this entry with the content held in memory.
+     */
+    FileEntry withContent(ByteString content) {
+        return new FileEntry(path, relativePath, size, lastModified, overrides, content);
+    }
+
+    /*
+    Returns the file name.
+     */
+    String fileName() {
+        return path.getFileName().toString();
+    }
+
+    /*
+    Returns the parent directory relative to the upload root, or an empty string if the file is located at the root.
+     */
+    String relativeDirectory() {
+        int index = relativePath.lastIndexOf('/');
+        return index < 0 ? "" : relativePath.substring(0, index);
+    }
+}
@@ -0,0 +1,92 @@
+package com.cognite.cli;
+
+import com.cognite.client.dto.FileMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Spec;
+
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.Callable;
+import java.util.function.Predicate;
+
+/**
+ * Creates or refreshes a local {@link MetadataIndex} of the CDF files, and optionally queries it.
+ *
+ * The first run lists all files in the project or data set. Later runs only list the files updated since the last
+ * refresh. With filters, the matching files are printed as JSON Lines, evaluated on the index alone.
+ */
+@Command(name = "index",
+        description = "Builds and refreshes a local index of the file metadata in Cognite Data Fusion, and queries it")
+public class FileIndex implements Callable<Integer> {
+    private static Logger LOG = LoggerFactory.getLogger(FileIndex.class);
+
+    @Spec
+    private CommandSpec spec;
+
+    @CommandLine.Mixin
+    private CogClientMixin cogClientMixin;
+
+    @CommandLine.Mixin
+    private MetricsMixin metricsMixin;
+
+    @CommandLine.Mixin
+    private PerfReportMixin perfReportMixin;
+
+    @CommandLine.Mixin
+    private IndexMixin indexMixin;
+
+    @Option(names = {"-d", "--data-set-id"}, description = "The data set to index. Only used when the index is "
+            + "created. Defaults to all files in the project.",
+            arity = "0..1", interactive = true, echo = true)
+    private Long dataSetId;
+
+    @Option(names = "--full", description = "List all files and rebuild the index, instead of listing only the files "
+            + "updated since the last refresh.")
+    private boolean full;
+
+    @CommandLine.Mixin
+    private FilterMixin filterMixin;
+
+    @Override
+    public Integer call() throws Exception {
+        if (!indexMixin.isEnabled()) {
+            String message = "Error: --index-file is required.";
+            LOG.error(message);
+            throw new Exception(message);
+        }
+
+        perfReportMixin.start();
+        try (MetricsPusher metricsPusher = metricsMixin.startPushing("index");
+             MetadataIndex index = indexMixin.open(cogClientMixin,
+                     null == dataSetId ? OptionalLong.empty() : OptionalLong.of(dataSetId), full)) {
+            LOG.info("The metadata index holds {} files.", index.size());
+            if (filterMixin.isSpecified()) {
+                Predicate<FileMetadata> predicate;
+                try {
+                    predicate = filterMixin.buildPredicate();
+                } catch (IllegalArgumentException e) {
+                    String message = "Error: " + e.getMessage();
+                    LOG.error(message);
+                    throw new Exception(message);
+                }
+
+                try (FileListWriter fileListWriter = new FileListWriter(spec.commandLine().getOut(), false, List.of())) {
+                    long matchCounter = index.forEachMatch(predicate,
+                            fileMetadata -> fileListWriter.write(List.of(fileMetadata)));
+                    LOG.info("{} files match the filter.", matchCounter);
+                }
+            }
+            if (null != metricsPusher) {
+                metricsPusher.markSuccess();
+            }
+            return 0;
+        } finally {
+            perfReportMixin.finish();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.cognite.cli;
+
+import com.cognite.client.Request;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Spec;
+
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Exports the metadata of the files matching a filter, as JSON Lines or CSV.
+ *
+ * The files are listed in partitions, each read with its own cursor on its own thread, so the export time scales with
+ * the number of partitions. Each page is written as soon as it is listed, so only one page per partition is held in
+ * memory. The order of the files across partitions is not defined.
+ */
+@Command(name = "list",
+        description = "Lists the files in Cognite Data Fusion matching a filter, as JSON Lines or CSV")
+public class FileList implements Callable<Integer> {
+    private static Logger LOG = LoggerFactory.getLogger(FileList.class);
+
+    // The maximum number of partitions CDF accepts for a list request
+    private static final int MAX_PARTITIONS = 10;
+
+    @Spec
+    private CommandSpec spec;
+
+    @CommandLine.Mixin
+    private CogClientMixin cogClientMixin;
+
+    @CommandLine.Mixin
+    private MetricsMixin metricsMixin;
+
+    @CommandLine.Mixin
+    private PerfReportMixin perfReportMixin;
+
+    @CommandLine.Mixin
+    private FilterMixin filterMixin;
+
+    @Option(names = "--partitions", description = "The number of partitions to list in parallel, each with its own "
+            + "cursor. CDF supports up to 10 partitions per request.",
+            arity = "0..1", interactive = true, echo = true, defaultValue = "8")
+    private int partitions;
+
+    @Option(names = {"-o", "--output-file"}, description = "The file to write the list to. Defaults to the standard "
+            + "output.",
+            arity = "0..1", interactive = true, echo = true)
+    private Path outputFile;
+
+    @Option(names = "--csv", description = "Write CSV instead of JSON Lines. Implied by an output file ending with .csv.")
+    private boolean csv;
+
+    @Option(names = "--csv-metadata-key", description = "A metadata key to write as a metadata.<key> column in the "
+            + "CSV output. You can specify multiple keys.",
+            arity = "0..1", interactive = true, echo = true)
+    private List<String> csvMetadataKeys = new ArrayList<>();
+
+    @Override
+    public Integer call() throws Exception {
+        perfReportMixin.start();
+        try (MetricsPusher metricsPusher = metricsMixin.startPushing("list")) {
+            int exitCode = list();
+            if (exitCode == 0 && null != metricsPusher) {
+                metricsPusher.markSuccess();
+            }
+            return exitCode;
+        } finally {
+            perfReportMixin.finish();
+        }
+    }
+
+    /*
+    Lists the files matching the filters to the output. Returns the exit code.
+     */
+    private int list() throws Exception {
+        if (partitions < 1 || partitions > MAX_PARTITIONS) {
+            String message = String.format("Error: --partitions must be between 1 and %d. Got %d.",
+                    MAX_PARTITIONS, partitions);
+            LOG.error(message);
+            throw new Exception(message);
+        }
+
+        Request request = filterMixin.buildRequest();
+        LOG.info("Listing files in {} partitions for request:\n {}", partitions, request.getRequestParameters());
+        boolean csvOutput = csv || null != outputFile
+                && outputFile.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv");
+        Writer output = null == outputFile ? spec.commandLine().getOut() : Files.newBufferedWriter(outputFile);
+
+        ExecutorService executorService = IoExecutors.newExecutor("list");
+        long fileCounter;
+        try (FileListWriter fileListWriter = new FileListWriter(output, csvOutput, csvMetadataKeys)) {
+            List<Future<Long>> futures = new ArrayList<>(partitions);
+            for (int partition = 1; partition <= partitions; partition++) {
+                String partitionSpec = partition + "/" + partitions;
+                futures.add(executorService.submit(() -> listPartition(request, partitionSpec, fileListWriter)));
+            }
+            for (Future<Long> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    String message = "Error: Listing the files failed: " + e.getCause().getMessage();
+                    LOG.error(message);
+                    throw new Exception(message, e.getCause());
+                }
+            }
+            fileCounter = fileListWriter.getFileCount();
+        } finally {
+            executorService.shutdownNow();
+            if (null != outputFile) {
+                output.close();
+            } else {
+                output.flush();
+            }
+        }
+
+        LOG.info("Listed {} files{}.", fileCounter, null == outputFile ? "" : " to " + outputFile);
+        return 0;
+    }
+
+    /*
+    Lists one partition of the files and writes each page as it arrives. Returns the number of files listed.
+     */
+    private long listPartition(Request request, String partition, FileListWriter fileListWriter) throws Exception {
+        long partitionCounter = StageTracer.forEachPage(
+                cogClientMixin.getCogniteClient().files().list(request, partition), fileListWriter::write);
+        LOG.debug("Listed {} files in partition {}.", partitionCounter, partition);
+        return partitionCounter;
+    }
+}
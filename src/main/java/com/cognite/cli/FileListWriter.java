@@ -0,0 +1,151 @@
+package com.cognite.cli;
+
+import com.cognite.client.dto.FileMetadata;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.dataformat.csv.CsvFactory;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Writes file metadata as JSON Lines or CSV, one file per line, as the files are listed.
+ *
+ * The JSON Lines output has one object per file with the fields that are set. The CSV output has a header and fixed
+ * columns, starting with the id, so it can be read by {@code files delete --id-file}, plus one
+ * {@code metadata.<key>} column per requested metadata key, the same columns as a CSV upload manifest.
+ *
+ * Writes are synchronized, so several listing threads can share one writer. Nothing is buffered beyond the writer.
+ */
+class FileListWriter implements Closeable {
+    private static final List<String> CSV_COLUMNS = List.of("id", "externalId", "name", "directory", "source",
+            "mimeType", "dataSetId", "uploaded", "createdTime", "lastUpdatedTime", "sourceModifiedTime");
+
+    private final JsonGenerator generator;
+    private final boolean csv;
+    private final List<String> csvMetadataKeys;
+    private long fileCounter = 0;
+
+    /**
+     * Creates a writer.
+     *
+     * @param writer The target. It is flushed, but not closed, when this writer is closed.
+     * @param csv Whether to write CSV instead of JSON Lines.
+     * @param csvMetadataKeys The metadata keys to write as CSV columns.
+     */
+    FileListWriter(Writer writer, boolean csv, List<String> csvMetadataKeys) throws IOException {
+        this.csv = csv;
+        this.csvMetadataKeys = List.copyOf(csvMetadataKeys);
+        if (csv) {
+            CsvSchema.Builder schemaBuilder = CsvSchema.builder().setUseHeader(true);
+            CSV_COLUMNS.forEach(schemaBuilder::addColumn);
+            this.csvMetadataKeys.forEach(key -> schemaBuilder.addColumn("metadata." + key));
+            generator = new CsvFactory().createGenerator(writer);
+            generator.setSchema(schemaBuilder.build());
+        } else {
+            generator = new JsonFactory().createGenerator(writer);
+            generator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+        }
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    synchronized void write(List<FileMetadata> files) throws IOException {
+        for (FileMetadata fileMetadata : files) {
+            if (csv) {
+                writeCsvRow(fileMetadata);
+            } else {
+                writeJson(fileMetadata);
+            }
+        }
+        generator.flush();
+        fileCounter += files.size();
+    }
+
+    synchronized long getFileCount() {
+        return fileCounter;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!csv && fileCounter > 0) {
+            generator.writeRaw('\n');
+        }
+        generator.close();
+    }
+
+    private void writeJson(FileMetadata fileMetadata) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("id", fileMetadata.getId());
+        if (fileMetadata.hasExternalId()) {
+            generator.writeStringField("externalId", fileMetadata.getExternalId());
+        }
+        if (fileMetadata.hasName()) {
+            generator.writeStringField("name", fileMetadata.getName());
+        }
+        if (fileMetadata.hasDirectory()) {
+            generator.writeStringField("directory", fileMetadata.getDirectory());
+        }
+        if (fileMetadata.hasSource()) {
+            generator.writeStringField("source", fileMetadata.getSource());
+        }
+        if (fileMetadata.hasMimeType()) {
+            generator.writeStringField("mimeType", fileMetadata.getMimeType());
+        }
+        if (fileMetadata.hasDataSetId()) {
+            generator.writeNumberField("dataSetId", fileMetadata.getDataSetId());
+        }
+        if (fileMetadata.getAssetIdsCount() > 0) {
+            generator.writeArrayFieldStart("assetIds");
+            for (long assetId : fileMetadata.getAssetIdsList()) {
+                generator.writeNumber(assetId);
+            }
+            generator.writeEndArray();
+        }
+        if (fileMetadata.getMetadataCount() > 0) {
+            generator.writeObjectFieldStart("metadata");
+            for (var entry : fileMetadata.getMetadataMap().entrySet()) {
+                generator.writeStringField(entry.getKey(), entry.getValue());
+            }
+            generator.writeEndObject();
+        }
+        generator.writeBooleanField("uploaded", fileMetadata.getUploaded());
+        if (fileMetadata.hasUploadedTime()) {
+            generator.writeNumberField("uploadedTime", fileMetadata.getUploadedTime());
+        }
+        if (fileMetadata.hasCreatedTime()) {
+            generator.writeNumberField("createdTime", fileMetadata.getCreatedTime());
+        }
+        generator.writeNumberField("lastUpdatedTime", fileMetadata.getLastUpdatedTime());
+        if (fileMetadata.hasSourceCreatedTime()) {
+            generator.writeNumberField("sourceCreatedTime", fileMetadata.getSourceCreatedTime());
+        }
+        if (fileMetadata.hasSourceModifiedTime()) {
+            generator.writeNumberField("sourceModifiedTime", fileMetadata.getSourceModifiedTime());
+        }
+        generator.writeEndObject();
+    }
+
+    private void writeCsvRow(FileMetadata fileMetadata) throws IOException {
+        generator.writeStartArray();
+        generator.writeNumber(fileMetadata.getId());
+        generator.writeString(fileMetadata.hasExternalId() ? fileMetadata.getExternalId() : "");
+        generator.writeString(fileMetadata.hasName() ? fileMetadata.getName() : "");
+        generator.writeString(fileMetadata.hasDirectory() ? fileMetadata.getDirectory() : "");
+        generator.writeString(fileMetadata.hasSource() ? fileMetadata.getSource() : "");
+        generator.writeString(fileMetadata.hasMimeType() ? fileMetadata.getMimeType() : "");
+        generator.writeString(fileMetadata.hasDataSetId() ? String.valueOf(fileMetadata.getDataSetId()) : "");
+        generator.writeBoolean(fileMetadata.getUploaded());
+        generator.writeString(fileMetadata.hasCreatedTime() ? String.valueOf(fileMetadata.getCreatedTime()) : "");
+        generator.writeNumber(fileMetadata.getLastUpdatedTime());
+        generator.writeString(fileMetadata.hasSourceModifiedTime()
+                ? String.valueOf(fileMetadata.getSourceModifiedTime()) : "");
+        for (String key : csvMetadataKeys) {
+            generator.writeString(fileMetadata.getMetadataOrDefault(key, ""));
+        }
+        generator.writeEndArray();
+    }
+}
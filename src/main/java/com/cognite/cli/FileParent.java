@@ -7,7 +7,7 @@ import java.util.concurrent.Callable;
 
 @Command(name = "files",
         description = "Operations on the CDF Files resource type",
-        subcommands = {FileUpload.class, FileDelete.class})
+        subcommands = {FileUpload.class, FileDownload.class, FileSync.class, FileDelete.class, FileIndex.class, FileList.class})
 public class FileParent implements Callable<Integer> {
     private static Logger LOG = LoggerFactory.getLogger(FileParent.class);
 
@@ -0,0 +1,169 @@
+package com.cognite.cli;
+
+import com.cognite.client.Request;
+import com.cognite.client.dto.FileMetadata;
+import com.cognite.client.dto.Item;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mirrors a local directory into CDF.
+ *
+ * Sync takes the same options as upload. Files that exist in CDF with the same size and modified time are skipped, so
+ * only new and changed files are uploaded. The existing files are looked up by external id, one request per upload
+ * batch. With {@code --delete-missing}, the files in CDF with the same source, external id prefix, directory and data
+ * set that no longer exist locally are deleted. The CDF files are listed page by page and each external id is mapped
+ * back to its local path, so neither side is held in memory. Files whose external id does not map to a path inside the
+ * input directory are never deleted, and an external id prefix or a data set is required to narrow the scope.
+ */
+@Command(name = "sync",
+        description = "Mirrors a local directory into Cognite Data Fusion. Uploads new and changed files, and "
+                + "optionally deletes files that no longer exist locally.")
+public class FileSync extends FileUpload {
+    private static Logger LOG = LoggerFactory.getLogger(FileSync.class);
+
+    @Option(names = "--delete-missing", description = "Delete the files in CDF with the same source, external id "
+            + "prefix, directory and data set that do not exist in the input directory. Requires --ext-id-prefix or "
+            + "a data set.")
+    private boolean deleteMissing;
+
+    @Option(names = "--delete-threads", description = "The maximum number of delete batches to run concurrently.",
+            arity = "0..1", interactive = true, echo = true, defaultValue = "8")
+    private int deleteThreads;
+
+    @Override
+    public Integer call() throws Exception {
+        if (watch) {
+            String message = "Error: --watch cannot be used with sync. Use files upload --watch instead.";
+            LOG.error(message);
+            throw new Exception(message);
+        }
+        if (deleteMissing && null != manifestFile) {
+            String message = "Error: --delete-missing cannot be used with --manifest.";
+            LOG.error(message);
+            throw new Exception(message);
+        }
+        if (!Files.isDirectory(inputPath)) {
+            String message = String.format("Error: sync requires the input path to be a directory: %s", inputPath);
+            LOG.error(message);
+            throw new Exception(message);
+        }
+        if (deleteMissing && extIdPrefix.isEmpty() && !hasDataSet()) {
+            String message = "Error: --delete-missing requires --ext-id-prefix or a data set, so only the files "
+                    + "of this sync can be deleted.";
+            LOG.error(message);
+            throw new Exception(message);
+        }
+
+        return super.call();
+    }
+
+    @Override
+    String getCommandName() {
+        return "sync";
+    }
+
+    @Override
+    boolean isSkipUnchangedFiles() {
+        return true;
+    }
+
+    /*
+    Deletes the files in CDF that are missing locally, if configured.
+     */
+    @Override
+    int afterUpload() throws Exception {
+        if (!deleteMissing) {
+            return 0;
+        }
+
+        Request request = buildRemoteFilesRequest();
+        LOG.info("Looking for files to delete in CDF. Matching files for request:\n {}", request.getRequestParameters());
+        DeleteReport deleteReport = new DeleteReport(null);
+        long matchCounter;
+        long[] missingCounter = {0};
+        try (deleteReport;
+             DeleteEngine deleteEngine = new DeleteEngine(cogClientMixin.getCogniteClient(), deleteThreads, deleteReport)) {
+            matchCounter = StageTracer.forEachPage(cogClientMixin.getCogniteClient().files().list(request), page -> {
+                List<Item> missingItems = new ArrayList<>();
+                for (FileMetadata fileMetadata : page) {
+                    // Each shard only deletes the files it would upload
+                    if (shardMixin.includes(fileMetadata.getExternalId()) && isMissingLocally(fileMetadata)) {
+                        LOG.debug("{} does not exist locally. Deleting it.", fileMetadata.getExternalId());
+                        missingItems.add(Item.newBuilder().setId(fileMetadata.getId()).build());
+                    }
+                }
+                deleteEngine.submit(missingItems);
+                missingCounter[0] += missingItems.size();
+            });
+            deleteEngine.awaitCompletion();
+        }
+
+        LOG.info("Checked {} files in CDF. {} files do not exist locally.", matchCounter, missingCounter[0]);
+        summaryCounts.put("deleted", deleteReport.getDeletedCount());
+        summaryCounts.put("deleteFailed", deleteReport.getFailedCount());
+        if (deleteReport.getFailedCount() > 0) {
+            deleteReport.logFailedIds();
+            LOG.error("File sync completed with errors. {} files deleted, {} files could not be deleted.",
+                    deleteReport.getDeletedCount(),
+                    deleteReport.getFailedCount());
+            return 1;
+        }
+
+        LOG.info("File sync completed. {} files deleted.", deleteReport.getDeletedCount());
+        return 0;
+    }
+
+    /*
+    Builds the request listing the CDF files that may belong to this sync: the same source, external id prefix, file
+    directory and data set.
+     */
+    private Request buildRemoteFilesRequest() throws Exception {
+        Request request = Request.create()
+                .withFilterParameter("source", fileSource);
+        if (!extIdPrefix.isEmpty()) {
+            request = request.withFilterParameter("externalIdPrefix", extIdPrefix);
+        }
+        if (!buildDirectory("").isEmpty()) {
+            request = request.withFilterParameter("directoryPrefix", buildDirectory(""));
+        }
+        if (getDataSetIntId().isPresent()) {
+            request = request.withFilterParameter("dataSetIds", List.of(Map.of("id", getDataSetIntId().getAsLong())));
+        }
+        return request;
+    }
+
+    /*
+    Maps the external id of a CDF file back to its local path, and checks if the file exists. Only files this sync
+    would have uploaded are considered: the external id maps to a path inside the input directory, in a sub-directory
+    only when syncing recursively, and the CDF directory is the one built for that path. All other files are left alone.
+     */
+    private boolean isMissingLocally(FileMetadata fileMetadata) {
+        if (!fileMetadata.hasExternalId() || !fileMetadata.getExternalId().startsWith(extIdPrefix)) {
+            return false;
+        }
+
+        String relativePath = fileMetadata.getExternalId().substring(extIdPrefix.length());
+        if (relativePath.isEmpty() || !recursive && relativePath.contains("/")) {
+            return false;
+        }
+        Path root = inputPath.toAbsolutePath().normalize();
+        Path localPath = root.resolve(relativePath).normalize();
+        if (!localPath.startsWith(root) || localPath.equals(root)) {
+            return false;
+        }
+
+        int index = relativePath.lastIndexOf('/');
+        String expectedDirectory = buildDirectory(index < 0 ? "" : relativePath.substring(0, index));
+        String directory = fileMetadata.hasDirectory() ? fileMetadata.getDirectory() : "";
+        return expectedDirectory.equals(directory) && !Files.isRegularFile(localPath);
+    }
+}
@@ -1,16 +1,27 @@
 package com.cognite.cli;
 
-import java.nio.file.DirectoryStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.cognite.client.dto.*;
+import com.google.protobuf.UnsafeByteOperations;
 
-import com.cognite.client.queue.UploadQueue;
-import com.google.protobuf.ByteString;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -24,14 +35,42 @@ import picocli.CommandLine.Parameters;
 public class FileUpload implements Callable<Integer> {
     private static Logger LOG = LoggerFactory.getLogger(FileUpload.class);
     
+    static final String CONTENT_HASH_METADATA_KEY = "sha256";
+    static final String SIZE_METADATA_KEY = "size";
+
+    // The default in-flight limit for archive uploads, and the largest archive entry held in memory
+    private static final long DEFAULT_ARCHIVE_INFLIGHT_BYTES = 1024L * 1024 * 1024;
+    private static final long MAX_BUFFERED_ENTRY_BYTES = Integer.MAX_VALUE - 8;
+
     // global data structures
     private OptionalLong dataSetIntId;
+    private UploadJournal uploadJournal;
+    private MetadataIndex metadataIndex;
+    private final Map<String, UploadJournal.Record> pendingJournalRecords = new ConcurrentHashMap<>();
+    private final AtomicLong skippedCounter = new AtomicLong();
+    private final AtomicLong unchangedContentCounter = new AtomicLong();
+    private final AtomicLong otherShardCounter = new AtomicLong();
+    // The counts written to the summary file. Sync adds its delete counts.
+    final Map<String, Long> summaryCounts = new LinkedHashMap<>();
+
+    @CommandLine.Mixin
+    CogClientMixin cogClientMixin;
 
     @CommandLine.Mixin
-    private CogClientMixin cogClientMixin;
+    private MetricsMixin metricsMixin;
 
-    @Parameters(index = "0", description = "The file(s) to upload.")
-    private Path inputPath;
+    @CommandLine.Mixin
+    private PerfReportMixin perfReportMixin;
+
+    @CommandLine.Mixin
+    ShardMixin shardMixin;
+
+    @CommandLine.Mixin
+    private IndexMixin indexMixin;
+
+    @Parameters(index = "0", description = "The file(s) to upload: a file, a directory or a zip, tar or tar.gz "
+            + "archive. With --manifest, the directory that relative manifest paths are resolved against.")
+    Path inputPath;
 
     @Option(names = {"-d", "--data-set-id"}, description = "The data set ID to upload files to.", arity = "0..1",
             interactive = true, echo = true, defaultValue = "-1")
@@ -43,18 +82,89 @@ public class FileUpload implements Callable<Integer> {
 
     @Option(names = "--ext-id-prefix", description = "An external id prefix to add to each file.",
             arity = "0..1", interactive = true, echo = true, defaultValue = "")
-    private String extIdPrefix;
+    String extIdPrefix;
 
     @Option(names = "--file-directory", description = "The CDF file directory to upload the files to.",
             arity = "0..1", interactive = true, echo = true)
-    private String fileDirectory;
+    String fileDirectory;
 
     @Option(names = "--source", description = "The file metadata source value.", arity = "0..1", interactive = true,
             echo = true, defaultValue = "file-upload-cli")
-    private String fileSource;
-    
+    String fileSource;
+
+    @Option(names = {"-r", "--recursive"}, description = "Traverse the input directory recursively.")
+    boolean recursive;
+
+    @Option(names = "--reader-threads", description = "The number of threads preparing files for upload.",
+            arity = "0..1", interactive = true, echo = true, defaultValue = "4")
+    private int readerThreads;
+
+    @Option(names = "--upload-threads", description = "The number of threads uploading files to CDF.",
+            arity = "0..1", interactive = true, echo = true, defaultValue = "4")
+    private int uploadThreads;
+
+    @Option(names = "--max-inflight-bytes", description = "The maximum size of file binaries held in memory while queued for upload or "
+            + "being uploaded, e.g. 512m or 2g. Readers block when the limit is reached. Default is no limit.",
+            arity = "0..1", interactive = true, echo = true, defaultValue = "0", converter = ByteSizeConverter.class)
+    private long maxInFlightBytes;
+
+    @Option(names = "--multipart-threshold", description = "Files of at least this size, e.g. 512m or 2g, are "
+            + "uploaded with the multipart upload API. The parts are uploaded in parallel and retried individually.",
+            arity = "0..1", interactive = true, echo = true, defaultValue = "512m", converter = ByteSizeConverter.class)
+    private long multipartThreshold;
+
+    @Option(names = "--multipart-part-size", description = "The size of each part in a multipart upload, e.g. 64m. "
+            + "Raised when needed to stay within the maximum number of parts per file. Minimum 5m.",
+            arity = "0..1", interactive = true, echo = true, defaultValue = "64m", converter = ByteSizeConverter.class)
+    private long multipartPartSize;
+
+    @Option(names = "--multipart-threads", description = "The number of threads uploading parts of large files.",
+            arity = "0..1", interactive = true, echo = true, defaultValue = "8")
+    private int multipartThreads;
+
+    @Option(names = "--journal", description = "A local journal of uploaded files. Files that are unchanged since "
+            + "they were recorded in the journal are skipped, and new uploads are appended to it.",
+            arity = "0..1", interactive = true, echo = true)
+    private Path journalFile;
+
+    @Option(names = "--watch", description = "Keep running and upload new and modified files as they appear in the "
+            + "input directory. Existing files are uploaded first.")
+    boolean watch;
+
+    @Option(names = "--watch-settle-time", description = "With --watch, how long a file must be unchanged before it "
+            + "is uploaded, e.g. PT2S or PT500MS.", arity = "0..1", interactive = true, echo = true, defaultValue = "PT2S")
+    private Duration watchSettleTime;
+
+    @Option(names = "--skip-unchanged-content", description = "Hash the file content and store it in the file "
+            + "metadata. Skip uploading files that already exist in CDF with the same external id and content hash.")
+    private boolean skipUnchangedContent;
+
+    @Option(names = "--manifest", description = "A JSON Lines or CSV file listing the files to upload, with per-file "
+            + "external id, name, directory, source, mime type, data set, asset ids and metadata. Only the listed "
+            + "files are uploaded. Files ending with .csv are read as CSV.",
+            arity = "0..1", interactive = true, echo = true)
+    Path manifestFile;
+
     @Override
     public Integer call() throws Exception {
+        perfReportMixin.start();
+        try (MetricsPusher metricsPusher = metricsMixin.startPushing(getCommandName())) {
+            int exitCode = upload();
+            if (exitCode == 0 && null != metricsPusher) {
+                metricsPusher.markSuccess();
+            }
+            return exitCode;
+        } finally {
+            perfReportMixin.finish();
+        }
+    }
+
+    /*
+    Uploads the files from the input path. Returns the exit code.
+     */
+    private int upload() throws Exception {
+        shardMixin.validate();
+
         // Check that the input path exits
         if (!Files.exists(inputPath) || !Files.isReadable(inputPath)) {
             String message = String.format("Error: The specified input path does not exist or is not readable: %s", inputPath);
@@ -62,106 +172,524 @@ public class FileUpload implements Callable<Integer> {
             throw new Exception(message);
         }
 
-        LOG.info("Setting up the Cognite client and file upload queue.");
-        UploadQueue<FileContainer, FileMetadata> fileBinaryUploadQueue = cogClientMixin.getCogniteClient().files().fileContainerUploadQueue()
-                .withMaxUploadInterval(Duration.ofSeconds(5))
-                .withPostUploadFunction(fileMetadataList ->
-                        fileMetadataList.stream().forEach(fileMetadata -> LOG.info("Finished uploading {}.", fileMetadata.getName())))
-                .withExceptionHandlerFunction(exception -> LOG.warn("Error during upload: {}", exception.getMessage()));
-        fileBinaryUploadQueue.start();
+        if (watch && !Files.isDirectory(inputPath)) {
+            String message = String.format("Error: --watch requires the input path to be a directory: %s", inputPath);
+            LOG.error(message);
+            throw new Exception(message);
+        }
 
-        LOG.info("Start reading files...");
-        int fileCounter = 0;
-        // If the input path is a single file
-        if (Files.isRegularFile(inputPath)) {
-            LOG.info("The input path {} is a single file.", inputPath.toString());
-            fileBinaryUploadQueue.put(buildFileContainer(inputPath));
-            LOG.info("{} added to the upload queue.", inputPath.toString());
-            fileCounter++;
-        }
-
-        // If the input path is a directory, traverse it. Do not walk recursively.
-        if (Files.isDirectory(inputPath)) {
-            LOG.info("The input path {} is a directory. Will traverse it.", inputPath.toString());
-            try (DirectoryStream<Path> stream = Files.newDirectoryStream(inputPath)) {
-                for (Path entry: stream) {
-                    if (Files.isRegularFile(entry)) {
-                        fileBinaryUploadQueue.put(buildFileContainer(entry));
-                        LOG.info("{} added to the upload queue.", entry.toString());
-                        fileCounter++;
-                    } else {
-                        LOG.info("{} is not a regular file. Skipping.", entry);
+        if (null != manifestFile) {
+            if (watch) {
+                String message = "Error: --manifest cannot be used with --watch.";
+                LOG.error(message);
+                throw new Exception(message);
+            }
+            if (!Files.isDirectory(inputPath)) {
+                String message = String.format("Error: --manifest requires the input path to be a directory: %s",
+                        inputPath);
+                LOG.error(message);
+                throw new Exception(message);
+            }
+            if (!Files.isReadable(manifestFile)) {
+                String message = String.format("Error: The manifest does not exist or is not readable: %s",
+                        manifestFile);
+                LOG.error(message);
+                throw new Exception(message);
+            }
+        }
+
+        if (null != journalFile) {
+            LOG.info("Loading the upload journal {}.", journalFile);
+            uploadJournal = UploadJournal.open(journalFile);
+        }
+        if (indexMixin.isEnabled() && (skipUnchangedContent || isSkipUnchangedFiles())) {
+            metadataIndex = indexMixin.open(cogClientMixin, OptionalLong.empty(), false);
+        }
+        resolveDataSetIntId();
+
+        // Archive entries are held in memory until uploaded, so always limit the bytes in flight
+        boolean archiveInput = null == manifestFile && Files.isRegularFile(inputPath) && ArchiveReader.isArchive(inputPath);
+        long inFlightBytes = archiveInput && maxInFlightBytes <= 0 ? DEFAULT_ARCHIVE_INFLIGHT_BYTES : maxInFlightBytes;
+
+        LOG.info("Setting up the Cognite client and file upload pipeline.");
+        long fileCounter;
+        long failedCounter;
+        long uploadedBytes;
+        try (MultipartUploader multipartUploader = new MultipartUploader(cogClientMixin.getCogniteClient(),
+                cogClientMixin.getProjectUrl(), multipartThreads).withPartSize(multipartPartSize)) {
+            UploadPipeline uploadPipeline = new UploadPipeline(cogClientMixin.getCogniteClient(), this::readFile)
+                    .withReaderThreads(readerThreads)
+                    .withUploaderThreads(uploadThreads)
+                    .withMaxInFlightBytes(inFlightBytes)
+                    .withPreUploadFunction(batch -> skipUnchangedContent || isSkipUnchangedFiles()
+                            ? skipUnchanged(batch) : batch)
+                    .withLargeFileUploader(multipartThreshold, container -> multipartUploader.upload(
+                            container.getFileMetadata(),
+                            Path.of(URI.create(container.getFileBinary().getBinaryUri())),
+                            container.getFileBinary().getContentLength()))
+                    .withPostUploadFunction(this::onUploaded)
+                    .withExceptionHandlerFunction(exception -> LOG.warn("Error during upload: {}", exception.getMessage()));
+
+            LOG.info("Start reading files...");
+            if (null != manifestFile) {
+                fileCounter = uploadPipeline.run(this::readManifest);
+            } else if (archiveInput) {
+                fileCounter = uploadPipeline.run(queue -> readArchive(queue, uploadPipeline, multipartUploader));
+            } else {
+                fileCounter = uploadPipeline.run(watch ? this::walkAndWatchInputPath : this::walkInputPath);
+            }
+            failedCounter = uploadPipeline.getFailedCount();
+            uploadedBytes = uploadPipeline.getUploadedBytes();
+        } finally {
+            if (null != uploadJournal) {
+                uploadJournal.close();
+            }
+            if (null != metadataIndex) {
+                metadataIndex.close();
+            }
+        }
+
+        if (skippedCounter.get() > 0) {
+            LOG.info("{} files are unchanged since the last upload and were skipped.", skippedCounter.get());
+        }
+        if (unchangedContentCounter.get() > 0) {
+            LOG.info("{} files already exist in CDF unchanged and were not uploaded again.",
+                    unchangedContentCounter.get());
+        }
+        if (otherShardCounter.get() > 0) {
+            LOG.info("{} files belong to other shards and were skipped.", otherShardCounter.get());
+        }
+        if (failedCounter > 0) {
+            LOG.warn("{} files could not be uploaded.", failedCounter);
+        }
+        LOG.info("File upload completed. {} files uploaded.", fileCounter);
+
+        summaryCounts.put("uploaded", fileCounter);
+        summaryCounts.put("uploadedBytes", uploadedBytes);
+        summaryCounts.put("failed", failedCounter);
+        summaryCounts.put("unchanged", skippedCounter.get() + unchangedContentCounter.get());
+        summaryCounts.put("otherShards", otherShardCounter.get());
+        int exitCode = afterUpload();
+        shardMixin.writeSummary(getCommandName(), exitCode, summaryCounts);
+        return exitCode;
+    }
+
+    /*
+    The command name used for the metrics.
+     */
+    String getCommandName() {
+        return "upload";
+    }
+
+    /*
+    Whether to skip files that already exist in CDF with the same size and modified time. The modified time and size
+    of each file are then recorded in CDF as well. Overridden by sync.
+     */
+    boolean isSkipUnchangedFiles() {
+        return false;
+    }
+
+    /*
+    Called when all files have been uploaded. Returns the exit code. Overridden by sync.
+     */
+    int afterUpload() throws Exception {
+        return 0;
+    }
+
+    /*
+    Prepares a file for upload. Returns null if the journal shows that the file is unchanged since it was last uploaded.
+     */
+    private FileContainer readFile(FileEntry entry) throws Exception {
+        String externalId = buildExternalId(entry);
+        if (!isInShard(externalId) || isUnchangedInJournal(entry, externalId)) {
+            return null;
+        }
+
+        // Hash the content on the reader thread, so hashing runs in parallel across files
+        byte[] contentHash = null;
+        if (null != uploadJournal || skipUnchangedContent) {
+            StageEvent hashEvent = StageTracer.begin(StageTracer.Stage.HASH);
+            contentHash = null == entry.content() ? ContentHasher.hash(entry.path()) : ContentHasher.hash(entry.content());
+            StageTracer.end(hashEvent, 1, entry.size());
+        }
+        if (null != uploadJournal) {
+            pendingJournalRecords.put(externalId, new UploadJournal.Record(externalId, entry.path().toString(),
+                    entry.size(), entry.lastModified(), contentHash));
+        }
+
+        StageEvent buildEvent = StageTracer.begin(StageTracer.Stage.BUILD);
+        FileContainer container = buildFileContainer(entry);
+        StageTracer.end(buildEvent);
+        if (skipUnchangedContent) {
+            container = container.toBuilder()
+                    .setFileMetadata(container.getFileMetadata().toBuilder()
+                            .putMetadata(CONTENT_HASH_METADATA_KEY, ContentHasher.toHex(contentHash)))
+                    .build();
+        }
+
+        return container;
+    }
+
+    /*
+    Returns true if the file belongs to this shard. Files are assigned to shards by their external id.
+     */
+    boolean isInShard(String externalId) {
+        if (shardMixin.includes(externalId)) {
+            return true;
+        }
+        otherShardCounter.incrementAndGet();
+        return false;
+    }
+
+    /*
+    Returns true if the journal shows that the file is unchanged since it was last uploaded.
+     */
+    private boolean isUnchangedInJournal(FileEntry entry, String externalId) {
+        if (null != uploadJournal && uploadJournal.isUnchanged(externalId, entry.size(), entry.lastModified())) {
+            LOG.debug("{} is unchanged since the last upload. Skipping.", entry.path());
+            skippedCounter.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /*
+    Removes the files that already exist in CDF unchanged from the batch. A file is unchanged if it has the same
+    content hash with --skip-unchanged-content, and otherwise the same size and modified time. The existing files are
+    looked up in the metadata index with --index-file, and otherwise with a single retrieve request per batch.
+     */
+    private List<FileContainer> skipUnchanged(List<FileContainer> batch) throws Exception {
+        List<Item> items = batch.stream()
+                .map(container -> Item.newBuilder().setExternalId(container.getFileMetadata().getExternalId()).build())
+                .toList();
+
+        StageEvent lookupEvent = StageTracer.begin(StageTracer.Stage.CONTENT_LOOKUP);
+        Map<String, FileMetadata> existingFiles = new HashMap<>();
+        if (null != metadataIndex) {
+            for (Item item : items) {
+                metadataIndex.get(item.getExternalId())
+                        .ifPresent(fileMetadata -> existingFiles.put(fileMetadata.getExternalId(), fileMetadata));
+            }
+        } else {
+            for (FileMetadata fileMetadata : cogClientMixin.getCogniteClient().files().retrieve(items)) {
+                existingFiles.put(fileMetadata.getExternalId(), fileMetadata);
+            }
+        }
+        StageTracer.end(lookupEvent, items.size(), 0);
+
+        List<FileContainer> changedFiles = new ArrayList<>(batch.size());
+        List<FileMetadata> unchangedFiles = new ArrayList<>();
+        for (FileContainer container : batch) {
+            FileMetadata local = container.getFileMetadata();
+            FileMetadata existing = existingFiles.get(local.getExternalId());
+            if (null != existing && existing.getUploaded() && (skipUnchangedContent
+                    ? local.getMetadataOrDefault(CONTENT_HASH_METADATA_KEY, "")
+                            .equals(existing.getMetadataOrDefault(CONTENT_HASH_METADATA_KEY, null))
+                    : local.getSourceModifiedTime() == existing.getSourceModifiedTime()
+                            && local.getMetadataOrDefault(SIZE_METADATA_KEY, "")
+                            .equals(existing.getMetadataOrDefault(SIZE_METADATA_KEY, null)))) {
+                LOG.debug("{} already exists in CDF unchanged. Skipping.", existing.getName());
+                unchangedFiles.add(existing);
+            } else {
+                changedFiles.add(container);
+            }
+        }
+
+        if (!unchangedFiles.isEmpty()) {
+            unchangedContentCounter.addAndGet(unchangedFiles.size());
+            recordInJournal(unchangedFiles);
+        }
+
+        return changedFiles;
+    }
+
+    /*
+    Called with the results of each successful upload batch. Records the uploads in the journal.
+     */
+    private void onUploaded(List<FileMetadata> fileMetadataList) {
+        fileMetadataList.forEach(fileMetadata -> LOG.info("Finished uploading {}.", fileMetadata.getName()));
+        recordInJournal(fileMetadataList);
+    }
+
+    /*
+    Appends the files confirmed to be in CDF to the upload journal.
+     */
+    private void recordInJournal(List<FileMetadata> fileMetadataList) {
+        if (null != uploadJournal) {
+            try {
+                for (FileMetadata fileMetadata : fileMetadataList) {
+                    UploadJournal.Record record = pendingJournalRecords.remove(fileMetadata.getExternalId());
+                    if (null != record) {
+                        uploadJournal.append(record);
                     }
                 }
+                uploadJournal.flush();
+            } catch (IOException e) {
+                LOG.warn("Error when writing to the upload journal: {}", e.toString());
+            }
+        }
+    }
+
+    /*
+    Walks the input path and puts every regular file on the queue. The file attributes are read once, during the walk.
+     */
+    void walkInputPath(BlockingQueue<FileEntry> queue) throws Exception {
+        BasicFileAttributes rootAttributes = Files.readAttributes(inputPath, BasicFileAttributes.class);
+
+        // If the input path is a single file
+        if (rootAttributes.isRegularFile()) {
+            LOG.info("The input path {} is a single file.", inputPath.toString());
+            queue.put(FileEntry.of(inputPath, inputPath, rootAttributes));
+            return;
+        }
+
+        // If the input path is a directory, traverse it. Only walk recursively if configured to do so.
+        if (rootAttributes.isDirectory()) {
+            LOG.info("The input path {} is a directory. Will traverse it{}.",
+                    inputPath.toString(),
+                    recursive ? " recursively" : "");
+            try {
+                Files.walkFileTree(inputPath, EnumSet.noneOf(FileVisitOption.class), recursive ? Integer.MAX_VALUE : 1,
+                        new SimpleFileVisitor<>() {
+                            @Override
+                            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                                if (!attributes.isRegularFile()) {
+                                    LOG.info("{} is not a regular file. Skipping.", file);
+                                    return FileVisitResult.CONTINUE;
+                                }
+                                try {
+                                    queue.put(FileEntry.of(inputPath, file, attributes));
+                                } catch (InterruptedException e) {
+                                    Thread.currentThread().interrupt();
+                                    throw new InterruptedIOException("Interrupted while traversing the input directory.");
+                                }
+                                return FileVisitResult.CONTINUE;
+                            }
+
+                            @Override
+                            public FileVisitResult visitFileFailed(Path file, IOException exception) {
+                                LOG.warn("{} is not readable. Skipping. {}", file, exception.toString());
+                                return FileVisitResult.CONTINUE;
+                            }
+                        });
             } catch (Exception e) {
                 LOG.warn("Error when traversing the input directory: {}", e.toString());
                 throw e;
             }
         }
+    }
 
-        // Stop the upload queue. This will also perform a final upload.
-        fileBinaryUploadQueue.stop();
-        LOG.info("File upload completed. {} files uploaded.", fileCounter);
-        return 0;
+    /*
+    Reads the manifest row by row and puts every listed file on the queue. The manifest is never held in memory, and
+    the queue blocks the reader while the pipeline is busy.
+     */
+    private void readManifest(BlockingQueue<FileEntry> queue) throws Exception {
+        LOG.info("Reading the files to upload from the manifest {}.", manifestFile);
+        ManifestReader manifestReader = new ManifestReader(manifestFile, inputPath.toAbsolutePath().normalize());
+        manifestReader.read(queue::put);
+        LOG.info("Read {} rows from the manifest. {} rows were skipped.",
+                manifestReader.getRowCount(), manifestReader.getSkippedCount());
+    }
+
+    /*
+    Reads the entries of the input archive, without extracting it to disk. Entries below the multipart threshold are
+    extracted into memory and put on the queue, ahead of the uploads as far as the in-flight budget of the pipeline
+    allows. The budget is charged before an entry is extracted, so extracted and queued entries count together. Larger
+    entries are streamed to CDF in parts on this thread, one part in memory per concurrent part upload.
+     */
+    private void readArchive(BlockingQueue<FileEntry> queue, UploadPipeline uploadPipeline,
+                             MultipartUploader multipartUploader) throws Exception {
+        LOG.info("The input path {} is an archive. Will upload its entries{}.",
+                inputPath.toString(),
+                recursive ? " recursively" : "");
+        ArchiveReader archiveReader = new ArchiveReader(inputPath, recursive);
+        archiveReader.read((entry, content) -> {
+            String externalId = buildExternalId(entry);
+            if (!isInShard(externalId) || isUnchangedInJournal(entry, externalId)) {
+                return;
+            }
+
+            if (entry.size() >= Math.min(multipartThreshold, MAX_BUFFERED_ENTRY_BYTES)) {
+                uploadPipeline.uploadSingle(entry.size(),
+                        () -> uploadArchiveEntryInParts(entry, content, multipartUploader));
+                return;
+            }
+
+            uploadPipeline.acquireReadAhead(entry.size());
+            try {
+                StageEvent extractEvent = StageTracer.begin(StageTracer.Stage.EXTRACT);
+                byte[] bytes = content.readNBytes((int) entry.size());
+                StageTracer.end(extractEvent, 1, bytes.length);
+                if (bytes.length != entry.size()) {
+                    throw new EOFException(String.format("%s ended after %d of %d bytes.",
+                            entry.path(), bytes.length, entry.size()));
+                }
+                queue.put(entry.withContent(UnsafeByteOperations.unsafeWrap(bytes)));
+            } catch (Exception e) {
+                uploadPipeline.releaseReadAhead(entry.size());
+                throw e;
+            }
+        });
+        LOG.info("Read {} entries from the archive. {} entries were skipped.",
+                archiveReader.getEntryCount(), archiveReader.getSkippedCount());
+    }
+
+    /*
+    Uploads a large archive entry in parts, straight from the archive stream. The content hash for the journal is
+    computed while the parts are read.
+     */
+    private FileMetadata uploadArchiveEntryInParts(FileEntry entry, InputStream content,
+                                                   MultipartUploader multipartUploader) throws Exception {
+        FileMetadata fileMetadata = buildFileMetadata(entry);
+        DigestInputStream digestStream = new DigestInputStream(content, ContentHasher.newDigest());
+        FileMetadata result = multipartUploader.upload(fileMetadata, digestStream, entry.size());
+        if (null != uploadJournal) {
+            pendingJournalRecords.put(fileMetadata.getExternalId(), new UploadJournal.Record(fileMetadata.getExternalId(),
+                    entry.path().toString(), entry.size(), entry.lastModified(), digestStream.getMessageDigest().digest()));
+        }
+        return result;
+    }
+
+    /*
+    Uploads the files in the input directory, then keeps watching it for new and modified files. The watch is started
+    before the walk, so files created during the walk are not missed.
+     */
+    private void walkAndWatchInputPath(BlockingQueue<FileEntry> queue) throws Exception {
+        try (DirectoryWatcher directoryWatcher = new DirectoryWatcher(inputPath, recursive, watchSettleTime)) {
+            walkInputPath(queue);
+            directoryWatcher.run(queue);
+        }
     }
 
     /*
     Builds the file metadata and file container to prepare for file upload to Cognite Data Fusion.
+
+    The file binary is referenced by its URI instead of being read into memory. The SDK opens a channel to the file
+    and streams it in chunks while sending the request, so heap usage is independent of the file size. Archive entries
+    are already in memory, and their content is used as is.
      */
-    private FileContainer buildFileContainer(Path path) throws Exception {
-        // Build default metadata values
+    FileContainer buildFileContainer(FileEntry entry) throws Exception {
+        FileBinary.Builder binaryBuilder = FileBinary.newBuilder().setContentLength(entry.size());
+        if (null != entry.content()) {
+            binaryBuilder.setBinary(entry.content());
+        } else {
+            // Add the file binary as a reference to the file on disk. It will be streamed during upload.
+            binaryBuilder.setBinaryUri(entry.path().toUri().toString());
+        }
+
+        return FileContainer.newBuilder()
+                .setFileMetadata(buildFileMetadata(entry))
+                .setFileBinary(binaryBuilder)
+                .build();
+    }
+
+    /*
+    Builds the file metadata of a file entry.
+     */
+    private FileMetadata buildFileMetadata(FileEntry entry) throws Exception {
+        // Build default metadata values. The external id is based on the path relative to the input directory
+        // so that files with the same name in different sub-directories do not collide.
         FileMetadata.Builder metadataBuilder = FileMetadata.newBuilder()
-                .setName(path.getFileName().toString())
-                .setExternalId(extIdPrefix + path.getFileName().toString())
+                .setName(entry.fileName())
+                .setExternalId(buildExternalId(entry))
                 .setSource(fileSource);
 
-        if (null != fileDirectory && !fileDirectory.isBlank())
-            metadataBuilder.setDirectory(fileDirectory);
+        // Sync compares the modified time and size with the existing file, so record them in CDF
+        if (isSkipUnchangedFiles()) {
+            metadataBuilder
+                    .setSourceModifiedTime(entry.lastModified())
+                    .putMetadata(SIZE_METADATA_KEY, String.valueOf(entry.size()));
+        }
+
+        String directory = buildDirectory(entry);
+        if (!directory.isBlank())
+            metadataBuilder.setDirectory(directory);
 
         getDataSetIntId().ifPresent(dsId -> metadataBuilder.setDataSetId(dsId));
 
-        // The file countainer builder
-        FileContainer.Builder containerBuilder = FileContainer.newBuilder();
+        // Manifest values take precedence over the defaults
+        if (null != entry.overrides()) {
+            metadataBuilder.mergeFrom(entry.overrides());
+        }
 
-        if (Files.isReadable(path) && Files.isRegularFile(path)) {
-            // Add the file binary
-            containerBuilder.setFileBinary(FileBinary.newBuilder().setBinary(ByteString.copyFrom(Files.readAllBytes(path))));
-        } else {
-            LOG.info("{} is directory or not readable. Building and empty file container.", path.toString());
+        return metadataBuilder.build();
+    }
+
+    /*
+    Builds the file external id from the prefix and the path relative to the input directory, unless the manifest
+    specifies it.
+     */
+    private String buildExternalId(FileEntry entry) {
+        if (null != entry.overrides() && entry.overrides().hasExternalId()) {
+            return entry.overrides().getExternalId();
+        }
+        return extIdPrefix + entry.relativePath();
+    }
+
+    /*
+    Builds the CDF file directory. Sub-directories of the input directory are appended to the configured file directory.
+     */
+    private String buildDirectory(FileEntry entry) {
+        return buildDirectory(entry.relativeDirectory());
+    }
+
+    /*
+    Builds the CDF file directory of a directory relative to the input directory.
+     */
+    String buildDirectory(String relativeDirectory) {
+        String directory = null == fileDirectory ? "" : fileDirectory.strip();
+        if (relativeDirectory.isEmpty()) {
+            return directory;
         }
 
-        return containerBuilder.setFileMetadata(metadataBuilder.build()).build();
+        if (directory.endsWith("/")) {
+            directory = directory.substring(0, directory.length() - 1);
+        }
+        return directory + "/" + relativeDirectory;
+    }
+
+    /*
+    Returns true if a data set is configured, by id or external id.
+     */
+    boolean hasDataSet() {
+        return dataSetId != -1 || null != dataSetExtId;
     }
 
     /*
-    Return the data set internal id.
+    Resolves the data set internal id. Called once before the upload pipeline starts, so the reader threads only read
+    the resolved id.
 
     If the data set external id has been configured, this method will translate this to the corresponding
     internal id.
      */
-    private OptionalLong getDataSetIntId() throws Exception {
-        if (null == dataSetIntId) {
-            if (dataSetId != -1) {
-                dataSetIntId = OptionalLong.of(dataSetId);
-            } else if (null != dataSetExtId) {
-                // Get the data set id
-                LOG.info("Looking up the data set external id: {}.",
-                        dataSetExtId);
-                List<DataSet> dataSets = cogClientMixin.getCogniteClient().datasets()
-                        .retrieve(List.of(Item.newBuilder().setExternalId(dataSetExtId).build()));
-
-                if (dataSets.size() != 1) {
-                    // The provided data set external id cannot be found.
-                    String message = String.format("The configured data set external id does not exist: %s", dataSetExtId);
-                    LOG.error(message);
-                    throw new Exception(message);
-                }
-                dataSetIntId = OptionalLong.of(dataSets.get(0).getId());
-            } else {
-                dataSetIntId = OptionalLong.empty();
+    private void resolveDataSetIntId() throws Exception {
+        if (dataSetId != -1) {
+            dataSetIntId = OptionalLong.of(dataSetId);
+        } else if (null != dataSetExtId) {
+            // Get the data set id
+            LOG.info("Looking up the data set external id: {}.",
+                    dataSetExtId);
+            StageEvent lookupEvent = StageTracer.begin(StageTracer.Stage.DATA_SET_LOOKUP);
+            List<DataSet> dataSets = cogClientMixin.getCogniteClient().datasets()
+                    .retrieve(List.of(Item.newBuilder().setExternalId(dataSetExtId).build()));
+            StageTracer.end(lookupEvent, 1, 0);
+
+            if (dataSets.size() != 1) {
+                // The provided data set external id cannot be found.
+                String message = String.format("The configured data set external id does not exist: %s", dataSetExtId);
+                LOG.error(message);
+                throw new Exception(message);
             }
+            dataSetIntId = OptionalLong.of(dataSets.get(0).getId());
+        } else {
+            dataSetIntId = OptionalLong.empty();
         }
+    }
 
+    /*
+    Return the data set internal id, as resolved before the upload pipeline started.
+     */
+    OptionalLong getDataSetIntId() {
         return dataSetIntId;
     }
 }
@@ -0,0 +1,58 @@
+package com.cognite.cli;
+
+import com.cognite.client.Request;
+import com.cognite.client.dto.FileMetadata;
+import picocli.CommandLine.Option;
+
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * The {@code --filter} and {@code --metadata-filter} options for selecting files, and the CDF request or local
+ * {@link MetadataIndex} predicate they translate to.
+ */
+public class FilterMixin {
+
+    @Option(names = {"--filter"}, description = "A file filter expression in the format <key=value>. You can specify multiple filters",
+            arity = "0..1", interactive = true, echo = true)
+    private Map<String, Object> filter;
+
+    @Option(names = {"--metadata-filter"}, description = "A file metadata filter expression in the format <key=value>. You can specify multiple filters",
+            arity = "0..1", interactive = true, echo = true)
+    private Map<String, String> metadataFilter;
+
+    /*
+    Returns true if a filter or metadata filter is specified.
+     */
+    boolean isSpecified() {
+        return null != filter && !filter.isEmpty() || null != metadataFilter && !metadataFilter.isEmpty();
+    }
+
+    /*
+    Builds the request to filter files based on the filter and metadata filter parameters.
+     */
+    Request buildRequest() {
+        Request request = Request.create();
+        if (null != filter) {
+            for (Map.Entry<String, Object> entry : filter.entrySet()) {
+                request = request.withFilterParameter(entry.getKey(), entry.getValue());
+            }
+        }
+
+        if (null != metadataFilter) {
+            for (Map.Entry<String, String> entry : metadataFilter.entrySet()) {
+                request = request.withFilterMetadataParameter(entry.getKey(), entry.getValue());
+            }
+        }
+
+        return request;
+    }
+
+    /*
+    Builds the predicate evaluating the filters on a metadata index.
+    Throws IllegalArgumentException if a filter cannot be evaluated on the index.
+     */
+    Predicate<FileMetadata> buildPredicate() {
+        return MetadataIndex.buildFilterPredicate(filter, metadataFilter);
+    }
+}
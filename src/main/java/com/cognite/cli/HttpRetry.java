@@ -0,0 +1,103 @@
+package com.cognite.cli;
+
+import io.prometheus.client.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import shaded.okhttp3.Response;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retries HTTP requests that the SDK does not cover, such as multipart uploads and file downloads.
+ *
+ * Connection errors, throttling (429) and server errors (5xx) are retried with exponential backoff and full jitter,
+ * like the delete batches in {@link DeleteEngine}. Other client errors fail right away.
+ */
+final class HttpRetry {
+    private static Logger LOG = LoggerFactory.getLogger(HttpRetry.class);
+
+    private static final long BASE_BACKOFF_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    /**
+     * A single attempt of a request.
+     */
+    @FunctionalInterface
+    interface Attempt<T> {
+        T run() throws IOException;
+    }
+
+    /**
+     * A response with an unsuccessful status code.
+     */
+    static class StatusException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final int code;
+
+        StatusException(int code, String message) {
+            super(String.format("Request failed with status %d: %s", code, message));
+            this.code = code;
+        }
+
+        int getCode() {
+            return code;
+        }
+
+        boolean isRetryable() {
+            return code == 429 || code >= 500;
+        }
+    }
+
+    private HttpRetry() {
+    }
+
+    /**
+     * Runs a request, retrying it on retryable errors.
+     *
+     * @param maxRetries The maximum number of retries.
+     * @param description What the request does, for logging.
+     * @param retryCounter The metric to count the retries in.
+     * @param attempt The request.
+     * @return The result of the first successful attempt.
+     * @throws IOException if the request fails with a non-retryable error, or still fails after all retries.
+     */
+    static <T> T execute(int maxRetries, String description, Counter.Child retryCounter, Attempt<T> attempt)
+            throws IOException, InterruptedException {
+        for (int retry = 0; ; retry++) {
+            try {
+                return attempt.run();
+            } catch (StatusException e) {
+                if (!e.isRetryable() || retry >= maxRetries) {
+                    throw e;
+                }
+                backoff(retry, description, retryCounter, e);
+            } catch (IOException e) {
+                if (retry >= maxRetries) {
+                    throw e;
+                }
+                backoff(retry, description, retryCounter, e);
+            }
+        }
+    }
+
+    /*
+    Throws a StatusException, including the response body in the message, if the response is not successful.
+     */
+    static void checkStatus(Response response) throws IOException {
+        if (!response.isSuccessful()) {
+            String message = null == response.body() ? "" : response.body().string();
+            throw new StatusException(response.code(), message);
+        }
+    }
+
+    private static void backoff(int retry, String description, Counter.Child retryCounter, IOException e)
+            throws InterruptedException {
+        long backoffMillis = ThreadLocalRandom.current()
+                .nextLong(Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << retry) + 1);
+        LOG.warn("Error in the {}. Retrying in {} ms. {}", description, backoffMillis, e.toString());
+        retryCounter.inc();
+        Thread.sleep(backoffMillis);
+    }
+}
@@ -0,0 +1,266 @@
+package com.cognite.cli;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Reads file ids from newline separated or CSV files.
+ *
+ * The id is taken from the first column of each line. Lines where the first column is not an id, such as a CSV
+ * header, are skipped. Internal ids are parsed directly from the raw bytes into a primitive {@code long[]}, without
+ * creating a {@code String} or {@code Long} per line, so millions of ids can be read in seconds using 8 bytes each.
+ * Lines that hold something else than an id, apart from a header in the first line, are counted and logged.
+ *
+ * External ids are deduplicated by their 64-bit stable hash in a primitive hash table, which takes about 24 bytes per
+ * external id whatever its length. Each hash is stored with a second, independent 32-bit hash of the external id, so
+ * two distinct external ids sharing the 64-bit hash are told apart instead of one being dropped as a duplicate, unless
+ * both hashes collide. Such collisions are counted and logged, and the few external ids involved are deduplicated by
+ * their full value.
+ */
+final class IdFileReader {
+    private static Logger LOG = LoggerFactory.getLogger(IdFileReader.class);
+
+    private static final int READ_BUFFER_SIZE = 1 << 20;
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private IdFileReader() {
+    }
+
+    /*
+    Reads the internal ids from the file. Returns the ids sorted and without duplicates.
+     */
+    static long[] readIds(Path idFile) throws IOException {
+        IdParser parser = new IdParser((int) Math.min(MAX_ARRAY_SIZE, Math.max(1024, Files.size(idFile) / 16)));
+
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(idFile, StandardOpenOption.READ)) {
+            while (channel.read(buffer) != -1) {
+                byte[] bytes = buffer.array();
+                for (int i = 0; i < buffer.position(); i++) {
+                    parser.accept(bytes[i]);
+                }
+                buffer.clear();
+            }
+        }
+        // The last line may not end with a line break
+        parser.accept((byte) '\n');
+
+        if (parser.rejectedCounter > 0) {
+            LOG.warn("Skipped {} lines in {} that do not hold a valid id. The first one is line {}.",
+                    parser.rejectedCounter, idFile, parser.firstRejectedLine);
+        }
+        return parser.sortedUniqueIds();
+    }
+
+    /*
+    Streams the external ids from the file to the consumer, skipping duplicates. A first line holding the column name
+    "externalId" or "external_id" is treated as a header and skipped.
+     */
+    static void readExternalIds(Path externalIdFile, ExternalIdConsumer consumer)
+            throws IOException, InterruptedException {
+        HashTable seen = new HashTable();
+        // The external ids sharing a 64-bit hash with another external id
+        Set<String> collidedExternalIds = new HashSet<>();
+        long collisionCounter = 0;
+        try (BufferedReader reader = Files.newBufferedReader(externalIdFile, StandardCharsets.UTF_8)) {
+            String line;
+            boolean firstLine = true;
+            while (null != (line = reader.readLine())) {
+                String externalId = firstColumn(line);
+                if (firstLine && (externalId.equalsIgnoreCase("externalId") || externalId.equalsIgnoreCase("external_id"))) {
+                    firstLine = false;
+                    continue;
+                }
+                firstLine = false;
+
+                if (externalId.isEmpty()) {
+                    continue;
+                }
+                switch (seen.add(StableHash.of(externalId), externalId.hashCode())) {
+                    case ADDED -> consumer.accept(externalId);
+                    case COLLISION -> {
+                        if (collidedExternalIds.add(externalId)) {
+                            collisionCounter++;
+                            consumer.accept(externalId);
+                        }
+                    }
+                    case DUPLICATE -> {
+                    }
+                }
+            }
+        }
+
+        if (collisionCounter > 0) {
+            LOG.warn("{} external ids in {} share a 64-bit hash with another external id. They were compared by "
+                    + "value and none were dropped.", collisionCounter, externalIdFile);
+        }
+    }
+
+    @FunctionalInterface
+    interface ExternalIdConsumer {
+        void accept(String externalId) throws InterruptedException;
+    }
+
+    private static String firstColumn(String line) {
+        String column = line;
+        if (line.startsWith("\"")) {
+            int end = line.indexOf('"', 1);
+            column = end < 0 ? line.substring(1) : line.substring(1, end);
+        } else {
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (c == ',' || c == ';' || c == '\t') {
+                    column = line.substring(0, i);
+                    break;
+                }
+            }
+        }
+        return column.strip();
+    }
+
+    /*
+    Parses ids from a byte stream, one byte at a time, into a growable primitive array. An id is accepted with the
+    same rules as Long.parseLong(), apart from the sign, after stripping spaces and quotes around it.
+     */
+    private static final class IdParser {
+        private long[] ids;
+        private int count = 0;
+        private long lineCounter = 0;
+        private long rejectedCounter = 0;
+        private long firstRejectedLine = 0;
+
+        // State for the current line
+        private long value = 0;
+        private int digits = 0;
+        private boolean afterId = false;
+        private boolean inFirstColumn = true;
+        private boolean validLine = true;
+
+        IdParser(int initialCapacity) {
+            ids = new long[initialCapacity];
+        }
+
+        void accept(byte b) {
+            if (b == '\n') {
+                lineCounter++;
+                if (validLine && digits > 0) {
+                    if (count == ids.length) {
+                        ids = Arrays.copyOf(ids, (int) Math.min(MAX_ARRAY_SIZE, ids.length * 2L));
+                    }
+                    ids[count++] = value;
+                } else if (!validLine && lineCounter > 1) {
+                    // An invalid first line is a header
+                    if (rejectedCounter++ == 0) {
+                        firstRejectedLine = lineCounter;
+                    }
+                }
+                value = 0;
+                digits = 0;
+                afterId = false;
+                inFirstColumn = true;
+                validLine = true;
+            } else if (!inFirstColumn || !validLine) {
+                // Skip the rest of the line
+            } else if (b >= '0' && b <= '9') {
+                // A digit after the end of the id, e.g. "12 34", or an id larger than Long.MAX_VALUE is not an id
+                int digit = b - '0';
+                validLine = !afterId && value <= (Long.MAX_VALUE - digit) / 10;
+                value = value * 10 + digit;
+                digits++;
+            } else if (b == ',' || b == ';' || b == '\t') {
+                inFirstColumn = false;
+            } else if (b == ' ' || b == '"' || b == '\r') {
+                afterId = digits > 0;
+            } else {
+                // Anything but whitespace and quotes around the id means this is not an id, e.g. a header
+                validLine = false;
+            }
+        }
+
+        /*
+        Sorts the ids and removes duplicates in place.
+         */
+        long[] sortedUniqueIds() {
+            Arrays.sort(ids, 0, count);
+            int unique = 0;
+            for (int i = 0; i < count; i++) {
+                if (unique == 0 || ids[i] != ids[unique - 1]) {
+                    ids[unique++] = ids[i];
+                }
+            }
+            return Arrays.copyOf(ids, unique);
+        }
+    }
+
+    private enum AddResult {
+        ADDED, DUPLICATE, COLLISION
+    }
+
+    /*
+    A set of 64-bit hashes, each with a 32-bit check hash, in an open addressing table with linear probing, as the
+    upload journal index.
+     */
+    private static final class HashTable {
+        private static final long EMPTY = 0L;
+
+        private long[] keys = new long[1024];
+        private int[] checks = new int[1024];
+        private int size = 0;
+
+        /*
+        Adds the key with its check hash. Returns DUPLICATE if the key is present with the same check, and COLLISION if
+        it is present with another check, that is, for a different value with the same key.
+         */
+        AddResult add(long key, int check) {
+            if (key == EMPTY) {
+                key = 1L;
+            }
+            if ((size + 1) * 4L > keys.length * 3L) {
+                resize();
+            }
+            int slot = slot(key, keys);
+            if (keys[slot] == key) {
+                return checks[slot] == check ? AddResult.DUPLICATE : AddResult.COLLISION;
+            }
+            keys[slot] = key;
+            checks[slot] = check;
+            size++;
+            return AddResult.ADDED;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            int[] oldChecks = checks;
+            keys = new long[oldKeys.length * 2];
+            checks = new int[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    int slot = slot(oldKeys[i], keys);
+                    keys[slot] = oldKeys[i];
+                    checks[slot] = oldChecks[i];
+                }
+            }
+        }
+
+        private static int slot(long key, long[] keys) {
+            int mask = keys.length - 1;
+            int slot = (int) key & mask;
+            while (keys[slot] != EMPTY && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.cognite.cli;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import picocli.CommandLine.Option;
+
+import java.nio.file.Path;
+import java.util.OptionalLong;
+
+/**
+ * Options for using a local {@link MetadataIndex} of the CDF files instead of looking them up in CDF.
+ *
+ * The index is refreshed incrementally when it is opened, which lists only the files updated since the last refresh.
+ * With {@code --index-offline} the index is used as it is, and the command runs without any listing requests.
+ */
+public class IndexMixin {
+    private static Logger LOG = LoggerFactory.getLogger(IndexMixin.class);
+
+    @Option(names = "--index-file", description = "A local index of the CDF file metadata, created by files index. "
+            + "Filters and existence checks are evaluated on the index, after refreshing it with the files updated "
+            + "since the last refresh.",
+            arity = "0..1", interactive = true, echo = true)
+    private Path indexFile;
+
+    @Option(names = "--index-offline", description = "Use the local index as it is, without refreshing it from CDF.")
+    private boolean offline;
+
+    boolean isEnabled() {
+        return null != indexFile;
+    }
+
+    /*
+    Opens the index and refreshes it, unless offline. An index that has never been refreshed is always refreshed.
+     */
+    MetadataIndex open(CogClientMixin cogClientMixin, OptionalLong dataSetId, boolean fullRefresh) throws Exception {
+        MetadataIndex index = MetadataIndex.open(indexFile, cogClientMixin.getCdfProject(), dataSetId);
+        try {
+            if (offline && !fullRefresh && index.getWatermark() > 0) {
+                LOG.info("Using the metadata index {} without refreshing it.", indexFile);
+            } else {
+                index.refresh(cogClientMixin.getCogniteClient(), fullRefresh);
+            }
+        } catch (Exception e) {
+            index.close();
+            throw e;
+        }
+        return index;
+    }
+}
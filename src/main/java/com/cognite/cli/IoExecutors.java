@@ -0,0 +1,80 @@
+package com.cognite.cli;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the executors for the I/O-bound work of the CLI: disk reads, hashing, metadata lookups and API calls.
+ *
+ * The executors start a new thread per task and do not limit concurrency themselves. Each stage limits its own
+ * concurrency, with a semaphore or a fixed number of stage loops. On Java 21 and later the tasks run on virtual
+ * threads, which are cheap to create and to block, so thousands of requests can be in flight for a few MB of stack.
+ * On older runtimes, or with {@code -Dcdf.cli.threads=platform}, the tasks run on a cached pool of platform threads.
+ *
+ * The CLI is compiled for Java 17, so the virtual thread executor is looked up at runtime.
+ */
+final class IoExecutors {
+    private static Logger LOG = LoggerFactory.getLogger(IoExecutors.class);
+
+    static final String THREADS_PROPERTY = "cdf.cli.threads";
+
+    private static final MethodHandle newVirtualThreadPerTaskExecutor = lookupVirtualThreadExecutor();
+    private static final AtomicInteger platformThreadCounter = new AtomicInteger();
+
+    enum Mode {
+        VIRTUAL, PLATFORM
+    }
+
+    private IoExecutors() {
+    }
+
+    /*
+    Returns the thread mode in use: virtual threads when available, unless platform threads are requested.
+     */
+    static Mode mode() {
+        if (null == newVirtualThreadPerTaskExecutor
+                || Mode.PLATFORM.name().equalsIgnoreCase(System.getProperty(THREADS_PROPERTY))) {
+            return Mode.PLATFORM;
+        }
+        return Mode.VIRTUAL;
+    }
+
+    /**
+     * Creates an executor running each task on its own thread.
+     *
+     * @param name The name prefix of the platform threads. Virtual threads are unnamed.
+     * @return The executor. Shut it down when the work is done.
+     */
+    static ExecutorService newExecutor(String name) {
+        if (mode() == Mode.VIRTUAL) {
+            try {
+                return (ExecutorService) newVirtualThreadPerTaskExecutor.invokeExact();
+            } catch (Throwable e) {
+                LOG.warn("Unable to create a virtual thread executor. Using platform threads. {}", e.toString());
+            }
+        }
+
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + platformThreadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static MethodHandle lookupVirtualThreadExecutor() {
+        try {
+            return MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+                    MethodType.methodType(ExecutorService.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            LOG.debug("Virtual threads are not available on this runtime. Using platform threads.");
+            return null;
+        }
+    }
+}
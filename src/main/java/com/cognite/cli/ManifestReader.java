@@ -0,0 +1,243 @@
+package com.cognite.cli;
+
+import com.cognite.client.dto.FileMetadata;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvFactory;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Reads an upload manifest: a JSON Lines or CSV file listing the files to upload, with per-file metadata.
+ *
+ * Each JSON line is an object, and each CSV row has the columns named in the header row:
+ * <ul>
+ *     <li>{@code path}: The file to upload, absolute or relative to the upload root. Required.</li>
+ *     <li>{@code externalId}, {@code name}, {@code directory}, {@code source}, {@code mimeType}: Override the
+ *     defaults derived from the path and the command options.</li>
+ *     <li>{@code dataSetId}: The data set id.</li>
+ *     <li>{@code assetIds}: The asset ids to link the file to. A JSON array, or ids separated by {@code ;} in CSV.</li>
+ *     <li>{@code metadata}: A JSON object of metadata. In CSV, one {@code metadata.<key>} column per key.</li>
+ * </ul>
+ *
+ * The manifest is read with a streaming {@link JsonParser}, one row at a time, and each row is handed on before the
+ * next is read. Manifests with millions of rows are read in constant memory, and uploads start with the first row.
+ */
+final class ManifestReader {
+    private static Logger LOG = LoggerFactory.getLogger(ManifestReader.class);
+
+    private static final String METADATA_COLUMN_PREFIX = "metadata.";
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    private static final CsvFactory csvFactory = new CsvFactory();
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Path manifestFile;
+    private final Path root;
+    private final Set<String> unknownFields = new HashSet<>();
+    private long rowCounter = 0;
+    private long skippedCounter = 0;
+
+    @FunctionalInterface
+    interface EntryConsumer {
+        void accept(FileEntry entry) throws InterruptedException;
+    }
+
+    /**
+     * Creates a reader.
+     *
+     * @param manifestFile The manifest. Files ending with {@code .csv} are read as CSV, others as JSON Lines.
+     * @param root The directory that relative paths are resolved against, and that the default external ids and
+     *             directories are relative to.
+     */
+    ManifestReader(Path manifestFile, Path root) {
+        this.manifestFile = manifestFile;
+        this.root = root;
+    }
+
+    long getRowCount() {
+        return rowCounter;
+    }
+
+    long getSkippedCount() {
+        return skippedCounter;
+    }
+
+    /*
+    Reads the manifest and passes one entry per valid row to the consumer. Invalid rows and missing files are logged
+    and skipped.
+     */
+    void read(EntryConsumer consumer) throws IOException, InterruptedException {
+        try (JsonParser parser = createParser()) {
+            JsonToken token;
+            while (null != (token = parser.nextToken())) {
+                if (token != JsonToken.START_OBJECT) {
+                    throw new IOException(String.format("Invalid manifest %s at line %d: expected an object per row.",
+                            manifestFile, parser.getCurrentLocation().getLineNr()));
+                }
+                rowCounter++;
+                long line = parser.getCurrentLocation().getLineNr();
+                FileEntry entry = readRow(parser, line);
+                if (null == entry) {
+                    skippedCounter++;
+                } else {
+                    consumer.accept(entry);
+                }
+            }
+        }
+    }
+
+    private JsonParser createParser() throws IOException {
+        if (manifestFile.getFileName().toString().toLowerCase().endsWith(".csv")) {
+            CsvParser parser = csvFactory.createParser(Files.newBufferedReader(manifestFile));
+            parser.setSchema(CsvSchema.emptySchema().withHeader());
+            return parser;
+        }
+        return jsonFactory.createParser(Files.newBufferedReader(manifestFile));
+    }
+
+    /*
+    Reads the fields of one row, up to the end of its object. Returns null if the row is invalid or the file is missing.
+     */
+    private FileEntry readRow(JsonParser parser, long line) throws IOException {
+        String path = null;
+        String error = null;
+        FileMetadata.Builder overrides = FileMetadata.newBuilder();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (value == JsonToken.VALUE_NULL || value == JsonToken.VALUE_STRING && parser.getText().isBlank()) {
+                continue;
+            }
+
+            try {
+                switch (field) {
+                    case "path" -> path = parser.getText();
+                    case "externalId" -> overrides.setExternalId(parser.getText());
+                    case "name" -> overrides.setName(parser.getText());
+                    case "directory" -> overrides.setDirectory(parser.getText());
+                    case "source" -> overrides.setSource(parser.getText());
+                    case "mimeType" -> overrides.setMimeType(parser.getText());
+                    case "dataSetId" -> overrides.setDataSetId(Long.parseLong(parser.getText().strip()));
+                    case "assetIds" -> readAssetIds(parser, overrides);
+                    case "metadata" -> readMetadata(parser, overrides);
+                    default -> {
+                        if (field.startsWith(METADATA_COLUMN_PREFIX)) {
+                            overrides.putMetadata(field.substring(METADATA_COLUMN_PREFIX.length()), readText(parser));
+                        } else {
+                            parser.skipChildren();
+                            if (unknownFields.add(field)) {
+                                LOG.warn("Ignoring the unknown manifest field {}.", field);
+                            }
+                        }
+                    }
+                }
+            } catch (NumberFormatException e) {
+                parser.skipChildren();
+                error = String.format("%s is not a valid id: %s", field, e.getMessage());
+            }
+        }
+
+        if (null == error && null == path) {
+            error = "the path is missing";
+        }
+        if (null != error) {
+            LOG.warn("Skipping row at line {} of the manifest {}: {}.", line, manifestFile, error);
+            return null;
+        }
+
+        Path file = root.resolve(path).normalize();
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            LOG.warn("Skipping row at line {} of the manifest {}: {} does not exist.", line, manifestFile, file);
+            return null;
+        } catch (IOException e) {
+            LOG.warn("Skipping row at line {} of the manifest {}: {} cannot be read. {}",
+                    line, manifestFile, file, e.toString());
+            return null;
+        }
+        if (!attributes.isRegularFile()) {
+            LOG.warn("Skipping row at line {} of the manifest {}: {} is not a regular file.", line, manifestFile, file);
+            return null;
+        }
+
+        // Files outside the root get a default external id and directory based on the file name only
+        Path entryRoot = file.startsWith(root) ? root : file;
+        return FileEntry.of(entryRoot, file, attributes).withOverrides(overrides.build());
+    }
+
+    /*
+    Reads the asset ids: a JSON array of ids, or a string of ids separated by semicolons, commas or whitespace.
+
+    An array is always read to its end, also when an id is invalid, so the parser stays at the current row.
+     */
+    private static void readAssetIds(JsonParser parser, FileMetadata.Builder overrides) throws IOException {
+        if (parser.currentToken() == JsonToken.START_ARRAY) {
+            NumberFormatException invalidId = null;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                try {
+                    if (parser.currentToken().isStructStart()) {
+                        parser.skipChildren();
+                        throw new NumberFormatException("For input string: a nested array or object");
+                    }
+                    overrides.addAssetIds(Long.parseLong(parser.getText().strip()));
+                } catch (NumberFormatException e) {
+                    if (null == invalidId) {
+                        invalidId = e;
+                    }
+                }
+            }
+            if (null != invalidId) {
+                throw invalidId;
+            }
+            return;
+        }
+
+        for (String assetId : parser.getText().split("[;,\\s]+")) {
+            if (!assetId.isEmpty()) {
+                overrides.addAssetIds(Long.parseLong(assetId));
+            }
+        }
+    }
+
+    /*
+    Reads a JSON object of metadata. Values that are not strings, including nested objects and arrays, are stored as
+    their JSON text.
+     */
+    private static void readMetadata(JsonParser parser, FileMetadata.Builder overrides) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String key = parser.getCurrentName();
+            if (parser.nextToken() != JsonToken.VALUE_NULL) {
+                overrides.putMetadata(key, readText(parser));
+            }
+        }
+    }
+
+    /*
+    Returns the current value as text. A nested object or array is read to its end and returned as its JSON text.
+     */
+    private static String readText(JsonParser parser) throws IOException {
+        if (parser.currentToken().isStructStart()) {
+            return objectMapper.readTree(parser).toString();
+        }
+        return parser.getText();
+    }
+}
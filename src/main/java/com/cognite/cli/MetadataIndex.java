@@ -0,0 +1,590 @@
+package com.cognite.cli;
+
+import com.cognite.client.CogniteClient;
+import com.cognite.client.Request;
+import com.cognite.client.dto.FileMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.function.Predicate;
+
+/**
+ * A local index of the file metadata in a CDF project, or in one data set of a project.
+ *
+ * The index holds the fields needed to evaluate filters and existence checks locally: id, external id, name,
+ * directory, source, mime type, data set, metadata, source modified time and last updated time. It is refreshed
+ * incrementally by listing only the files updated since the last refresh. Files deleted in CDF do not show up in
+ * that listing, so after each incremental refresh the number of files is compared with an aggregate count from CDF,
+ * and the index is rebuilt when they differ. A deletion and a creation between two refreshes cancel out in the
+ * count, so a full refresh is still needed now and then when files are deleted by other tools.
+ *
+ * The file format is a header with the project and data set, followed by length-prefixed records: a file, the id of
+ * a removed file, or the last updated time covered by a refresh. Records are appended, and the last record for an id
+ * wins. The file is compacted when it holds more than twice as many records as files. As with the
+ * {@link UploadJournal}, a partially written record at the end of the file is truncated away when the index is opened.
+ *
+ * In memory, each file is kept as its serialized record in an open addressing table keyed by id, next to a table from
+ * the stable hash of the external id to the id. That is the record size plus about 50 bytes per file, against several
+ * times that for the parsed protobuf messages and boxed maps. Files are parsed again when they are looked up or
+ * matched against a filter. Should two external ids share a hash, only the later file is found by external id.
+ */
+class MetadataIndex implements Closeable {
+    private static Logger LOG = LoggerFactory.getLogger(MetadataIndex.class);
+
+    private static final int MAGIC = 0x43445831; // "CDX1"
+    private static final long NO_DATA_SET = -1;
+
+    private static final byte FILE_RECORD = 1;
+    private static final byte REMOVED_RECORD = 2;
+    private static final byte WATERMARK_RECORD = 3;
+
+    // Files updated shortly before a refresh may not be visible in the listing yet, so each refresh overlaps the last
+    private static final long REFRESH_OVERLAP_MILLIS = 5 * 60 * 1000;
+    private static final int MIN_RECORDS_TO_COMPACT = 1000;
+
+    private final Path indexFile;
+    private final String project;
+    private final long dataSetId;
+    private final Table filesById = new Table(true);
+    private final Table idsByExternalIdHash = new Table(false);
+    private long watermark = 0;
+    private long recordCounter = 0;
+    private DataOutputStream outputStream;
+
+    private MetadataIndex(Path indexFile, String project, long dataSetId) {
+        this.indexFile = indexFile;
+        this.project = project;
+        this.dataSetId = dataSetId;
+    }
+
+    /**
+     * Opens an index, loading the existing records. A new index is created if the file does not exist.
+     *
+     * @param indexFile The index file.
+     * @param project The CDF project. Must match the project of an existing index.
+     * @param dataSetId The data set to index. Empty to index the whole project, or to use the data set of an existing
+     *                  index.
+     * @throws IOException if the file is not an index, or it belongs to another project or data set.
+     */
+    static MetadataIndex open(Path indexFile, String project, OptionalLong dataSetId) throws IOException {
+        if (!Files.exists(indexFile) || Files.size(indexFile) == 0) {
+            MetadataIndex index = new MetadataIndex(indexFile, project, dataSetId.orElse(NO_DATA_SET));
+            index.rewrite();
+            return index;
+        }
+
+        long validLength;
+        MetadataIndex index;
+        try (DataInputStream inputStream = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(indexFile), 64 * 1024))) {
+            if (inputStream.readInt() != MAGIC) {
+                throw new IOException(String.format("The file is not a metadata index: %s", indexFile));
+            }
+            String indexProject = inputStream.readUTF();
+            long indexDataSetId = inputStream.readLong();
+            if (!indexProject.equals(project)
+                    || dataSetId.isPresent() && dataSetId.getAsLong() != indexDataSetId) {
+                throw new IOException(String.format("The metadata index %s belongs to project %s%s.", indexFile,
+                        indexProject, indexDataSetId == NO_DATA_SET ? "" : ", data set " + indexDataSetId));
+            }
+            index = new MetadataIndex(indexFile, project, indexDataSetId);
+            validLength = index.loadRecords(inputStream, index.buildHeader().length);
+        }
+
+        index.openForAppend(validLength);
+        if (index.recordCounter >= MIN_RECORDS_TO_COMPACT && index.recordCounter > 2L * index.size()) {
+            index.rewrite();
+        }
+        LOG.info("Loaded {} files from the metadata index {}.", index.size(), indexFile);
+        return index;
+    }
+
+    /*
+    Returns the number of indexed files.
+     */
+    int size() {
+        return filesById.size();
+    }
+
+    /*
+    Returns the last updated time covered by the latest refresh, or 0 if the index has not been refreshed.
+     */
+    long getWatermark() {
+        return watermark;
+    }
+
+    OptionalLong getDataSetId() {
+        return dataSetId == NO_DATA_SET ? OptionalLong.empty() : OptionalLong.of(dataSetId);
+    }
+
+    /*
+    Returns the indexed file with the external id. Safe to call from several threads while the index is not modified.
+     */
+    Optional<FileMetadata> get(String externalId) throws IOException {
+        int hashSlot = idsByExternalIdHash.find(StableHash.of(externalId));
+        if (hashSlot < 0) {
+            return Optional.empty();
+        }
+        int slot = filesById.find(idsByExternalIdHash.values[hashSlot]);
+        if (slot < 0) {
+            return Optional.empty();
+        }
+        FileMetadata fileMetadata = FileMetadata.parseFrom(filesById.records[slot]);
+        return externalId.equals(fileMetadata.getExternalId()) ? Optional.of(fileMetadata) : Optional.empty();
+    }
+
+    /*
+    Passes the indexed files matching the predicate to the consumer, one at a time, and returns the number of matches.
+    The consumer must not modify the index.
+     */
+    long forEachMatch(Predicate<FileMetadata> predicate, FileConsumer consumer) throws Exception {
+        long matchCounter = 0;
+        for (int slot = 0; slot < filesById.keys.length; slot++) {
+            if (filesById.keys[slot] != Table.EMPTY) {
+                FileMetadata fileMetadata = FileMetadata.parseFrom(filesById.records[slot]);
+                if (predicate.test(fileMetadata)) {
+                    consumer.accept(fileMetadata);
+                    matchCounter++;
+                }
+            }
+        }
+        return matchCounter;
+    }
+
+    /**
+     * Builds a predicate evaluating CLI file filters on indexed files, with the same semantics as the CDF filter.
+     *
+     * @param filter The file filters: {@code externalId}, {@code externalIdPrefix}, {@code name}, {@code directory},
+     *               {@code source}, {@code mimeType}, {@code dataSetId} and {@code uploaded}. May be null.
+     * @param metadataFilter The metadata filters. May be null.
+     * @throws IllegalArgumentException if a filter cannot be evaluated on the index.
+     */
+    static Predicate<FileMetadata> buildFilterPredicate(Map<String, ?> filter, Map<String, String> metadataFilter) {
+        Predicate<FileMetadata> predicate = fileMetadata -> true;
+        if (null != filter) {
+            for (Map.Entry<String, ?> entry : filter.entrySet()) {
+                String value = String.valueOf(entry.getValue());
+                Predicate<FileMetadata> fieldPredicate = switch (entry.getKey()) {
+                    case "externalId" -> file -> file.hasExternalId() && file.getExternalId().equals(value);
+                    case "externalIdPrefix" -> file -> file.hasExternalId() && file.getExternalId().startsWith(value);
+                    case "name" -> file -> file.hasName() && file.getName().equals(value);
+                    case "directory" -> file -> file.hasDirectory() && file.getDirectory().equals(value);
+                    case "source" -> file -> file.hasSource() && file.getSource().equals(value);
+                    case "mimeType" -> file -> file.hasMimeType() && file.getMimeType().equals(value);
+                    case "dataSetId" -> file -> file.hasDataSetId()
+                            && String.valueOf(file.getDataSetId()).equals(value);
+                    case "uploaded" -> file -> file.getUploaded() == Boolean.parseBoolean(value);
+                    default -> throw new IllegalArgumentException(String.format(
+                            "The filter %s cannot be evaluated on the metadata index.", entry.getKey()));
+                };
+                predicate = predicate.and(fieldPredicate);
+            }
+        }
+
+        if (null != metadataFilter) {
+            for (Map.Entry<String, String> entry : metadataFilter.entrySet()) {
+                predicate = predicate.and(file -> entry.getValue().equals(file.getMetadataMap().get(entry.getKey())));
+            }
+        }
+        return predicate;
+    }
+
+    /**
+     * Refreshes the index from CDF.
+     *
+     * @param cogniteClient The client to list the files with.
+     * @param full Whether to list all files. Otherwise only the files updated since the last refresh are listed, and
+     *             the index is only rebuilt if the number of files differs from CDF.
+     * @return The number of files listed from CDF.
+     */
+    long refresh(CogniteClient cogniteClient, boolean full) throws Exception {
+        boolean rebuild = full || watermark == 0;
+        Request request = buildScopeRequest();
+        if (rebuild) {
+            filesById.clear();
+            idsByExternalIdHash.clear();
+        } else {
+            request = request.withFilterParameter("lastUpdatedTime",
+                    Map.of("min", Math.max(0, watermark - REFRESH_OVERLAP_MILLIS)));
+        }
+
+        long[] newWatermark = {watermark};
+        long listedCounter = StageTracer.forEachPage(cogniteClient.files().list(request), page -> {
+            for (FileMetadata fileMetadata : page) {
+                FileMetadata indexed = toIndexed(fileMetadata);
+                byte[] record = indexed.toByteArray();
+                put(indexed, record);
+                if (!rebuild) {
+                    appendFile(record);
+                }
+                newWatermark[0] = Math.max(newWatermark[0], indexed.getLastUpdatedTime());
+            }
+        });
+        watermark = newWatermark[0];
+
+        if (rebuild) {
+            rewrite();
+            LOG.info("Rebuilt the metadata index {} with {} files.", indexFile, size());
+            return listedCounter;
+        }
+
+        appendWatermark();
+        outputStream.flush();
+
+        // Files deleted in CDF are not part of the updated files. Rebuild the index if the counts differ.
+        long remoteCount = cogniteClient.files().aggregate(buildScopeRequest()).getAggregates(0).getCount();
+        if (remoteCount != size()) {
+            LOG.info("The metadata index holds {} files, and CDF {} files. Rebuilding the index.", size(), remoteCount);
+            return listedCounter + refresh(cogniteClient, true);
+        }
+        LOG.info("Refreshed the metadata index {}. {} files were updated since the last refresh.",
+                indexFile, listedCounter);
+        return listedCounter;
+    }
+
+    /*
+    Removes files from the index, for example after deleting them from CDF.
+     */
+    void remove(long[] ids) throws IOException {
+        for (long id : ids) {
+            if (removeFile(id)) {
+                writeRecord(REMOVED_RECORD, id);
+            }
+        }
+        outputStream.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        outputStream.close();
+    }
+
+    /*
+    Builds the request listing all files in the scope of the index.
+     */
+    private Request buildScopeRequest() {
+        Request request = Request.create();
+        if (dataSetId != NO_DATA_SET) {
+            request = request.withFilterParameter("dataSetIds", List.of(Map.of("id", dataSetId)));
+        }
+        return request;
+    }
+
+    /*
+    Keeps the fields of the file metadata held by the index.
+     */
+    private static FileMetadata toIndexed(FileMetadata fileMetadata) {
+        FileMetadata.Builder builder = FileMetadata.newBuilder()
+                .setId(fileMetadata.getId())
+                .setLastUpdatedTime(fileMetadata.getLastUpdatedTime())
+                .setUploaded(fileMetadata.getUploaded())
+                .putAllMetadata(fileMetadata.getMetadataMap());
+        if (fileMetadata.hasExternalId()) {
+            builder.setExternalId(fileMetadata.getExternalId());
+        }
+        if (fileMetadata.hasName()) {
+            builder.setName(fileMetadata.getName());
+        }
+        if (fileMetadata.hasDirectory()) {
+            builder.setDirectory(fileMetadata.getDirectory());
+        }
+        if (fileMetadata.hasSource()) {
+            builder.setSource(fileMetadata.getSource());
+        }
+        if (fileMetadata.hasMimeType()) {
+            builder.setMimeType(fileMetadata.getMimeType());
+        }
+        if (fileMetadata.hasDataSetId()) {
+            builder.setDataSetId(fileMetadata.getDataSetId());
+        }
+        if (fileMetadata.hasSourceModifiedTime()) {
+            builder.setSourceModifiedTime(fileMetadata.getSourceModifiedTime());
+        }
+        return builder.build();
+    }
+
+    private void put(FileMetadata fileMetadata, byte[] record) throws IOException {
+        removeFile(fileMetadata.getId());
+        // insert() may resize the table, so the slot is taken before the array is read
+        int slot = filesById.insert(fileMetadata.getId());
+        filesById.records[slot] = record;
+        if (fileMetadata.hasExternalId()) {
+            int hashSlot = idsByExternalIdHash.insert(StableHash.of(fileMetadata.getExternalId()));
+            idsByExternalIdHash.values[hashSlot] = fileMetadata.getId();
+        }
+    }
+
+    /*
+    Removes a file from the tables. Returns false if the file is not indexed.
+     */
+    private boolean removeFile(long id) throws IOException {
+        int slot = filesById.find(id);
+        if (slot < 0) {
+            return false;
+        }
+        FileMetadata removed = FileMetadata.parseFrom(filesById.records[slot]);
+        filesById.delete(slot);
+        if (removed.hasExternalId()) {
+            int hashSlot = idsByExternalIdHash.find(StableHash.of(removed.getExternalId()));
+            if (hashSlot >= 0 && idsByExternalIdHash.values[hashSlot] == id) {
+                idsByExternalIdHash.delete(hashSlot);
+            }
+        }
+        return true;
+    }
+
+    /*
+    Loads the records following the header. Returns the length of the file up to the last complete record.
+     */
+    private long loadRecords(DataInputStream inputStream, long headerLength) throws IOException {
+        long validLength = headerLength;
+        byte[] recordBuffer = new byte[1024];
+        while (true) {
+            int recordLength;
+            try {
+                recordLength = inputStream.readInt();
+                if (recordLength > recordBuffer.length) {
+                    recordBuffer = new byte[Math.max(recordLength, recordBuffer.length * 2)];
+                }
+                inputStream.readFully(recordBuffer, 0, recordLength);
+            } catch (EOFException e) {
+                return validLength;
+            }
+
+            DataInputStream recordStream = new DataInputStream(new ByteArrayInputStream(recordBuffer, 0, recordLength));
+            switch (recordStream.readByte()) {
+                case FILE_RECORD -> {
+                    byte[] record = Arrays.copyOfRange(recordBuffer, 1, recordLength);
+                    put(FileMetadata.parseFrom(record), record);
+                }
+                case REMOVED_RECORD -> removeFile(recordStream.readLong());
+                case WATERMARK_RECORD -> watermark = recordStream.readLong();
+                default -> throw new IOException(String.format("Unknown record type in the metadata index %s.",
+                        indexFile));
+            }
+            recordCounter++;
+            validLength += Integer.BYTES + recordLength;
+        }
+    }
+
+    private void openForAppend(long validLength) throws IOException {
+        FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.WRITE);
+        if (channel.size() > validLength) {
+            LOG.warn("The metadata index {} ends with an incomplete record. Truncating it.", indexFile);
+            channel.truncate(validLength);
+        }
+        channel.position(validLength);
+        outputStream = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+    }
+
+    /*
+    Writes all files to a new index file and replaces the existing file with it.
+     */
+    private void rewrite() throws IOException {
+        if (null != outputStream) {
+            outputStream.close();
+        }
+
+        Path directory = indexFile.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path tempFile = Files.createTempFile(directory, "." + indexFile.getFileName(), ".tmp");
+        try {
+            try (DataOutputStream tempStream = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tempFile), 64 * 1024))) {
+                outputStream = tempStream;
+                tempStream.write(buildHeader());
+                recordCounter = 0;
+                for (int slot = 0; slot < filesById.keys.length; slot++) {
+                    if (filesById.keys[slot] != Table.EMPTY) {
+                        appendFile(filesById.records[slot]);
+                    }
+                }
+                appendWatermark();
+            }
+            Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        openForAppend(Files.size(indexFile));
+    }
+
+    private byte[] buildHeader() throws IOException {
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        try (DataOutputStream headerStream = new DataOutputStream(headerBytes)) {
+            headerStream.writeInt(MAGIC);
+            headerStream.writeUTF(project);
+            headerStream.writeLong(dataSetId);
+        }
+        return headerBytes.toByteArray();
+    }
+
+    private void appendFile(byte[] record) throws IOException {
+        outputStream.writeInt(1 + record.length);
+        outputStream.writeByte(FILE_RECORD);
+        outputStream.write(record);
+        recordCounter++;
+    }
+
+    private void appendWatermark() throws IOException {
+        writeRecord(WATERMARK_RECORD, watermark);
+    }
+
+    private void writeRecord(byte type, long value) throws IOException {
+        outputStream.writeInt(1 + Long.BYTES);
+        outputStream.writeByte(type);
+        outputStream.writeLong(value);
+        recordCounter++;
+    }
+
+    @FunctionalInterface
+    interface FileConsumer {
+        void accept(FileMetadata fileMetadata) throws Exception;
+    }
+
+    /*
+    An open addressing table with long keys, and a long value or a record per key. Linear probing, with removed keys
+    shifted back so lookups never need tombstones. Key 0 marks an empty slot and is stored as 1, as in the upload
+    journal; file ids are never 0, and an external id hash of 0 or 1 is verified on lookup anyway.
+     */
+    private static class Table {
+        private static final long EMPTY = 0L;
+        private static final int INITIAL_CAPACITY = 1024;
+
+        private final boolean withRecords;
+        private long[] keys;
+        private long[] values;
+        private byte[][] records;
+        private int size;
+
+        Table(boolean withRecords) {
+            this.withRecords = withRecords;
+            clear();
+        }
+
+        void clear() {
+            keys = new long[INITIAL_CAPACITY];
+            values = withRecords ? null : new long[INITIAL_CAPACITY];
+            records = withRecords ? new byte[INITIAL_CAPACITY][] : null;
+            size = 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        /*
+        Returns the slot holding the key, or -1.
+         */
+        int find(long key) {
+            key = toStored(key);
+            int slot = slot(key, keys);
+            return keys[slot] == key ? slot : -1;
+        }
+
+        /*
+        Returns the slot for the key, adding the key if it is not present.
+         */
+        int insert(long key) {
+            key = toStored(key);
+            if ((size + 1) * 4L > keys.length * 3L) {
+                resize();
+            }
+            int slot = slot(key, keys);
+            if (keys[slot] == EMPTY) {
+                keys[slot] = key;
+                size++;
+            }
+            return slot;
+        }
+
+        void delete(int slot) {
+            int mask = keys.length - 1;
+            int hole = slot;
+            int next = (slot + 1) & mask;
+            while (keys[next] != EMPTY) {
+                // Move the key back into the hole unless its home slot lies after the hole
+                int home = home(keys[next], mask);
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    move(next, hole);
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            keys[hole] = EMPTY;
+            if (withRecords) {
+                records[hole] = null;
+            }
+            size--;
+        }
+
+        private void move(int from, int to) {
+            keys[to] = keys[from];
+            if (withRecords) {
+                records[to] = records[from];
+            } else {
+                values[to] = values[from];
+            }
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            long[] oldValues = values;
+            byte[][] oldRecords = records;
+            keys = new long[oldKeys.length * 2];
+            values = withRecords ? null : new long[keys.length];
+            records = withRecords ? new byte[keys.length][] : null;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    int slot = slot(oldKeys[i], keys);
+                    keys[slot] = oldKeys[i];
+                    if (withRecords) {
+                        records[slot] = oldRecords[i];
+                    } else {
+                        values[slot] = oldValues[i];
+                    }
+                }
+            }
+        }
+
+        private static long toStored(long key) {
+            return key == EMPTY ? 1L : key;
+        }
+
+        /*
+        File ids are not uniformly distributed in their low bits, so keys are mixed before picking the home slot.
+         */
+        private static int home(long key, int mask) {
+            long mixed = key * 0x9E3779B97F4A7C15L;
+            return (int) (mixed >>> 32) & mask;
+        }
+
+        private static int slot(long key, long[] keys) {
+            int mask = keys.length - 1;
+            int slot = home(key, mask);
+            while (keys[slot] != EMPTY && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+}
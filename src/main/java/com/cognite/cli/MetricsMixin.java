@@ -0,0 +1,44 @@
+package com.cognite.cli;
+
+import picocli.CommandLine.Option;
+
+import java.net.URL;
+import java.time.Duration;
+
+/**
+ * Options for pushing the run metrics to a Prometheus Pushgateway.
+ *
+ * The defaults can be set via the environment variables {@code METRICS_ENABLE}, {@code METRICS_JOBNAME} and
+ * {@code METRICS_PUSHGATEWAY_URL}, matching the {@code metrics} block in {@code microprofile-config.yaml}.
+ */
+public class MetricsMixin {
+
+    @Option(names = "--metrics", description = "Push metrics to a Prometheus Pushgateway during and after the run.",
+            defaultValue = "${env:METRICS_ENABLE:-false}")
+    private boolean enable;
+
+    @Option(names = "--metrics-push-gateway", description = "The Pushgateway URL.",
+            arity = "0..1", interactive = true, echo = true,
+            defaultValue = "${env:METRICS_PUSHGATEWAY_URL:-http://localhost:9091}")
+    private URL pushGatewayUrl;
+
+    @Option(names = "--metrics-job-name", description = "The job name to push the metrics under.",
+            arity = "0..1", interactive = true, echo = true, defaultValue = "${env:METRICS_JOBNAME:-cdf-cli}")
+    private String jobName;
+
+    @Option(names = "--metrics-push-interval", description = "The interval between pushes while the command runs, "
+            + "in seconds. 0 only pushes when the command completes.",
+            arity = "0..1", interactive = true, echo = true, defaultValue = "15")
+    private int pushIntervalSeconds;
+
+    /*
+    Starts pushing metrics for the command, if enabled. Returns null when metrics are disabled.
+     */
+    MetricsPusher startPushing(String command) {
+        if (!enable) {
+            return null;
+        }
+
+        return MetricsPusher.start(pushGatewayUrl, jobName, command, Duration.ofSeconds(pushIntervalSeconds));
+    }
+}
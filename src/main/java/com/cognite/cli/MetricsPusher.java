@@ -0,0 +1,97 @@
+package com.cognite.cli;
+
+import io.prometheus.client.Gauge;
+import io.prometheus.client.exporter.PushGateway;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URL;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes the {@link CliMetrics} to a Prometheus Pushgateway at a fixed interval while a command runs, and once more
+ * when the command completes.
+ *
+ * The metrics are pushed under the job name, grouped by the command, so upload and delete runs of the same job do not
+ * replace each other. A failed push is logged and does not fail the command.
+ */
+class MetricsPusher implements AutoCloseable {
+    private static Logger LOG = LoggerFactory.getLogger(MetricsPusher.class);
+
+    private static final Gauge runDuration = Gauge.build()
+            .name("cdf_cli_run_duration_seconds")
+            .help("The duration of the current or last run of the command.")
+            .register(CliMetrics.registry);
+
+    private static final Gauge lastSuccess = Gauge.build()
+            .name("cdf_cli_last_success_timestamp_seconds")
+            .help("The time the command last completed successfully, in unix time.")
+            .register(CliMetrics.registry);
+
+    private final PushGateway pushGateway;
+    private final String jobName;
+    private final Map<String, String> groupingKey;
+    private final long startNanos = System.nanoTime();
+    private final ScheduledExecutorService scheduler;
+
+    private boolean success = false;
+
+    private MetricsPusher(URL pushGatewayUrl, String jobName, String command, Duration interval) {
+        this.pushGateway = new PushGateway(pushGatewayUrl);
+        this.jobName = jobName;
+        this.groupingKey = Map.of("command", command);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-pusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (!interval.isZero() && !interval.isNegative()) {
+            scheduler.scheduleAtFixedRate(this::push, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Starts pushing metrics for a command run.
+     *
+     * @param pushGatewayUrl The Pushgateway base URL, for example {@code http://pushgateway:9091}.
+     * @param jobName The Prometheus job name.
+     * @param command The command, used as the {@code command} grouping key.
+     * @param interval The push interval. Zero only pushes when the command completes.
+     */
+    static MetricsPusher start(URL pushGatewayUrl, String jobName, String command, Duration interval) {
+        LOG.info("Pushing metrics to {} as job {}.", pushGatewayUrl, jobName);
+        return new MetricsPusher(pushGatewayUrl, jobName, command, interval);
+    }
+
+    /*
+    Marks the run as successful. The success timestamp is pushed when the pusher is closed.
+     */
+    void markSuccess() {
+        success = true;
+    }
+
+    /*
+    Stops the periodic push and pushes the final metrics of the run.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        if (success) {
+            lastSuccess.setToCurrentTime();
+        }
+        push();
+    }
+
+    private synchronized void push() {
+        runDuration.set(CliMetrics.secondsSince(startNanos));
+        try {
+            pushGateway.push(CliMetrics.registry, jobName, groupingKey);
+        } catch (Exception e) {
+            LOG.warn("Error when pushing metrics to the Pushgateway: {}", e.toString());
+        }
+    }
+}
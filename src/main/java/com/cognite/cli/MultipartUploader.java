@@ -0,0 +1,328 @@
+package com.cognite.cli;
+
+import com.cognite.client.CogniteClient;
+import com.cognite.client.dto.FileMetadata;
+import com.cognite.client.servicesV1.parser.FileParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import shaded.okhttp3.MediaType;
+import shaded.okhttp3.OkHttpClient;
+import shaded.okhttp3.Request;
+import shaded.okhttp3.RequestBody;
+import shaded.okhttp3.Response;
+import shaded.okio.BufferedSink;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Uploads large files to CDF with the multipart upload API.
+ *
+ * The file is split into parts that are uploaded concurrently, each streamed directly from its region of the file via
+ * a {@link FileChannel}. A failed part is retried on its own by {@link HttpRetry}, so a transient error only costs the
+ * part in flight instead of the whole file. When all parts are uploaded, the upload is completed
+ * and CDF assembles the file. Content that is not in a file, like an archive entry, is read into memory one part at a
+ * time.
+ *
+ * The number of concurrent part uploads is limited by a semaphore shared by all files, so it is bounded regardless of
+ * how many large files are uploaded at the same time.
+ */
+class MultipartUploader implements AutoCloseable {
+    private static Logger LOG = LoggerFactory.getLogger(MultipartUploader.class);
+
+    // Limits of the CDF multipart upload API
+    static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+    static final int MAX_PARTS = 250;
+
+    private static final MediaType JSON = MediaType.get("application/json");
+    private static final MediaType OCTET_STREAM = MediaType.get("application/octet-stream");
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final OkHttpClient apiClient;
+    private final OkHttpClient uploadClient;
+    private final String filesUrl;
+    private final Semaphore partPermits;
+    private final ExecutorService executorService;
+
+    private long partSize = 64L * 1024 * 1024;
+    private int maxRetries = 5;
+
+    /**
+     * Creates an uploader.
+     *
+     * @param cogniteClient The client to authenticate the CDF API requests with.
+     * @param projectUrl The CDF project API URL, for example {@code https://api.cognitedata.com/api/v1/projects/my-project}.
+     * @param concurrency The maximum number of parts to upload concurrently.
+     */
+    MultipartUploader(CogniteClient cogniteClient, String projectUrl, int concurrency) {
+        this.apiClient = cogniteClient.getHttpClient();
+        // The upload URLs are pre-signed. Like the SDK, send the binaries without the CDF authentication.
+        OkHttpClient.Builder uploadClientBuilder = cogniteClient.getHttpClient().newBuilder();
+        uploadClientBuilder.interceptors().clear();
+        this.uploadClient = uploadClientBuilder.build();
+        this.filesUrl = projectUrl + "/files";
+        this.partPermits = new Semaphore(Math.max(1, concurrency));
+        this.executorService = IoExecutors.newExecutor("multipart-upload");
+    }
+
+    /*
+    Sets the preferred part size. The size is raised when needed to stay within the maximum number of parts.
+     */
+    MultipartUploader withPartSize(long partSize) {
+        this.partSize = Math.max(MIN_PART_SIZE, partSize);
+        return this;
+    }
+
+    MultipartUploader withMaxRetries(int maxRetries) {
+        this.maxRetries = Math.max(0, maxRetries);
+        return this;
+    }
+
+    /**
+     * Uploads a file.
+     *
+     * @param fileMetadata The metadata of the file. An existing file with the same external id is overwritten.
+     * @param file The file to upload.
+     * @param fileSize The size of the file.
+     * @return The metadata of the created file.
+     * @throws Exception if a part could not be uploaded after all retries, or the upload could not be started or
+     * completed.
+     */
+    FileMetadata upload(FileMetadata fileMetadata, Path file, long fileSize) throws Exception {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return upload(fileMetadata, fileSize, file.toString(),
+                    (position, length) -> new FileRegionRequestBody(channel, position, length));
+        }
+    }
+
+    /**
+     * Uploads the content of a stream, for example an archive entry.
+     *
+     * The parts are read from the stream one at a time, into memory, and uploaded while the next part is read. At most
+     * one part per concurrent upload is held in memory.
+     *
+     * @param fileMetadata The metadata of the file. An existing file with the same external id is overwritten.
+     * @param content The content to upload. Exactly {@code size} bytes are read.
+     * @param size The size of the content.
+     * @return The metadata of the created file.
+     * @throws Exception if the stream ends early, a part could not be uploaded after all retries, or the upload could
+     * not be started or completed.
+     */
+    FileMetadata upload(FileMetadata fileMetadata, InputStream content, long size) throws Exception {
+        return upload(fileMetadata, size, fileMetadata.getExternalId(), (position, length) -> {
+            byte[] part = content.readNBytes((int) length);
+            if (part.length != length) {
+                throw new EOFException(String.format("The content ended after %d of %d bytes.",
+                        position + part.length, size));
+            }
+            return RequestBody.create(part, OCTET_STREAM);
+        });
+    }
+
+    private FileMetadata upload(FileMetadata fileMetadata, long fileSize, String description, PartBodies partBodies)
+            throws Exception {
+        long effectivePartSize = partSize(fileSize);
+        int parts = (int) Math.max(1, (fileSize + effectivePartSize - 1) / effectivePartSize);
+        LOG.debug("Starting a multipart upload of {} in {} parts of {} bytes.", description, parts, effectivePartSize);
+
+        byte[] initBody = objectMapper.writeValueAsBytes(FileParser.toRequestInsertItem(fileMetadata));
+        JsonNode initResponse = postJson(filesUrl + "/initmultipartupload?overwrite=true&parts=" + parts, initBody);
+        JsonNode uploadUrls = initResponse.path("uploadUrls");
+        if (uploadUrls.size() != parts || !initResponse.path("uploadId").isTextual()) {
+            throw new IOException(String.format("Unexpected multipart upload response for %s: %d upload urls for %d parts.",
+                    description, uploadUrls.size(), parts));
+        }
+
+        long fileId = initResponse.path("id").asLong();
+        try {
+            uploadParts(parts, effectivePartSize, fileSize, uploadUrls, partBodies);
+
+            byte[] completeBody = objectMapper.writeValueAsBytes(objectMapper.createObjectNode()
+                    .put("id", fileId)
+                    .put("uploadId", initResponse.path("uploadId").asText()));
+            postJson(filesUrl + "/completemultipartupload", completeBody);
+        } catch (Exception e) {
+            deletePlaceholder(fileId, description);
+            throw e;
+        }
+        LOG.debug("Completed the multipart upload of {}.", description);
+
+        return FileParser.parseFileMetadata(initResponse.toString());
+    }
+
+    private void uploadParts(int parts, long effectivePartSize, long fileSize, JsonNode uploadUrls,
+                             PartBodies partBodies) throws Exception {
+        // Stop starting new parts as soon as one part has failed
+        AtomicBoolean failed = new AtomicBoolean();
+        List<Future<?>> partUploads = new ArrayList<>(parts);
+        try {
+            for (int i = 0; i < parts && !failed.get(); i++) {
+                String uploadUrl = uploadUrls.get(i).asText();
+                long position = i * effectivePartSize;
+                long length = Math.min(effectivePartSize, fileSize - position);
+                partPermits.acquire();
+                RequestBody partBody;
+                try {
+                    partBody = partBodies.create(position, length);
+                } catch (Exception e) {
+                    partPermits.release();
+                    throw e;
+                }
+                partUploads.add(executorService.submit(() -> {
+                    try {
+                        uploadPart(uploadUrl, partBody, position);
+                    } catch (Exception e) {
+                        failed.set(true);
+                        throw e;
+                    } finally {
+                        partPermits.release();
+                    }
+                    return null;
+                }));
+            }
+        } finally {
+            awaitAll(partUploads);
+        }
+    }
+
+    /*
+    Deletes the file created by a multipart upload that failed, so no file without content is left in CDF. If the
+    delete fails as well, the id is logged so the file can be deleted later.
+     */
+    private void deletePlaceholder(long fileId, String description) {
+        try {
+            byte[] deleteBody = objectMapper.writeValueAsBytes(objectMapper.createObjectNode()
+                    .set("items", objectMapper.createArrayNode()
+                            .add(objectMapper.createObjectNode().put("id", fileId))));
+            postJson(filesUrl + "/delete", deleteBody);
+            LOG.info("Deleted the file {} created by the failed multipart upload of {}.", fileId, description);
+        } catch (Exception e) {
+            LOG.warn("The multipart upload of {} failed, and its file {} could not be deleted. The file has no "
+                    + "content: {}", description, fileId, e.toString());
+        }
+    }
+
+    @Override
+    public void close() {
+        executorService.shutdownNow();
+    }
+
+    /*
+    Returns the part size for a file: the configured part size, raised to keep the number of parts within the limit.
+     */
+    long partSize(long fileSize) {
+        long minPartSizeForFile = (fileSize + MAX_PARTS - 1) / MAX_PARTS;
+        return Math.max(partSize, minPartSizeForFile);
+    }
+
+    private void uploadPart(String uploadUrl, RequestBody partBody, long position) throws Exception {
+        Request request = new Request.Builder()
+                .url(uploadUrl)
+                .put(partBody)
+                .build();
+        execute(uploadClient, request, "part at offset " + position);
+    }
+
+    private JsonNode postJson(String url, byte[] body) throws Exception {
+        Request request = new Request.Builder()
+                .url(url)
+                .post(RequestBody.create(body, JSON))
+                .build();
+        return objectMapper.readTree(execute(apiClient, request, url));
+    }
+
+    /*
+    Executes a request, retrying on connection errors, throttling and server errors. Returns the response body.
+     */
+    private String execute(OkHttpClient httpClient, Request request, String description) throws Exception {
+        return HttpRetry.execute(maxRetries, "multipart upload " + description, CliMetrics.uploadRetries, () -> {
+            try (Response response = httpClient.newCall(request).execute()) {
+                HttpRetry.checkStatus(response);
+                return response.body().string();
+            }
+        });
+    }
+
+    /*
+    Creates the request body of a part. Called for the parts in order, on the thread starting the upload.
+     */
+    @FunctionalInterface
+    private interface PartBodies {
+        RequestBody create(long position, long length) throws Exception;
+    }
+
+    /*
+    Waits for all started part uploads, so none of them is still reading the file, and throws the first failure.
+     */
+    private static void awaitAll(List<Future<?>> futures) throws Exception {
+        Exception failure = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (null == failure) {
+                    failure = e.getCause() instanceof Exception cause ? cause : e;
+                }
+            }
+        }
+        if (null != failure) {
+            throw failure;
+        }
+    }
+
+    /*
+    Streams a region of a file. The body can be written several times, so the part can be retried.
+     */
+    private static class FileRegionRequestBody extends RequestBody {
+        private final FileChannel channel;
+        private final long position;
+        private final long length;
+
+        FileRegionRequestBody(FileChannel channel, long position, long length) {
+            this.channel = channel;
+            this.position = position;
+            this.length = length;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return OCTET_STREAM;
+        }
+
+        @Override
+        public long contentLength() {
+            return length;
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            WritableByteChannel target = Channels.newChannel(sink.outputStream());
+            long written = 0;
+            while (written < length) {
+                // A file truncated during the upload ends before the part does, and transferTo() then returns 0
+                long transferred = channel.transferTo(position + written, length - written, target);
+                if (transferred <= 0 || position + written + transferred > channel.size()) {
+                    throw new EOFException(String.format("The file ended at %d bytes, within the part at offset %d.",
+                            channel.size(), position));
+                }
+                written += transferred;
+            }
+            sink.flush();
+        }
+    }
+}
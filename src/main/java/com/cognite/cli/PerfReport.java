@@ -0,0 +1,106 @@
+package com.cognite.cli;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Collects the latency of each traced stage of a command run and prints a breakdown when the run ends.
+ *
+ * Per stage, the report shows the number of executions, the latency percentiles from an HDR histogram and the busy
+ * time: the wall-clock time during which at least one execution of the stage was running. The critical path is the
+ * sequential stages followed by the concurrent stage with the most busy time, which bounds the duration of the
+ * pipelined part of the run.
+ */
+class PerfReport {
+    private final Map<StageTracer.Stage, StageStats> stageStats = new EnumMap<>(StageTracer.Stage.class);
+    private final long startNanos = System.nanoTime();
+
+    PerfReport() {
+        for (StageTracer.Stage stage : StageTracer.Stage.values()) {
+            stageStats.put(stage, new StageStats());
+        }
+    }
+
+    void onBegin(StageTracer.Stage stage, long nanos) {
+        stageStats.get(stage).begin(nanos);
+    }
+
+    void onEnd(StageTracer.Stage stage, long startNanos, long endNanos) {
+        stageStats.get(stage).end(startNanos, endNanos);
+    }
+
+    /*
+    Prints the stage breakdown and the critical path.
+     */
+    void print(PrintWriter out) {
+        long runNanos = System.nanoTime() - startNanos;
+        out.printf("Performance report. Run duration: %.3f s%n", runNanos / 1e9);
+        out.printf("%-18s %9s %10s %7s %10s %10s %10s %10s%n",
+                "Stage", "Count", "Busy (s)", "Busy %", "p50 (ms)", "p90 (ms)", "p99 (ms)", "Max (ms)");
+
+        List<Map.Entry<StageTracer.Stage, StageStats>> traced = new ArrayList<>();
+        for (Map.Entry<StageTracer.Stage, StageStats> entry : stageStats.entrySet()) {
+            StageStats stats = entry.getValue();
+            synchronized (stats) {
+                if (stats.histogram.getTotalCount() == 0) {
+                    continue;
+                }
+                traced.add(entry);
+                out.printf("%-18s %9d %10.3f %6.1f%% %10.3f %10.3f %10.3f %10.3f%n",
+                        entry.getKey().label,
+                        stats.histogram.getTotalCount(),
+                        stats.busyNanos / 1e9,
+                        100.0 * stats.busyNanos / runNanos,
+                        stats.histogram.getValueAtPercentile(50) / 1e6,
+                        stats.histogram.getValueAtPercentile(90) / 1e6,
+                        stats.histogram.getValueAtPercentile(99) / 1e6,
+                        stats.histogram.getMaxValue() / 1e6);
+            }
+        }
+
+        List<String> criticalPath = traced.stream()
+                .filter(entry -> entry.getKey().kind == StageTracer.Kind.SEQUENTIAL)
+                .sorted(Comparator.comparingLong(entry -> entry.getValue().firstStartNanos))
+                .map(entry -> String.format("%s %.3f s", entry.getKey().label, entry.getValue().busyNanos / 1e9))
+                .collect(Collectors.toCollection(ArrayList::new));
+        traced.stream()
+                .filter(entry -> entry.getKey().kind == StageTracer.Kind.CONCURRENT)
+                .max(Comparator.comparingLong(entry -> entry.getValue().busyNanos))
+                .ifPresent(entry -> criticalPath.add(String.format("%s %.3f s (bottleneck)",
+                        entry.getKey().label, entry.getValue().busyNanos / 1e9)));
+        out.printf("Critical path: %s%n", criticalPath.isEmpty() ? "-" : String.join(" -> ", criticalPath));
+        out.flush();
+    }
+
+    /*
+    The statistics of one stage. Busy time is accumulated when the number of running executions drops to zero.
+     */
+    private static class StageStats {
+        private final Histogram histogram = new Histogram(3);
+        private int active = 0;
+        private long busySinceNanos;
+        private long busyNanos = 0;
+        private long firstStartNanos = Long.MAX_VALUE;
+
+        synchronized void begin(long nanos) {
+            if (active++ == 0) {
+                busySinceNanos = nanos;
+            }
+            firstStartNanos = Math.min(firstStartNanos, nanos);
+        }
+
+        synchronized void end(long startNanos, long endNanos) {
+            histogram.recordValue(Math.max(0, endNanos - startNanos));
+            if (--active == 0) {
+                busyNanos += endNanos - busySinceNanos;
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.cognite.cli;
+
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Spec;
+
+/**
+ * The {@code --perf-report} option. Collects a {@link PerfReport} while the command runs and prints it to the command
+ * output when the command completes.
+ */
+public class PerfReportMixin {
+
+    @Spec(Spec.Target.MIXEE)
+    private CommandSpec spec;
+
+    @Option(names = "--perf-report", description = "Print a breakdown of the time spent per stage, with latency "
+            + "percentiles and the critical path, when the command completes.", defaultValue = "false")
+    private boolean perfReport;
+
+    // The report being collected, or null when the report is disabled or the command is not running
+    private PerfReport report;
+
+    /*
+    Starts collecting the report, if enabled. Call finish() in a finally block when the command completes.
+     */
+    void start() {
+        if (!perfReport) {
+            return;
+        }
+
+        report = new PerfReport();
+        StageTracer.attach(report);
+    }
+
+    /*
+    Stops collecting the report and prints it. Does nothing when the report is disabled.
+     */
+    void finish() {
+        if (null == report) {
+            return;
+        }
+
+        StageTracer.detach(report);
+        report.print(spec.commandLine().getOut());
+        report = null;
+    }
+}
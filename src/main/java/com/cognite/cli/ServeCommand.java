@@ -0,0 +1,144 @@
+package com.cognite.cli;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps a warm JVM running and executes commands received over a local Unix domain socket.
+ *
+ * Each line sent to the socket is one command, for example {@code files delete --id 123}. The response is one JSON
+ * line per command: {@code {"exitCode":0,"output":"...","error":"..."}}. A connection may send any number of commands.
+ * Commands with the same credentials share one {@link com.cognite.client.CogniteClient}, so only the first command
+ * pays for class loading, JIT warm-up and authentication. Log output goes to the log of the serve process.
+ *
+ * Several connections can be open at once, but their commands run one at a time: the metrics registry, the perf
+ * report and the progress gauges are shared by the whole process, so concurrent commands would mix their numbers.
+ */
+@Command(name = ServeCommand.NAME,
+        description = "Runs the CLI as a long-running process that takes commands over a local Unix socket.")
+public class ServeCommand implements Callable<Integer> {
+    private static Logger LOG = LoggerFactory.getLogger(ServeCommand.class);
+
+    static final String NAME = "serve";
+
+    private static ObjectMapper objectMapper = new ObjectMapper();
+
+    @Option(names = "--socket", description = "The Unix socket file to listen on.",
+            arity = "0..1", interactive = true, echo = true, defaultValue = "${sys:java.io.tmpdir}/cdf-cli.sock")
+    private Path socketFile;
+
+    @Option(names = "--max-connections", description = "The maximum number of connections to keep open "
+            + "concurrently. Commands run one at a time, and wait for the running command to complete.",
+            arity = "0..1", interactive = true, echo = true, defaultValue = "4")
+    private int maxConnections;
+
+    // Commands share the process-wide metrics and perf report, so they run one at a time
+    private final Object commandLock = new Object();
+
+    @Override
+    public Integer call() throws Exception {
+        if (Files.exists(socketFile)) {
+            LOG.warn("Removing the existing socket file {}.", socketFile);
+            Files.delete(socketFile);
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.max(1, maxConnections));
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            serverChannel.bind(UnixDomainSocketAddress.of(socketFile));
+            if (Files.getFileStore(socketFile).supportsFileAttributeView("posix")) {
+                Files.setPosixFilePermissions(socketFile, PosixFilePermissions.fromString("rw-------"));
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    Files.deleteIfExists(socketFile);
+                } catch (IOException e) {
+                    // The process is exiting anyway
+                }
+            }));
+            LOG.info("Listening for commands on {}.", socketFile);
+
+            while (true) {
+                SocketChannel connection = serverChannel.accept();
+                executorService.execute(() -> serveConnection(connection));
+            }
+        } finally {
+            executorService.shutdownNow();
+            Files.deleteIfExists(socketFile);
+        }
+    }
+
+    /*
+    Runs the commands sent on the connection, one per line, until the client closes it.
+     */
+    private void serveConnection(SocketChannel connection) {
+        try (connection;
+             BufferedReader reader = new BufferedReader(Channels.newReader(connection, StandardCharsets.UTF_8));
+             Writer writer = Channels.newWriter(connection, StandardCharsets.UTF_8)) {
+            String line;
+            while (null != (line = reader.readLine())) {
+                ObjectNode response = runCommand(line);
+                if (null == response) {
+                    continue;
+                }
+                writer.write(objectMapper.writeValueAsString(response));
+                writer.write('\n');
+                writer.flush();
+            }
+        } catch (Exception e) {
+            LOG.warn("Error when serving a connection: {}", e.toString());
+        }
+    }
+
+    private ObjectNode runCommand(String line) {
+        StringWriter out = new StringWriter();
+        StringWriter err = new StringWriter();
+        int exitCode;
+        try {
+            List<String> args = CommandScript.tokenize(line);
+            if (args.isEmpty()) {
+                return null;
+            }
+
+            synchronized (commandLock) {
+                Instant startInstant = Instant.now();
+                LOG.info("Running command: {}", line.strip());
+                exitCode = CdfCli.execute(args, new PrintWriter(out, true), new PrintWriter(err, true));
+                LOG.info("Command completed with exit code {}. Duration: {}",
+                        exitCode, Duration.between(startInstant, Instant.now()));
+            }
+        } catch (Exception e) {
+            err.write(String.valueOf(e));
+            exitCode = 2;
+        }
+
+        return objectMapper.createObjectNode()
+                .put("exitCode", exitCode)
+                .put("output", out.toString())
+                .put("error", err.toString());
+    }
+}
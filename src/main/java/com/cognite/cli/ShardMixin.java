@@ -0,0 +1,102 @@
+package com.cognite.cli;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import picocli.CommandLine.Option;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Options for splitting a command across several processes, for example the pods of a Kubernetes indexed job.
+ *
+ * Each file is assigned to a shard by a {@link StableHash} of its key, so every process computes the same split from
+ * the same input without any shared state or coordination. Each process writes its own summary file, and the counts
+ * of all shards add up to the job total.
+ *
+ * The shard index defaults to the {@code JOB_COMPLETION_INDEX} environment variable set by Kubernetes indexed jobs.
+ */
+public class ShardMixin {
+    private static Logger LOG = LoggerFactory.getLogger(ShardMixin.class);
+
+    static final String SHARD_PLACEHOLDER = "{shard}";
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Option(names = "--shard-index", description = "The shard to process, from 0 to --shard-count - 1. Defaults to "
+            + "the JOB_COMPLETION_INDEX environment variable of Kubernetes indexed jobs.",
+            arity = "0..1", interactive = true, echo = true, defaultValue = "${env:JOB_COMPLETION_INDEX:-0}")
+    private int shardIndex;
+
+    @Option(names = "--shard-count", description = "The number of shards to split the files into. Each shard "
+            + "processes a disjoint subset of the files.",
+            arity = "0..1", interactive = true, echo = true, defaultValue = "1")
+    private int shardCount;
+
+    @Option(names = "--summary-file", description = "A file to write a JSON summary of the run to. "
+            + SHARD_PLACEHOLDER + " is replaced by the shard index, so all shards can write to the same directory.",
+            arity = "0..1", interactive = true, echo = true)
+    private Path summaryFile;
+
+    private Instant startTime = Instant.now();
+
+    /*
+    Checks the shard options and logs the shard in use. Called when the command starts.
+     */
+    void validate() throws Exception {
+        startTime = Instant.now();
+        if (shardCount < 1 || shardIndex < 0 || shardIndex >= shardCount) {
+            String message = String.format("Error: --shard-index must be between 0 and %d, and --shard-count at "
+                    + "least 1. Got shard index %d and shard count %d.", shardCount - 1, shardIndex, shardCount);
+            LOG.error(message);
+            throw new Exception(message);
+        }
+        if (isSharded()) {
+            LOG.info("Processing shard {} of {}.", shardIndex, shardCount);
+        }
+    }
+
+    boolean isSharded() {
+        return shardCount > 1;
+    }
+
+    /*
+    Returns true if the file with the given key belongs to this shard.
+     */
+    boolean includes(String key) {
+        return shardCount <= 1 || Long.remainderUnsigned(StableHash.of(key), shardCount) == shardIndex;
+    }
+
+    /*
+    Writes the summary file, if configured. The counts are written as they are given, so they can be added up across
+    the shards of a job.
+     */
+    void writeSummary(String command, int exitCode, Map<String, Long> counts) throws IOException {
+        if (null == summaryFile) {
+            return;
+        }
+
+        ObjectNode summary = objectMapper.createObjectNode()
+                .put("command", command)
+                .put("shardIndex", shardIndex)
+                .put("shardCount", shardCount)
+                .put("startTime", startTime.toString())
+                .put("durationSeconds", Duration.between(startTime, Instant.now()).toMillis() / 1000.0)
+                .put("exitCode", exitCode);
+        ObjectNode countsNode = summary.putObject("counts");
+        counts.forEach(countsNode::put);
+
+        Path file = Path.of(summaryFile.toString().replace(SHARD_PLACEHOLDER, String.valueOf(shardIndex)));
+        if (null != file.toAbsolutePath().getParent()) {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+        }
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(file.toFile(), summary);
+        LOG.info("Wrote the run summary to {}.", file);
+    }
+}
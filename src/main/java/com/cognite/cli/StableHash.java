@@ -0,0 +1,40 @@
+package com.cognite.cli;
+
+/**
+ * A 64-bit string hash that is stable across JVMs, platforms and releases.
+ *
+ * {@link String#hashCode()} is only 32 bits and not specified to stay the same across Java versions, so it is not
+ * suited for keys that are persisted to disk or shared between processes.
+ */
+final class StableHash {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private StableHash() {
+    }
+
+    /*
+    Returns the 64-bit hash of a string. FNV-1a over the UTF-16 code units, followed by a finalizer to spread the bits.
+     */
+    static long of(CharSequence value) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    /*
+    The finalizer from MurmurHash3 (fmix64).
+     */
+    static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,39 @@
+package com.cognite.cli;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JFR event recording one execution of a stage of the upload or delete commands, for example reading a file or
+ * uploading a batch. Created and committed via {@link StageTracer}.
+ *
+ * Record a run with {@code -XX:StartFlightRecording} and inspect the {@code com.cognite.cli.Stage} events in
+ * JDK Mission Control, or print them with {@code jfr print --events com.cognite.cli.Stage <recording>}.
+ */
+@Name("com.cognite.cli.Stage")
+@Label("CLI Stage")
+@Description("One execution of a stage of a CDF CLI command.")
+@Category({"Cognite", "CDF CLI"})
+@StackTrace(false)
+class StageEvent extends Event {
+    @Label("Stage")
+    String stage;
+
+    @Label("Items")
+    @Description("The number of files or ids processed.")
+    int items;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    // Not recorded by JFR. Used for the performance report.
+    transient StageTracer.Stage stageKey;
+    transient PerfReport perfReport;
+    transient long startNanos;
+}
@@ -0,0 +1,148 @@
+package com.cognite.cli;
+
+import jdk.jfr.EventType;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Traces the stages of the file commands as JFR {@link StageEvent}s and, when requested, in a
+ * {@link PerfReport}.
+ *
+ * A stage is traced by calling {@link #begin(Stage)} before and {@link #end(StageEvent)} after it:
+ * <pre>
+ *     StageEvent event = StageTracer.begin(Stage.UPLOAD);
+ *     ...
+ *     StageTracer.end(event, files, bytes);
+ * </pre>
+ * When neither the JFR event nor a performance report is enabled, {@code begin} returns a shared inactive event, so
+ * tracing costs two field reads and does not allocate. Paged listings are traced with {@link #forEachPage}.
+ */
+final class StageTracer {
+    private static final StageEvent INACTIVE = new StageEvent();
+    private static final EventType eventType = EventType.getEventType(StageEvent.class);
+
+    private static volatile PerfReport perfReport;
+
+    /**
+     * The traced stages. Sequential stages run one at a time and add to the duration of the run. Concurrent stages
+     * run in parallel with each other, so only the slowest of them is on the critical path. Wait stages measure time
+     * blocked on back-pressure and are never the bottleneck themselves.
+     */
+    enum Stage {
+        CLIENT_SETUP("client-setup", Kind.SEQUENTIAL),
+        TOKEN_FETCH("token-fetch", Kind.SEQUENTIAL),
+        DATA_SET_LOOKUP("data-set-lookup", Kind.SEQUENTIAL),
+        ID_FILE_READ("id-file-read", Kind.SEQUENTIAL),
+        WALK("walk", Kind.CONCURRENT),
+        EXTRACT("extract", Kind.CONCURRENT),
+        READ("read", Kind.CONCURRENT),
+        HASH("hash", Kind.CONCURRENT),
+        BUILD("build", Kind.CONCURRENT),
+        UPLOAD_QUEUE_WAIT("upload-queue-wait", Kind.WAIT),
+        CONTENT_LOOKUP("content-lookup", Kind.CONCURRENT),
+        UPLOAD("upload", Kind.CONCURRENT),
+        LIST("list", Kind.CONCURRENT),
+        DELETE_QUEUE_WAIT("delete-queue-wait", Kind.WAIT),
+        DELETE("delete", Kind.CONCURRENT),
+        DOWNLOAD_LINK("download-link", Kind.CONCURRENT),
+        DOWNLOAD_QUEUE_WAIT("download-queue-wait", Kind.WAIT),
+        DOWNLOAD("download", Kind.CONCURRENT);
+
+        final String label;
+        final Kind kind;
+
+        Stage(String label, Kind kind) {
+            this.label = label;
+            this.kind = kind;
+        }
+    }
+
+    enum Kind {
+        SEQUENTIAL, CONCURRENT, WAIT
+    }
+
+    @FunctionalInterface
+    interface PageConsumer<T> {
+        void accept(List<T> page) throws Exception;
+    }
+
+    private StageTracer() {
+    }
+
+    /*
+    Starts collecting a performance report. Stages traced until the report is detached are recorded in it.
+     */
+    static void attach(PerfReport report) {
+        perfReport = report;
+    }
+
+    static void detach(PerfReport report) {
+        if (perfReport == report) {
+            perfReport = null;
+        }
+    }
+
+    /*
+    Marks the start of a stage. The returned event must be passed to end().
+     */
+    static StageEvent begin(Stage stage) {
+        PerfReport report = perfReport;
+        if (null == report && !eventType.isEnabled()) {
+            return INACTIVE;
+        }
+
+        StageEvent event = new StageEvent();
+        event.stage = stage.label;
+        event.stageKey = stage;
+        event.perfReport = report;
+        event.startNanos = System.nanoTime();
+        if (null != report) {
+            report.onBegin(stage, event.startNanos);
+        }
+        event.begin();
+        return event;
+    }
+
+    static void end(StageEvent event) {
+        end(event, 0, 0);
+    }
+
+    /*
+    Passes each page of a listing to the consumer. The wait for each page is traced as the LIST stage, while the work of
+    the consumer is not. Returns the number of items listed.
+     */
+    static <T> long forEachPage(Iterator<List<T>> pages, PageConsumer<T> consumer) throws Exception {
+        long itemCounter = 0;
+        StageEvent listEvent = begin(Stage.LIST);
+        while (pages.hasNext()) {
+            List<T> page = pages.next();
+            end(listEvent, page.size(), 0);
+            consumer.accept(page);
+            itemCounter += page.size();
+            listEvent = begin(Stage.LIST);
+        }
+        end(listEvent);
+        return itemCounter;
+    }
+
+    /*
+    Marks the end of a stage, with the number of items and bytes it processed.
+     */
+    static void end(StageEvent event, int items, long bytes) {
+        if (event == INACTIVE) {
+            return;
+        }
+
+        long endNanos = System.nanoTime();
+        event.end();
+        if (event.shouldCommit()) {
+            event.items = items;
+            event.bytes = bytes;
+            event.commit();
+        }
+        if (null != event.perfReport) {
+            event.perfReport.onEnd(event.stageKey, event.startNanos, endNanos);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.cognite.cli;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Supplier;
+
+/**
+ * Supplies OAuth access tokens from the client credentials flow, cached in memory and on disk.
+ *
+ * A token fetched by one CLI invocation is stored in the cache directory and reused by later invocations until it is
+ * about to expire, so short commands do not pay for a round-trip to the identity provider. The cache file is keyed by
+ * a hash of the token URL, client id and scope (derived from the CDF host). The directory and files are only
+ * readable by the current user, and files are replaced atomically so concurrent invocations never read a partial
+ * token.
+ */
+class TokenCache implements Supplier<String> {
+    private static Logger LOG = LoggerFactory.getLogger(TokenCache.class);
+
+    // Tokens are refreshed this long before they expire, so a request never goes out with an expired token
+    private static final Duration EXPIRY_MARGIN = Duration.ofMinutes(5);
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Path cacheFile;
+    private final URL tokenUrl;
+    private final String clientId;
+    private final String clientSecret;
+    private final String scope;
+
+    private String accessToken;
+    private Instant expiresAt = Instant.MIN;
+
+    /**
+     * Creates a token cache.
+     *
+     * @param cacheDirectory The directory holding the cached tokens. Created if it does not exist.
+     * @param tokenUrl The OAuth token endpoint.
+     * @param clientId The client id.
+     * @param clientSecret The client secret.
+     * @param cdfHost The CDF base URL. The token scope is derived from it.
+     */
+    TokenCache(Path cacheDirectory, URL tokenUrl, String clientId, String clientSecret, String cdfHost) {
+        this.tokenUrl = tokenUrl;
+        this.clientId = clientId;
+        this.clientSecret = clientSecret;
+        this.scope = cdfHost.replaceAll("/+$", "") + "/.default";
+        String cacheKey = ContentHasher.toHex(
+                ContentHasher.newDigest().digest((tokenUrl + "\n" + clientId + "\n" + scope)
+                        .getBytes(StandardCharsets.UTF_8)));
+        this.cacheFile = cacheDirectory.resolve(cacheKey + ".json");
+    }
+
+    /*
+    Returns the authorization header value, "Bearer <token>". The CDF SDK calls this for every request.
+     */
+    @Override
+    public synchronized String get() {
+        try {
+            if (isExpiring(expiresAt)) {
+                StageEvent tokenEvent = StageTracer.begin(StageTracer.Stage.TOKEN_FETCH);
+                if (!readCacheFile()) {
+                    fetchToken();
+                    writeCacheFile();
+                }
+                StageTracer.end(tokenEvent);
+            }
+        } catch (Exception e) {
+            LOG.error("Unable to get an access token from {}: {}", tokenUrl, e.toString());
+            throw new RuntimeException(e);
+        }
+
+        return "Bearer " + accessToken;
+    }
+
+    /*
+    Loads the token from the cache file. Returns false if there is no usable token in the cache.
+     */
+    private boolean readCacheFile() {
+        if (!Files.isRegularFile(cacheFile)) {
+            return false;
+        }
+
+        try {
+            JsonNode root = objectMapper.readTree(cacheFile.toFile());
+            Instant cachedExpiresAt = Instant.ofEpochSecond(root.path("expiresAt").asLong());
+            if (!root.path("accessToken").isTextual() || isExpiring(cachedExpiresAt)) {
+                LOG.debug("The cached access token in {} has expired.", cacheFile);
+                return false;
+            }
+            accessToken = root.path("accessToken").textValue();
+            expiresAt = cachedExpiresAt;
+            LOG.debug("Using the cached access token from {}. It expires at {}.", cacheFile, expiresAt);
+            return true;
+        } catch (Exception e) {
+            LOG.warn("Unable to read the token cache file {}. Fetching a new token. {}", cacheFile, e.toString());
+            return false;
+        }
+    }
+
+    private void fetchToken() throws IOException, InterruptedException {
+        LOG.debug("Fetching a new access token from {}.", tokenUrl);
+        String form = "grant_type=client_credentials"
+                + "&client_id=" + URLEncoder.encode(clientId, StandardCharsets.UTF_8)
+                + "&client_secret=" + URLEncoder.encode(clientSecret, StandardCharsets.UTF_8)
+                + "&scope=" + URLEncoder.encode(scope, StandardCharsets.UTF_8);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(tokenUrl.toString()))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build();
+        HttpResponse<String> response = HttpClient.newHttpClient()
+                .send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IOException(String.format("The token request failed with status %d: %s",
+                    response.statusCode(), response.body()));
+        }
+
+        JsonNode root = objectMapper.readTree(response.body());
+        if (!root.path("access_token").isTextual()) {
+            throw new IOException("The token response does not contain an access token.");
+        }
+        accessToken = root.path("access_token").textValue();
+        expiresAt = Instant.now().plusSeconds(root.path("expires_in").asLong(3600));
+    }
+
+    /*
+    Writes the token to a temporary file readable only by the current user, then moves it into place.
+     */
+    private void writeCacheFile() {
+        try {
+            Path cacheDirectory = cacheFile.getParent();
+            boolean posix = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+            if (!Files.isDirectory(cacheDirectory)) {
+                if (posix) {
+                    Files.createDirectories(cacheDirectory,
+                            PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+                } else {
+                    Files.createDirectories(cacheDirectory);
+                }
+            }
+
+            Path tempFile = posix
+                    ? Files.createTempFile(cacheDirectory, "token", ".tmp",
+                            PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")))
+                    : Files.createTempFile(cacheDirectory, "token", ".tmp");
+            ObjectNode root = objectMapper.createObjectNode()
+                    .put("accessToken", accessToken)
+                    .put("expiresAt", expiresAt.getEpochSecond());
+            objectMapper.writeValue(tempFile.toFile(), root);
+            try {
+                Files.move(tempFile, cacheFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            LOG.debug("Cached the access token in {}. It expires at {}.", cacheFile, expiresAt);
+        } catch (Exception e) {
+            // The cache is an optimization. Keep going with the token in memory.
+            LOG.warn("Unable to write the token cache file {}: {}", cacheFile, e.toString());
+        }
+    }
+
+    private static boolean isExpiring(Instant expiresAt) {
+        return Instant.now().plus(EXPIRY_MARGIN).isAfter(expiresAt);
+    }
+}
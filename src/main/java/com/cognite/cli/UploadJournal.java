@@ -0,0 +1,213 @@
+package com.cognite.cli;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An append-only local journal of the files confirmed uploaded to CDF.
+ *
+ * Each record holds the external id, local path, size, last modified time and content hash of an uploaded file. On
+ * start-up the journal is loaded into a compact in-memory index keyed by a 64-bit hash of the external id, holding
+ * only the size and last modified time (24 bytes per entry). That is enough to decide whether a file is unchanged
+ * since it was last uploaded, so a rerun only has to read and upload the files that changed.
+ *
+ * The file format is a 4-byte header followed by length-prefixed records. A record that was only partially written,
+ * for example because the process was killed, is truncated away when the journal is opened.
+ */
+class UploadJournal implements Closeable {
+    private static Logger LOG = LoggerFactory.getLogger(UploadJournal.class);
+
+    private static final int MAGIC = 0x43444a31; // "CDJ1"
+    private static final int HEADER_SIZE = 4;
+
+    private final Path journalFile;
+    private final Index index;
+    private final DataOutputStream outputStream;
+
+    /**
+     * A confirmed upload.
+     */
+    record Record(String externalId, String path, long size, long lastModified, byte[] contentHash) {}
+
+    private UploadJournal(Path journalFile, long validLength, Index index) throws IOException {
+        this.journalFile = journalFile;
+        this.index = index;
+        FileChannel channel = FileChannel.open(journalFile,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (channel.size() > validLength) {
+            LOG.warn("The upload journal {} ends with an incomplete record. Truncating it.", journalFile);
+            channel.truncate(validLength);
+        }
+        channel.position(validLength);
+        this.outputStream = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+        if (validLength == 0) {
+            outputStream.writeInt(MAGIC);
+            outputStream.flush();
+        }
+    }
+
+    /**
+     * Opens a journal, loading the existing records into the index. The file is created if it does not exist.
+     */
+    static UploadJournal open(Path journalFile) throws IOException {
+        if (!Files.exists(journalFile) || Files.size(journalFile) == 0) {
+            return new UploadJournal(journalFile, 0, new Index());
+        }
+
+        Index loaded = new Index();
+        long validLength = HEADER_SIZE;
+        try (DataInputStream inputStream = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(journalFile), 64 * 1024))) {
+            if (inputStream.readInt() != MAGIC) {
+                throw new IOException(String.format("The file is not an upload journal: %s", journalFile));
+            }
+
+            byte[] recordBuffer = new byte[512];
+            while (true) {
+                int recordLength;
+                try {
+                    recordLength = inputStream.readInt();
+                    if (recordLength > recordBuffer.length) {
+                        recordBuffer = new byte[Math.max(recordLength, recordBuffer.length * 2)];
+                    }
+                    inputStream.readFully(recordBuffer, 0, recordLength);
+                } catch (EOFException e) {
+                    break;
+                }
+
+                DataInputStream recordStream = new DataInputStream(new ByteArrayInputStream(recordBuffer, 0, recordLength));
+                String externalId = recordStream.readUTF();
+                recordStream.readUTF(); // the local path is not needed for the index
+                loaded.put(StableHash.of(externalId), recordStream.readLong(), recordStream.readLong());
+                validLength += Integer.BYTES + recordLength;
+            }
+        }
+
+        UploadJournal journal = new UploadJournal(journalFile, validLength, loaded);
+        LOG.info("Loaded {} entries from the upload journal {}.", journal.size(), journalFile);
+        return journal;
+    }
+
+    /*
+    Returns true if the journal holds an upload of the external id with the same size and last modified time.
+     */
+    synchronized boolean isUnchanged(String externalId, long size, long lastModified) {
+        return index.matches(StableHash.of(externalId), size, lastModified);
+    }
+
+    /*
+    Appends a confirmed upload to the journal. Call flush() to make the appended records durable.
+     */
+    synchronized void append(Record record) throws IOException {
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(128);
+        DataOutputStream recordStream = new DataOutputStream(recordBytes);
+        recordStream.writeUTF(record.externalId());
+        recordStream.writeUTF(record.path());
+        recordStream.writeLong(record.size());
+        recordStream.writeLong(record.lastModified());
+        byte[] contentHash = null == record.contentHash() ? new byte[0] : record.contentHash();
+        recordStream.writeByte(contentHash.length);
+        recordStream.write(contentHash);
+
+        outputStream.writeInt(recordBytes.size());
+        recordBytes.writeTo(outputStream);
+        index.put(StableHash.of(record.externalId()), record.size(), record.lastModified());
+    }
+
+    synchronized void flush() throws IOException {
+        outputStream.flush();
+    }
+
+    synchronized int size() {
+        return index.size;
+    }
+
+    Path getJournalFile() {
+        return journalFile;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        outputStream.close();
+    }
+
+    /*
+    An open addressing hash table from a 64-bit key to (size, last modified), stored in primitive arrays.
+     */
+    private static class Index {
+        private static final long EMPTY = 0L;
+
+        private long[] keys = new long[1024];
+        private long[] sizes = new long[1024];
+        private long[] lastModifieds = new long[1024];
+        private int size = 0;
+
+        void put(long key, long fileSize, long lastModified) {
+            if (key == EMPTY) {
+                key = 1L;
+            }
+            if ((size + 1) * 4L > keys.length * 3L) {
+                resize();
+            }
+            int slot = slot(key, keys);
+            if (keys[slot] == EMPTY) {
+                keys[slot] = key;
+                size++;
+            }
+            sizes[slot] = fileSize;
+            lastModifieds[slot] = lastModified;
+        }
+
+        boolean matches(long key, long fileSize, long lastModified) {
+            if (key == EMPTY) {
+                key = 1L;
+            }
+            int slot = slot(key, keys);
+            return keys[slot] == key && sizes[slot] == fileSize && lastModifieds[slot] == lastModified;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            long[] oldSizes = sizes;
+            long[] oldLastModifieds = lastModifieds;
+            keys = new long[oldKeys.length * 2];
+            sizes = new long[keys.length];
+            lastModifieds = new long[keys.length];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    int slot = slot(oldKeys[i], keys);
+                    keys[slot] = oldKeys[i];
+                    sizes[slot] = oldSizes[i];
+                    lastModifieds[slot] = oldLastModifieds[i];
+                }
+            }
+        }
+
+        /*
+        Returns the slot holding the key, or the empty slot where it should be inserted. Linear probing.
+         */
+        private static int slot(long key, long[] keys) {
+            int mask = keys.length - 1;
+            int slot = (int) key & mask;
+            while (keys[slot] != EMPTY && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+}
@@ -0,0 +1,461 @@
+package com.cognite.cli;
+
+import com.cognite.client.CogniteClient;
+import com.cognite.client.dto.FileContainer;
+import com.cognite.client.dto.FileMetadata;
+import io.prometheus.client.Gauge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * A staged pipeline for uploading files to Cognite Data Fusion.
+ *
+ * The pipeline consists of three stages joined by bounded queues:
+ * <ol>
+ *     <li>A single source (walker) thread discovering the files to upload.</li>
+ *     <li>A pool of readers building the {@link FileContainer} for each file.</li>
+ *     <li>A pool of uploaders sending batches of file containers to CDF.</li>
+ * </ol>
+ * A stage blocks when the next stage cannot keep up, so memory usage stays bounded regardless of the number of files.
+ * In addition, the total size of the file binaries held in memory between the readers and the completed uploads can
+ * be capped by a {@link ByteBudget}. Files referenced by URI are not held in memory and are not charged to it.
+ */
+class UploadPipeline {
+    private static Logger LOG = LoggerFactory.getLogger(UploadPipeline.class);
+
+    // Markers signalling the end of input to the next stage
+    private static final FileEntry END_OF_ENTRIES = new FileEntry(Path.of(""), "", 0, 0);
+    private static final FileContainer END_OF_CONTAINERS = FileContainer.getDefaultInstance();
+
+    private final CogniteClient cogniteClient;
+    private final Reader reader;
+
+    private int readerThreads = 4;
+    private int uploaderThreads = 4;
+    private int uploadBatchSize = 20;
+    private int queueCapacity = 1000;
+    private ByteBudget byteBudget = new ByteBudget(0, CliMetrics.uploadInFlightBytes);
+    private BatchFilter preUploadFunction = batch -> batch;
+    private Consumer<List<FileMetadata>> postUploadFunction = fileMetadataList -> {};
+    private Consumer<Exception> exceptionHandlerFunction = exception -> LOG.warn("Error during upload: {}", exception.getMessage());
+    private LargeFileUploader largeFileUploader = null;
+    private long largeFileThreshold = Long.MAX_VALUE;
+
+    private final AtomicLong uploadedCounter = new AtomicLong();
+    private final AtomicLong uploadedBytesCounter = new AtomicLong();
+    private final AtomicLong failedCounter = new AtomicLong();
+
+    /**
+     * Produces the files to upload by putting them on the queue. Runs on the pipeline's walker thread.
+     */
+    @FunctionalInterface
+    interface Source {
+        void produce(BlockingQueue<FileEntry> queue) throws Exception;
+    }
+
+    /**
+     * Builds the file container for a file entry. Returns {@code null} if the file should be skipped.
+     */
+    @FunctionalInterface
+    interface Reader {
+        FileContainer read(FileEntry entry) throws Exception;
+    }
+
+    /**
+     * Inspects a batch before it is uploaded. Returns the file containers that should be uploaded.
+     */
+    @FunctionalInterface
+    interface BatchFilter {
+        List<FileContainer> filter(List<FileContainer> batch) throws Exception;
+    }
+
+    /**
+     * Uploads a single large file outside of the batch upload. Returns the metadata of the uploaded file.
+     */
+    @FunctionalInterface
+    interface LargeFileUploader {
+        FileMetadata upload(FileContainer container) throws Exception;
+    }
+
+    UploadPipeline(CogniteClient cogniteClient, Reader reader) {
+        this.cogniteClient = cogniteClient;
+        this.reader = reader;
+    }
+
+    UploadPipeline withReaderThreads(int readerThreads) {
+        this.readerThreads = Math.max(1, readerThreads);
+        return this;
+    }
+
+    UploadPipeline withUploaderThreads(int uploaderThreads) {
+        this.uploaderThreads = Math.max(1, uploaderThreads);
+        return this;
+    }
+
+    UploadPipeline withUploadBatchSize(int uploadBatchSize) {
+        this.uploadBatchSize = Math.max(1, uploadBatchSize);
+        return this;
+    }
+
+    UploadPipeline withQueueCapacity(int queueCapacity) {
+        this.queueCapacity = Math.max(1, queueCapacity);
+        return this;
+    }
+
+    /*
+    Sets the maximum number of file binary bytes held in memory while queued for upload or being uploaded. A value <= 0
+    disables the limit.
+     */
+    UploadPipeline withMaxInFlightBytes(long maxInFlightBytes) {
+        this.byteBudget = new ByteBudget(maxInFlightBytes, CliMetrics.uploadInFlightBytes);
+        CliMetrics.uploadInFlightBytesLimit.set(Math.max(0, maxInFlightBytes));
+        return this;
+    }
+
+    UploadPipeline withPreUploadFunction(BatchFilter preUploadFunction) {
+        this.preUploadFunction = preUploadFunction;
+        return this;
+    }
+
+    UploadPipeline withPostUploadFunction(Consumer<List<FileMetadata>> postUploadFunction) {
+        this.postUploadFunction = postUploadFunction;
+        return this;
+    }
+
+    /*
+    Uploads files with a binary of at least the threshold size one by one with the given uploader, instead of in
+    batches.
+     */
+    UploadPipeline withLargeFileUploader(long threshold, LargeFileUploader largeFileUploader) {
+        this.largeFileThreshold = threshold;
+        this.largeFileUploader = largeFileUploader;
+        return this;
+    }
+
+    UploadPipeline withExceptionHandlerFunction(Consumer<Exception> exceptionHandlerFunction) {
+        this.exceptionHandlerFunction = exceptionHandlerFunction;
+        return this;
+    }
+
+    /**
+     * Returns the number of file binary bytes uploaded.
+     */
+    long getUploadedBytes() {
+        return uploadedBytesCounter.get();
+    }
+
+    /**
+     * Returns the number of files that could not be read or uploaded.
+     */
+    long getFailedCount() {
+        return failedCounter.get();
+    }
+
+    /**
+     * Runs the pipeline until the source is exhausted and all files have been uploaded.
+     *
+     * @param source The source producing the files to upload.
+     * @return The number of files uploaded.
+     * @throws Exception if the source fails.
+     */
+    long run(Source source) throws Exception {
+        BlockingQueue<FileEntry> entryQueue = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<FileContainer> containerQueue = new ArrayBlockingQueue<>(queueCapacity);
+        ExecutorService executorService = IoExecutors.newExecutor("upload-pipeline");
+        CliMetrics.uploadQueueDepth.setChild(new QueueDepth(entryQueue), "read");
+        CliMetrics.uploadQueueDepth.setChild(new QueueDepth(containerQueue), "upload");
+
+        try {
+            Future<?> walker = executorService.submit(() -> {
+                StageEvent walkEvent = StageTracer.begin(StageTracer.Stage.WALK);
+                try {
+                    source.produce(entryQueue);
+                } finally {
+                    StageTracer.end(walkEvent);
+                    for (int i = 0; i < readerThreads; i++) {
+                        entryQueue.put(END_OF_ENTRIES);
+                    }
+                }
+                return null;
+            });
+
+            List<Future<?>> readers = new ArrayList<>();
+            for (int i = 0; i < readerThreads; i++) {
+                readers.add(executorService.submit(() -> read(entryQueue, containerQueue)));
+            }
+
+            List<Future<?>> uploaders = new ArrayList<>();
+            for (int i = 0; i < uploaderThreads; i++) {
+                uploaders.add(executorService.submit(() -> upload(containerQueue)));
+            }
+
+            // Wait for each stage to complete before signalling the next stage
+            Exception sourceException = null;
+            try {
+                walker.get();
+            } catch (ExecutionException e) {
+                sourceException = e.getCause() instanceof Exception cause ? cause : e;
+            }
+            for (Future<?> future : readers) {
+                future.get();
+            }
+            for (int i = 0; i < uploaderThreads; i++) {
+                containerQueue.put(END_OF_CONTAINERS);
+            }
+            for (Future<?> future : uploaders) {
+                future.get();
+            }
+
+            if (null != sourceException) {
+                throw sourceException;
+            }
+        } finally {
+            executorService.shutdownNow();
+            CliMetrics.uploadQueueDepth.remove("read");
+            CliMetrics.uploadQueueDepth.remove("upload");
+        }
+
+        return uploadedCounter.get();
+    }
+
+    /*
+    The reader stage. Builds file containers until the end of input is reached.
+     */
+    private Void read(BlockingQueue<FileEntry> entryQueue,
+                      BlockingQueue<FileContainer> containerQueue) throws InterruptedException {
+        while (true) {
+            FileEntry entry = entryQueue.take();
+            if (entry == END_OF_ENTRIES) {
+                return null;
+            }
+
+            // Content read ahead by the source is already charged to the budget, see acquireReadAhead
+            long readAheadBytes = null != entry.content() ? entry.size() : 0;
+            boolean queued = false;
+            try {
+                StageEvent readEvent = StageTracer.begin(StageTracer.Stage.READ);
+                FileContainer container = reader.read(entry);
+                StageTracer.end(readEvent, 1, entry.size());
+                if (null != container) {
+                    StageEvent waitEvent = StageTracer.begin(StageTracer.Stage.UPLOAD_QUEUE_WAIT);
+                    if (readAheadBytes == 0) {
+                        byteBudget.acquire(bufferedSize(container));
+                    }
+                    containerQueue.put(container);
+                    queued = true;
+                    StageTracer.end(waitEvent);
+                    CliMetrics.uploadFilesQueued.inc();
+                    CliMetrics.uploadBytesQueued.inc(binarySize(container));
+                    LOG.debug("{} added to the upload queue.", entry.path());
+                }
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                failedCounter.incrementAndGet();
+                CliMetrics.uploadFailedFiles.inc();
+                LOG.warn("Error when reading {}: {}", entry.path(), e.toString());
+            } finally {
+                if (!queued) {
+                    byteBudget.release(readAheadBytes);
+                }
+            }
+        }
+    }
+
+    /*
+    The uploader stage. Uploads batches of file containers until the end of input is reached.
+     */
+    private Void upload(BlockingQueue<FileContainer> containerQueue) throws InterruptedException {
+        List<FileContainer> drained = new ArrayList<>(uploadBatchSize);
+        boolean endOfInput = false;
+        while (!endOfInput) {
+            drained.clear();
+            drained.add(containerQueue.take());
+            containerQueue.drainTo(drained, uploadBatchSize - 1);
+
+            List<FileContainer> batch = new ArrayList<>(drained.size());
+            int endMarkers = 0;
+            for (FileContainer container : drained) {
+                if (container == END_OF_CONTAINERS) {
+                    endMarkers++;
+                } else {
+                    batch.add(container);
+                }
+            }
+
+            // Hand back end markers belonging to the other uploaders
+            if (endMarkers > 0) {
+                endOfInput = true;
+                for (int i = 1; i < endMarkers; i++) {
+                    containerQueue.put(END_OF_CONTAINERS);
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                List<FileContainer> largeFiles = new ArrayList<>();
+                List<FileContainer> uploadBatch = new ArrayList<>(batch.size());
+                List<FileContainer> filtered = null;
+                try {
+                    filtered = preUploadFunction.filter(batch);
+                    for (FileContainer container : filtered) {
+                        if (null != largeFileUploader && binarySize(container) >= largeFileThreshold) {
+                            largeFiles.add(container);
+                        } else {
+                            uploadBatch.add(container);
+                        }
+                    }
+                    if (!uploadBatch.isEmpty()) {
+                        uploadBatch(uploadBatch);
+                    }
+                } catch (Exception e) {
+                    // Files dropped by the pre-upload function are not failures. If it failed, the whole batch is.
+                    int failedFiles = null == filtered ? batch.size() : uploadBatch.size();
+                    failedCounter.addAndGet(failedFiles);
+                    CliMetrics.uploadErrors.inc();
+                    CliMetrics.uploadFailedFiles.inc(failedFiles);
+                    exceptionHandlerFunction.accept(e);
+                }
+
+                try {
+                    for (FileContainer container : largeFiles) {
+                        uploadLargeFile(container);
+                    }
+                } finally {
+                    byteBudget.release(bufferedSize(batch));
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private void uploadBatch(List<FileContainer> uploadBatch) throws Exception {
+        long startNanos = System.nanoTime();
+        StageEvent uploadEvent = StageTracer.begin(StageTracer.Stage.UPLOAD);
+        List<FileMetadata> results;
+        try {
+            results = cogniteClient.files().upload(uploadBatch);
+        } finally {
+            CliMetrics.uploadBatchLatency.observe(CliMetrics.secondsSince(startNanos));
+            StageTracer.end(uploadEvent, uploadBatch.size(), binarySize(uploadBatch));
+        }
+        uploadedCounter.addAndGet(results.size());
+        uploadedBytesCounter.addAndGet(binarySize(uploadBatch));
+        CliMetrics.uploadFiles.inc(results.size());
+        CliMetrics.uploadBytes.inc(binarySize(uploadBatch));
+        postUploadFunction.accept(results);
+    }
+
+    /*
+    Uploads a large file on its own. A failure only fails this file, not the rest of the batch.
+     */
+    private void uploadLargeFile(FileContainer container) {
+        uploadSingle(binarySize(container), () -> largeFileUploader.upload(container));
+    }
+
+    /*
+    Uploads a single file on the calling thread, with the same accounting and callbacks as the pipeline's own uploads.
+    Used by sources that must stream a file while producing, like large archive entries. A failure only fails this
+    file.
+     */
+    void uploadSingle(long binarySize, Callable<FileMetadata> upload) {
+        long startNanos = System.nanoTime();
+        StageEvent uploadEvent = StageTracer.begin(StageTracer.Stage.UPLOAD);
+        try {
+            FileMetadata result;
+            try {
+                result = upload.call();
+            } finally {
+                CliMetrics.uploadBatchLatency.observe(CliMetrics.secondsSince(startNanos));
+                StageTracer.end(uploadEvent, 1, binarySize);
+            }
+            uploadedCounter.incrementAndGet();
+            uploadedBytesCounter.addAndGet(binarySize);
+            CliMetrics.uploadFiles.inc();
+            CliMetrics.uploadBytes.inc(binarySize);
+            postUploadFunction.accept(List.of(result));
+        } catch (Exception e) {
+            failedCounter.incrementAndGet();
+            CliMetrics.uploadErrors.inc();
+            CliMetrics.uploadFailedFiles.inc();
+            exceptionHandlerFunction.accept(e);
+        }
+    }
+
+    /*
+    Charges the content of an entry which the source reads into memory before putting it on the entry queue. The
+    charge is released when the file has been uploaded or has failed. The source blocks while the budget is exhausted.
+     */
+    void acquireReadAhead(long bytes) throws InterruptedException {
+        byteBudget.acquire(bytes);
+    }
+
+    /*
+    Releases a read-ahead charge for content that the source did not put on the entry queue after all.
+     */
+    void releaseReadAhead(long bytes) {
+        byteBudget.release(bytes);
+    }
+
+    private static long binarySize(List<FileContainer> containers) {
+        long size = 0;
+        for (FileContainer container : containers) {
+            size += binarySize(container);
+        }
+        return size;
+    }
+
+    /*
+    Returns the size of the file binary, whether it is held in memory or referenced by URI.
+     */
+    private static long binarySize(FileContainer container) {
+        return container.getFileBinary().hasBinary()
+                ? container.getFileBinary().getBinary().size()
+                : container.getFileBinary().getContentLength();
+    }
+
+    private static long bufferedSize(List<FileContainer> containers) {
+        long size = 0;
+        for (FileContainer container : containers) {
+            size += bufferedSize(container);
+        }
+        return size;
+    }
+
+    /*
+    Returns the size of the file binary held in memory. A binary referenced by URI is streamed from disk when it is
+    uploaded, so it does not count.
+     */
+    private static long bufferedSize(FileContainer container) {
+        return container.getFileBinary().hasBinary() ? container.getFileBinary().getBinary().size() : 0;
+    }
+
+    /*
+    Reports the current size of a pipeline queue. The size is read when the metrics are collected, so the stages do
+    not need to update a gauge on every put and take.
+     */
+    private static class QueueDepth extends Gauge.Child {
+        private final BlockingQueue<?> queue;
+
+        QueueDepth(BlockingQueue<?> queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public double get() {
+            return queue.size();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.cognite.cli;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AimdLimiterTest {
+
+    @Test
+    void increasesAdditivelyAndDecreasesMultiplicatively() throws Exception {
+        AimdLimiter limiter = new AimdLimiter(2, 8);
+
+        // A full window of successes at stable latency increases the limit by one
+        for (int i = 0; i < 2; i++) {
+            limiter.acquire();
+            limiter.onSuccess(1_000_000);
+        }
+        assertEquals(3, limiter.getLimit());
+
+        for (int i = 0; i < 100; i++) {
+            limiter.acquire();
+            limiter.onSuccess(1_000_000);
+        }
+        assertEquals(8, limiter.getLimit());
+
+        limiter.acquire();
+        limiter.onFailure();
+        assertEquals(4, limiter.getLimit());
+
+        // Latency well above the best observed latency is treated as congestion
+        limiter.acquire();
+        limiter.onSuccess(10_000_000);
+        assertEquals(2, limiter.getLimit());
+
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire();
+            limiter.onFailure();
+        }
+        assertEquals(1, limiter.getLimit());
+    }
+
+    @Test
+    void forgetsOldMinimumLatency() throws Exception {
+        AimdLimiter limiter = new AimdLimiter(4, 8);
+
+        // One unusually fast response, then the server settles at a higher latency
+        limiter.acquire();
+        limiter.onSuccess(1_000_000);
+        for (int i = 0; i < 199; i++) {
+            limiter.acquire();
+            limiter.onSuccess(5_000_000);
+        }
+        assertEquals(1, limiter.getLimit());
+
+        // Once the fast response has aged out, the stable latency grows the limit again
+        for (int i = 0; i < 30; i++) {
+            limiter.acquire();
+            limiter.onSuccess(5_000_000);
+        }
+        assertTrue(limiter.getLimit() > 1);
+    }
+}
@@ -0,0 +1,55 @@
+package com.cognite.cli;
+
+import io.prometheus.client.Gauge;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ByteBudgetTest {
+    private final Gauge gauge = Gauge.build().name("test_inflight_bytes").help("Test gauge.").create();
+
+    @Test
+    void blocksWhenBudgetIsExhausted() throws Exception {
+        ByteBudget byteBudget = new ByteBudget(100, gauge);
+        byteBudget.acquire(60);
+
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            try {
+                byteBudget.acquire(60);
+                acquired.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+
+        assertFalse(acquired.await(200, TimeUnit.MILLISECONDS));
+        assertEquals(60, gauge.get());
+
+        byteBudget.release(60);
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        assertEquals(60, byteBudget.getInFlightBytes());
+        producer.join();
+    }
+
+    @Test
+    void admitsOversizedItemWhenIdle() throws Exception {
+        ByteBudget byteBudget = new ByteBudget(100, gauge);
+        byteBudget.acquire(500);
+        assertEquals(500, byteBudget.getInFlightBytes());
+        byteBudget.release(500);
+        assertEquals(0, gauge.get());
+    }
+
+    @Test
+    void convertsByteSizes() {
+        ByteSizeConverter converter = new ByteSizeConverter();
+        assertEquals(1024L, converter.convert("1024"));
+        assertEquals(512L << 20, converter.convert("512m"));
+        assertEquals(2L << 30, converter.convert("2GB"));
+    }
+}
@@ -0,0 +1,68 @@
+package com.cognite.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the per-command latency of cold invocations, one JVM per command, with commands run in a warm JVM as in
+ * the serve and batch modes.
+ *
+ * The command is a delete without input, so the numbers show the fixed start-up overhead and not the CDF API work.
+ * Only enabled when running with {@code -Dbenchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class CommandLatencyBenchmark {
+    private static final int COLD_RUNS = 5;
+    private static final int WARM_RUNS = 50;
+    private static final List<String> COMMAND = List.of("files", "delete");
+
+    final Logger LOG = LoggerFactory.getLogger(this.getClass());
+
+    @Test
+    void coldVersusWarmLatency() throws Exception {
+        String loggingPrefix = "Benchmark - coldVersusWarmLatency() -";
+
+        LOG.info(loggingPrefix + "----------------------------------------------------------------------");
+        LOG.info(loggingPrefix + "---------------  Start benchmark. Cold versus warm commands.  -----------------");
+        String javaBinary = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        long[] coldNanos = new long[COLD_RUNS];
+        for (int i = 0; i < COLD_RUNS; i++) {
+            long startNanos = System.nanoTime();
+            Process process = new ProcessBuilder(javaBinary, "-cp", System.getProperty("java.class.path"),
+                    CdfCli.class.getName(), COMMAND.get(0), COMMAND.get(1))
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            assertEquals(0, process.waitFor());
+            coldNanos[i] = System.nanoTime() - startNanos;
+        }
+
+        long[] warmNanos = new long[WARM_RUNS];
+        PrintWriter writer = new PrintWriter(new StringWriter());
+        CdfCli.execute(COMMAND, writer, writer);
+        for (int i = 0; i < WARM_RUNS; i++) {
+            long startNanos = System.nanoTime();
+            assertEquals(0, CdfCli.execute(COMMAND, writer, writer));
+            warmNanos[i] = System.nanoTime() - startNanos;
+        }
+
+        LOG.info(loggingPrefix + "Cold invocation median latency: {} ms", medianMillis(coldNanos));
+        LOG.info(loggingPrefix + "Warm invocation median latency: {} ms", medianMillis(warmNanos));
+    }
+
+    private static double medianMillis(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,28 @@
+package com.cognite.cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandScriptTest {
+
+    @Test
+    void tokenizesLikeShell() {
+        assertEquals(List.of("files", "upload", "/data/my files", "--source=a b", "it's", "x\"y"),
+                CommandScript.tokenize("  files upload '/data/my files' --source=\"a b\" it\\'s \"x\\\"y\"  "));
+        assertEquals(List.of("files", "delete", ""), CommandScript.tokenize("files delete ''"));
+    }
+
+    @Test
+    void skipsBlankLinesAndComments() {
+        assertTrue(CommandScript.tokenize("   ").isEmpty());
+        assertTrue(CommandScript.tokenize("  # files delete --id 1").isEmpty());
+    }
+
+    @Test
+    void rejectsUnterminatedQuote() {
+        assertThrows(IllegalArgumentException.class, () -> CommandScript.tokenize("files upload 'data"));
+    }
+}
@@ -0,0 +1,77 @@
+package com.cognite.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DirectoryWatcherTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void submitsFileOnceAfterLastWrite() throws Exception {
+        BlockingQueue<FileEntry> queue = new LinkedBlockingQueue<>();
+        try (DirectoryWatcher directoryWatcher = new DirectoryWatcher(tempDir, false, Duration.ofMillis(500))) {
+            Thread watcherThread = startWatcher(directoryWatcher, queue);
+
+            Path file = tempDir.resolve("growing.bin");
+            for (int i = 0; i < 5; i++) {
+                Files.write(file, new byte[1000], StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                Thread.sleep(100);
+            }
+
+            FileEntry entry = queue.poll(10, TimeUnit.SECONDS);
+            assertNotNull(entry);
+            assertEquals("growing.bin", entry.relativePath());
+            assertEquals(5000, entry.size());
+            assertNull(queue.poll(1, TimeUnit.SECONDS));
+
+            directoryWatcher.close();
+            watcherThread.join(5000);
+            assertFalse(watcherThread.isAlive());
+        }
+    }
+
+    @Test
+    void watchesNewSubDirectoriesWhenRecursive() throws Exception {
+        BlockingQueue<FileEntry> queue = new LinkedBlockingQueue<>();
+        try (DirectoryWatcher directoryWatcher = new DirectoryWatcher(tempDir, true, Duration.ofMillis(200))) {
+            startWatcher(directoryWatcher, queue);
+
+            Path subDirectory = Files.createDirectories(tempDir.resolve("a/b"));
+            Files.write(subDirectory.resolve("first.txt"), new byte[10]);
+            FileEntry first = queue.poll(10, TimeUnit.SECONDS);
+            assertNotNull(first);
+            assertEquals("a/b/first.txt", first.relativePath());
+
+            Files.write(subDirectory.resolve("second.txt"), new byte[20]);
+            FileEntry second = queue.poll(10, TimeUnit.SECONDS);
+            assertNotNull(second);
+            assertEquals("a/b/second.txt", second.relativePath());
+            assertEquals(20, second.size());
+        }
+    }
+
+    private static Thread startWatcher(DirectoryWatcher directoryWatcher, BlockingQueue<FileEntry> queue) {
+        Thread thread = new Thread(() -> {
+            try {
+                directoryWatcher.run(queue);
+            } catch (Exception e) {
+                // Stopped
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+}
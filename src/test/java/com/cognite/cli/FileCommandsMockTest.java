@@ -0,0 +1,524 @@
+package com.cognite.cli;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * End-to-end tests of the file commands against a {@link MockCdfServer}.
+ */
+class FileCommandsMockTest {
+
+    @TempDir
+    Path tempDir;
+
+    private MockCdfServer server;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = MockCdfServer.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    @Test
+    void uploadsAndDeletesDirectory() throws Exception {
+        Path inputDirectory = writeFiles(50, 1024);
+
+        assertEquals(0, run("files", "upload", "--recursive", "--source=mock-test", inputDirectory.toString()));
+        assertEquals(50, server.getFileCount());
+        assertEquals(50 * 1024, server.getUploadedBytes());
+        assertTrue(server.getFile("sub/file-7.bin").isPresent());
+        assertFalse(server.getFile("sub/file-7.bin").orElseThrow().path("metadata").has("size"));
+
+        assertEquals(0, run("files", "delete", "--filter=source=mock-test"));
+        assertEquals(0, server.getFileCount());
+    }
+
+    @Test
+    void uploadsDespiteThrottlingAndFailures() throws Exception {
+        Path inputDirectory = writeFiles(20, 1024);
+        server.withThrottleRate(0.1).withFailureRate(0.05);
+
+        assertEquals(0, run("files", "upload", "--recursive", "--source=mock-test", inputDirectory.toString()));
+        assertEquals(20, server.getFileCount());
+        assertTrue(server.getFiles().stream().allMatch(file -> file.path("uploaded").asBoolean()));
+    }
+
+    @Test
+    void uploadsLargeFilesInParts() throws Exception {
+        Path inputDirectory = writeFiles(2, 1024);
+        long largeFileSize = 16L * 1024 * 1024;
+        Files.write(inputDirectory.resolve("large.bin"), new byte[(int) largeFileSize]);
+        server.withFailureRate(0.1);
+
+        assertEquals(0, run("files", "upload", "--recursive", "--source=mock-test", "--multipart-threshold=6m",
+                "--multipart-part-size=5m", inputDirectory.toString()));
+        assertEquals(3, server.getFileCount());
+        assertTrue(server.getFiles().stream().allMatch(file -> file.path("uploaded").asBoolean()));
+        assertEquals(largeFileSize + 2 * 1024, server.getUploadedBytes());
+        assertEquals(1, server.getRequestCount("files/initmultipartupload"));
+        assertEquals(4, server.getRequestCount("upload-part"));
+        assertEquals(1, server.getRequestCount("files/completemultipartupload"));
+    }
+
+    @Test
+    void runsBatchWithMalformedLine() throws Exception {
+        server.addFile("batch-file", "mock-test");
+        String connection = String.join(" ", server.cliArgs().stream().map(arg -> "'" + arg + "'").toList());
+        Path script = tempDir.resolve("commands.txt");
+        Files.writeString(script, "files list 'unterminated " + connection + "\n"
+                + "files list --filter=source=mock-test " + connection + "\n");
+
+        // The malformed line fails on its own, and the output of the batch goes to the writers of the batch command
+        StringWriter output = new StringWriter();
+        assertEquals(1, CdfCli.execute(List.of("batch", "--continue-on-error", script.toString()),
+                new PrintWriter(output, true), new PrintWriter(output, true)));
+        assertTrue(output.toString().contains("Line 1 has an unterminated quote"));
+        assertTrue(output.toString().contains("\"externalId\":\"batch-file\""));
+    }
+
+    @Test
+    void deletesFileOfFailedMultipartUpload() throws Exception {
+        Path inputDirectory = tempDir.resolve("large");
+        Files.createDirectories(inputDirectory);
+        Files.write(inputDirectory.resolve("large.bin"), new byte[6 * 1024 * 1024]);
+        server.withFailingEndpoint("upload-part");
+
+        // Failed files are reported in the log and the summary, not in the exit code
+        run("files", "upload", "--source=mock-test", "--multipart-threshold=5m", "--multipart-part-size=5m",
+                inputDirectory.toString());
+        assertEquals(1, server.getRequestCount("files/initmultipartupload"));
+        assertEquals(0, server.getRequestCount("files/completemultipartupload"));
+        assertEquals(1, server.getRequestCount("files/delete"));
+        assertEquals(0, server.getFileCount());
+    }
+
+    @Test
+    void uploadsArchiveEntries() throws Exception {
+        long largeEntrySize = 12L * 1024 * 1024;
+        Path tarArchive = tempDir.resolve("delivery.tar.gz");
+        try (TarArchiveOutputStream tar = new TarArchiveOutputStream(
+                new GzipCompressorOutputStream(Files.newOutputStream(tarArchive)))) {
+            for (Map.Entry<String, byte[]> entry : Map.of(
+                    "a.txt", "a".getBytes(),
+                    "sub/b.txt", "bb".getBytes(),
+                    "../outside.txt", "x".getBytes(),
+                    "large.bin", new byte[(int) largeEntrySize]).entrySet()) {
+                TarArchiveEntry tarEntry = new TarArchiveEntry(entry.getKey(), true);
+                tarEntry.setSize(entry.getValue().length);
+                tar.putArchiveEntry(tarEntry);
+                tar.write(entry.getValue());
+                tar.closeArchiveEntry();
+            }
+        }
+        Path zipArchive = tempDir.resolve("delivery.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(zipArchive))) {
+            for (String name : List.of("c.txt", "sub/d.txt")) {
+                zip.putNextEntry(new ZipEntry(name));
+                zip.write(name.getBytes());
+                zip.closeEntry();
+            }
+        }
+
+        assertEquals(0, run("files", "upload", "--recursive", "--source=mock-test", "--multipart-threshold=6m",
+                "--multipart-part-size=5m", tarArchive.toString()));
+        assertEquals(3, server.getFileCount());
+        assertEquals(largeEntrySize + 3, server.getUploadedBytes());
+        assertEquals(3, server.getRequestCount("upload-part"));
+        assertEquals("/sub", server.getFile("sub/b.txt").orElseThrow().path("directory").asText());
+
+        // Without --recursive, only the top level of the archive is uploaded
+        assertEquals(0, run("files", "upload", "--source=mock-test", zipArchive.toString()));
+        assertEquals(4, server.getFileCount());
+        assertTrue(server.getFile("c.txt").isPresent());
+    }
+
+    @Test
+    void downloadsFilesAndSkipsExisting() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            server.addFile("file-" + i, "mock-test", i % 2 == 0 ? "" : "/sub", ("content-" + i).getBytes());
+        }
+        server.withFailureRate(0.1);
+        Path outputDirectory = tempDir.resolve("output");
+
+        assertEquals(0, run("files", "download", "--filter=source=mock-test", outputDirectory.toString()));
+        assertEquals("content-7", Files.readString(outputDirectory.resolve("sub/file-7")));
+        assertEquals("content-8", Files.readString(outputDirectory.resolve("file-8")));
+
+        // Unchanged files are not downloaded again
+        Files.writeString(outputDirectory.resolve("file-0"), "stale");
+        server.withFailureRate(0).resetStatistics();
+        assertEquals(0, run("files", "download", "--filter=source=mock-test", outputDirectory.toString()));
+        assertEquals("content-0", Files.readString(outputDirectory.resolve("file-0")));
+        assertEquals(20, server.getRequestCount("download"));
+        try (var outputFiles = Files.walk(outputDirectory)) {
+            assertEquals(20, outputFiles.filter(Files::isRegularFile).count());
+        }
+    }
+
+    @Test
+    void downloadsFilesWithTheSameNameAndSkipsPresentFiles() throws Exception {
+        long firstId = server.addFile("first", "mock-test", "/docs", "first".getBytes());
+        long secondId = server.addFile("second", "mock-test", "/docs", "second!".getBytes());
+        // A file named like the renamed path of the file after it
+        long thirdId = server.addFile("third", "mock-test", "/docs", "third".getBytes());
+        long fourthId = server.addFile("fourth", "mock-test", "/docs", "fourth".getBytes());
+        Map<Long, Integer> sizes = Map.of(firstId, 5, secondId, 7, thirdId, 5, fourthId, 6);
+        for (long id : sizes.keySet()) {
+            ObjectNode file = (ObjectNode) server.getFiles().stream()
+                    .filter(node -> node.path("id").asLong() == id)
+                    .findFirst().orElseThrow();
+            file.put("name", id == thirdId ? "report-" + fourthId + ".txt" : "report.txt");
+            file.putObject("metadata").put("size", String.valueOf(sizes.get(id)));
+        }
+        Path outputDirectory = tempDir.resolve("output");
+
+        assertEquals(0, run("files", "download", "--filter=source=mock-test", outputDirectory.toString()));
+        assertEquals("first", Files.readString(outputDirectory.resolve("docs/report.txt")));
+        assertEquals("second!", Files.readString(outputDirectory.resolve("docs/report-" + secondId + ".txt")));
+        assertEquals("third", Files.readString(outputDirectory.resolve("docs/report-" + fourthId + ".txt")));
+        assertEquals("fourth", Files.readString(outputDirectory.resolve("docs/report-" + fourthId + "-2.txt")));
+
+        // Files present with the size in the metadata are skipped without requesting download links
+        server.resetStatistics();
+        assertEquals(0, run("files", "download", "--filter=source=mock-test", outputDirectory.toString()));
+        assertEquals(0, server.getRequestCount("files/downloadlink"));
+        assertEquals(0, server.getRequestCount("download"));
+    }
+
+    @Test
+    void syncsOnlyChangedFiles() throws Exception {
+        Path inputDirectory = writeFiles(10, 1024);
+        server.addFile("unrelated", "other-source");
+
+        assertEquals(0, run("files", "sync", "--recursive", "--source=mock-test", "--ext-id-prefix=mirror/",
+                inputDirectory.toString()));
+        assertEquals(11, server.getFileCount());
+        assertTrue(server.getFile("mirror/file-2.bin").orElseThrow().path("metadata").has("size"));
+
+        // Nothing changed, so nothing is uploaded
+        server.resetStatistics();
+        assertEquals(0, run("files", "sync", "--recursive", "--source=mock-test", "--ext-id-prefix=mirror/",
+                inputDirectory.toString()));
+        assertEquals(0, server.getRequestCount("files"));
+
+        Files.write(inputDirectory.resolve("file-0.bin"), new byte[2048]);
+        Files.delete(inputDirectory.resolve("sub/file-1.bin"));
+        server.resetStatistics();
+        assertEquals(0, run("files", "sync", "--recursive", "--source=mock-test", "--ext-id-prefix=mirror/",
+                "--delete-missing", inputDirectory.toString()));
+        assertEquals(1, server.getRequestCount("files"));
+        assertEquals(2048, server.getUploadedBytes());
+        assertEquals(10, server.getFileCount());
+        assertTrue(server.getFile("mirror/sub/file-1.bin").isEmpty());
+        assertTrue(server.getFile("unrelated").isPresent());
+
+        // Only the changed file fails, not the unchanged files skipped in the same batch
+        Files.write(inputDirectory.resolve("file-2.bin"), new byte[512]);
+        server.withFailingEndpoint("files", 400);
+        Path summaryFile = tempDir.resolve("sync-summary.json");
+        assertEquals(0, run("files", "sync", "--recursive", "--source=mock-test", "--ext-id-prefix=mirror/",
+                "--summary-file=" + summaryFile, inputDirectory.toString()));
+        JsonNode counts = new ObjectMapper().readTree(summaryFile.toFile()).path("counts");
+        assertEquals(1, counts.path("failed").asLong());
+        assertEquals(8, counts.path("unchanged").asLong());
+    }
+
+    @Test
+    void deletesOnlyFilesOwnedBySync() throws Exception {
+        Path inputDirectory = writeFiles(4, 1024);
+        server.addFile(null, "mock-test");
+        server.addFile("mirror/../outside.bin", "mock-test");
+        server.addFile("mirror/elsewhere.bin", "mock-test", "/elsewhere", new byte[0]);
+        server.addFile("mirror/sub/other.bin", "mock-test", "/sub", new byte[0]);
+        server.addFile("mirror/target.bin", "mock-test", "/target", new byte[0]);
+        server.addFile("mirror/gone.bin", "mock-test");
+        server.addFile("unprefixed.bin", "mock-test");
+
+        // Without an external id prefix or data set, nothing narrows the files that may be deleted
+        assertNotEquals(0, run("files", "sync", "--source=mock-test", "--delete-missing", inputDirectory.toString()));
+        assertEquals(7, server.getFileCount());
+
+        // Files in sub-directories are only owned by a recursive sync
+        assertEquals(0, run("files", "sync", "--source=mock-test", "--ext-id-prefix=mirror/", "--delete-missing",
+                inputDirectory.toString()));
+        assertTrue(server.getFile("mirror/gone.bin").isEmpty());
+        assertTrue(server.getFile("mirror/sub/other.bin").isPresent());
+        assertEquals(7 + 2 - 1, server.getFileCount());
+
+        assertEquals(0, run("files", "sync", "--recursive", "--source=mock-test", "--ext-id-prefix=mirror/",
+                "--delete-missing", inputDirectory.toString()));
+        assertTrue(server.getFile("mirror/sub/other.bin").isEmpty());
+        assertEquals(8 + 2 - 1, server.getFileCount());
+
+        // Only the files in the target directory are listed
+        assertEquals(0, run("files", "sync", "--source=mock-test", "--ext-id-prefix=mirror/",
+                "--file-directory=/target", "--delete-missing", inputDirectory.toString()));
+        assertTrue(server.getFile("mirror/target.bin").isEmpty());
+        assertEquals(9 - 1, server.getFileCount());
+        assertTrue(server.getFile("mirror/../outside.bin").isPresent());
+        assertTrue(server.getFile("mirror/elsewhere.bin").isPresent());
+        assertTrue(server.getFile("unprefixed.bin").isPresent());
+        assertEquals(1, server.getFiles().stream().filter(file -> !file.has("externalId")).count());
+    }
+
+    @Test
+    void uploadsFilesListedInManifest() throws Exception {
+        Path inputDirectory = writeFiles(4, 1024);
+        Path jsonManifest = tempDir.resolve("manifest.jsonl");
+        Files.writeString(jsonManifest, """
+                {"path": "file-0.bin", "externalId": "json-0", "assetIds": [1, 2], "metadata": {"site": "north", "tags": ["a", {"b": 1}]}}
+                {"path": "file-2.bin", "externalId": "bad-asset", "assetIds": ["x", 5, [6]], "name": "bad"}
+                {"path": "sub/file-1.bin", "directory": "/custom"}
+                {"path": "missing.bin"}
+                """);
+        Path csvManifest = tempDir.resolve("manifest.csv");
+        Files.writeString(csvManifest, """
+                path,externalId,assetIds,metadata.site
+                file-2.bin,csv-2,3;4,south
+                sub/file-3.bin,,,
+                """);
+
+        assertEquals(0, run("files", "upload", "--source=mock-test", "--manifest=" + jsonManifest,
+                inputDirectory.toString()));
+        assertEquals(0, run("files", "upload", "--source=mock-test", "--manifest=" + csvManifest,
+                inputDirectory.toString()));
+        assertEquals(4, server.getFileCount());
+
+        JsonNode jsonFile = server.getFile("json-0").orElseThrow();
+        assertEquals("north", jsonFile.path("metadata").path("site").asText());
+        assertEquals("[\"a\",{\"b\":1}]", jsonFile.path("metadata").path("tags").asText());
+        assertEquals(2, jsonFile.path("assetIds").size());
+        assertEquals("/custom", server.getFile("sub/file-1.bin").orElseThrow().path("directory").asText());
+        // A row with an invalid asset id is skipped, and the rows after it are read
+        assertTrue(server.getFile("bad-asset").isEmpty());
+
+        JsonNode csvFile = server.getFile("csv-2").orElseThrow();
+        assertEquals("south", csvFile.path("metadata").path("site").asText());
+        assertEquals(4, csvFile.path("assetIds").path(1).asLong());
+        assertTrue(server.getFile("sub/file-3.bin").isPresent());
+    }
+
+    @Test
+    void splitsUploadsAndDeletesAcrossShards() throws Exception {
+        Path inputDirectory = writeFiles(30, 1024);
+        String summaryFile = "--summary-file=" + tempDir.resolve("summary/upload-{shard}.json");
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        long uploaded = 0;
+        for (int shard = 0; shard < 3; shard++) {
+            assertEquals(0, run("files", "upload", "--recursive", "--source=mock-test", "--shard-count=3",
+                    "--shard-index=" + shard, summaryFile, inputDirectory.toString()));
+            JsonNode summary = objectMapper.readTree(tempDir.resolve("summary/upload-" + shard + ".json").toFile());
+            assertEquals(shard, summary.path("shardIndex").asInt());
+            assertEquals(30, summary.path("counts").path("uploaded").asLong()
+                    + summary.path("counts").path("otherShards").asLong());
+            uploaded += summary.path("counts").path("uploaded").asLong();
+            assertEquals(uploaded, server.getFileCount());
+        }
+        assertEquals(30, uploaded);
+
+        assertEquals(0, run("files", "delete", "--filter=source=mock-test", "--shard-count=3", "--shard-index=1"));
+        assertEquals(0, run("files", "delete", "--filter=source=mock-test", "--shard-count=3", "--shard-index=2"));
+        assertEquals(objectMapper.readTree(tempDir.resolve("summary/upload-0.json").toFile())
+                .path("counts").path("uploaded").asLong(), server.getFileCount());
+    }
+
+    @Test
+    void evaluatesFiltersOnMetadataIndex() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            server.addFile("indexed-" + i, "mock-test");
+        }
+        server.addFile("other", "other-source");
+        // Enough files for the index tables to grow past their initial capacity
+        for (int i = 0; i < 1000; i++) {
+            server.addFile("bulk-" + i, "bulk-source");
+        }
+        String indexFile = "--index-file=" + tempDir.resolve("files.index");
+
+        StringWriter output = new StringWriter();
+        assertEquals(0, run(new PrintWriter(output, true), "files", "index", indexFile, "--filter=source=other-source"));
+        assertEquals(1, output.toString().lines().filter(line -> line.contains("\"externalId\":\"other\"")).count());
+
+        // Deleted files are not listed by the incremental refresh, so the count check must pick them up
+        assertEquals(0, run("files", "delete", "--ext-id=indexed-0"));
+        output = new StringWriter();
+        assertEquals(0, run(new PrintWriter(output, true), "files", "index", indexFile, "--filter=source=mock-test"));
+        assertEquals(4, output.toString().lines().filter(line -> line.startsWith("{")).count());
+
+        server.addFile("indexed-5", "mock-test");
+        server.resetStatistics();
+        output = new StringWriter();
+        assertEquals(0, run(new PrintWriter(output, true), "files", "index", indexFile, "--index-offline",
+                "--filter=source=mock-test"));
+        assertEquals(0, server.getRequestCount("files/list"));
+        assertEquals(4, output.toString().lines().filter(line -> line.startsWith("{")).count());
+
+        output = new StringWriter();
+        assertEquals(0, run(new PrintWriter(output, true), "files", "delete", indexFile, "--filter=source=mock-test",
+                "--dry-run"));
+        assertEquals(5, output.toString().lines().filter(line -> line.startsWith("{\"id\":")).count());
+        assertEquals(1006, server.getFileCount());
+        // A dry run is only evaluated on the index
+        assertNotEquals(0, run("files", "delete", "--filter=source=mock-test", "--dry-run"));
+        assertNotEquals(0, run("files", "delete", indexFile, "--filter=source=mock-test", "--filter=author=x",
+                "--dry-run"));
+        assertEquals(1006, server.getFileCount());
+
+        assertEquals(0, run("files", "delete", indexFile, "--filter=source=mock-test"));
+        assertEquals(1001, server.getFileCount());
+        assertTrue(server.getFile("other").isPresent());
+
+        output = new StringWriter();
+        assertEquals(0, run(new PrintWriter(output, true), "files", "index", indexFile, "--index-offline",
+                "--filter=externalIdPrefix=bulk-99"));
+        assertEquals(11, output.toString().lines().filter(line -> line.startsWith("{")).count());
+    }
+
+    @Test
+    void listsFilesInPartitions() throws Exception {
+        for (int i = 0; i < 25; i++) {
+            server.addFile("listed-" + i, i % 5 == 0 ? "other-source" : "mock-test");
+        }
+
+        StringWriter output = new StringWriter();
+        assertEquals(0, run(new PrintWriter(output, true), "files", "list", "--filter=source=mock-test",
+                "--partitions=4"));
+        ObjectMapper objectMapper = new ObjectMapper();
+        List<String> externalIds = new ArrayList<>();
+        for (String line : output.toString().lines().filter(line -> line.startsWith("{")).toList()) {
+            externalIds.add(objectMapper.readTree(line).path("externalId").asText());
+        }
+        assertEquals(20, externalIds.size());
+        assertEquals(20, externalIds.stream().distinct().count());
+        assertTrue(server.getRequestCount("files/list") >= 4);
+
+        // CDF accepts at most 10 partitions, so more are rejected before any request is sent
+        server.resetStatistics();
+        assertNotEquals(0, run("files", "list", "--partitions=11"));
+        assertEquals(0, server.getRequestCount("files/list"));
+
+        // The CSV export has the id in the first column, so it can be used as the input of delete
+        Path exportFile = tempDir.resolve("export.csv");
+        assertEquals(0, run("files", "list", "--filter=source=mock-test", "--partitions=3",
+                "--output-file=" + exportFile));
+        assertEquals(21, Files.readAllLines(exportFile).size());
+        assertEquals(0, run("files", "delete", "--id-file=" + exportFile));
+        assertEquals(5, server.getFileCount());
+    }
+
+    @Test
+    void reportsMissingFilesOnDelete() throws Exception {
+        long existingId = server.addFile("existing", "mock-test");
+        Path reportFile = tempDir.resolve("report.ndjson");
+
+        assertEquals(0, run("files", "delete", "--id=" + existingId, "--id=42", "--report-file=" + reportFile));
+        assertEquals(0, server.getFileCount());
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        List<JsonNode> report = new ArrayList<>();
+        for (String line : Files.readAllLines(reportFile)) {
+            report.add(objectMapper.readTree(line));
+        }
+        assertTrue(report.stream().anyMatch(entry -> entry.path("status").asText().equals(DeleteReport.DELETED)
+                && entry.path("id").asLong() == existingId));
+        assertTrue(report.stream().anyMatch(entry -> entry.path("status").asText().equals(DeleteReport.MISSING)
+                && entry.path("id").asLong() == 42));
+    }
+
+    @Test
+    void pushesMetricsToPushGateway() throws Exception {
+        Map<String, String> pushes = new ConcurrentHashMap<>();
+        HttpServer pushGateway = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        pushGateway.createContext("/metrics/job/", exchange -> {
+            pushes.put(exchange.getRequestURI().getPath(),
+                    new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            exchange.sendResponseHeaders(202, -1);
+            exchange.close();
+        });
+        pushGateway.start();
+        try {
+            Path inputDirectory = writeFiles(10, 1024);
+            String metricsUrl = "--metrics-push-gateway=http://localhost:" + pushGateway.getAddress().getPort();
+
+            assertEquals(0, run("files", "upload", "--recursive", "--source=mock-test", "--metrics",
+                    metricsUrl, "--metrics-job-name=mock-test", inputDirectory.toString()));
+            assertEquals(0, run("files", "delete", "--filter=source=mock-test", "--metrics",
+                    metricsUrl, "--metrics-job-name=mock-test"));
+        } finally {
+            pushGateway.stop(0);
+        }
+
+        String uploadMetrics = pushes.get("/metrics/job/mock-test/command/upload");
+        assertNotNull(uploadMetrics);
+        assertTrue(uploadMetrics.contains("cdf_cli_upload_files_total"));
+        assertTrue(uploadMetrics.contains("cdf_cli_upload_batch_latency_seconds_bucket"));
+        assertTrue(uploadMetrics.contains("cdf_cli_last_success_timestamp_seconds"));
+
+        String deleteMetrics = pushes.get("/metrics/job/mock-test/command/delete");
+        assertNotNull(deleteMetrics);
+        assertTrue(deleteMetrics.contains("cdf_cli_delete_files_total"));
+        assertTrue(deleteMetrics.contains("cdf_cli_delete_batch_latency_seconds_count"));
+    }
+
+    @Test
+    void printsPerformanceReport() throws Exception {
+        Path inputDirectory = writeFiles(10, 1024);
+        StringWriter output = new StringWriter();
+
+        assertEquals(0, run(new PrintWriter(output, true),
+                "files", "upload", "--recursive", "--source=mock-test", "--perf-report", inputDirectory.toString()));
+        String report = output.toString();
+        assertTrue(report.contains("Performance report."), report);
+        assertTrue(report.lines().anyMatch(line -> line.matches("read\\s+10\\s.*")), report);
+        assertTrue(report.lines().anyMatch(line -> line.startsWith("upload ")), report);
+        assertTrue(report.contains("(bottleneck)"), report);
+    }
+
+    private Path writeFiles(int count, int size) throws Exception {
+        Path inputDirectory = tempDir.resolve("input");
+        Files.createDirectories(inputDirectory.resolve("sub"));
+        for (int i = 0; i < count; i++) {
+            Path directory = i % 2 == 0 ? inputDirectory : inputDirectory.resolve("sub");
+            Files.write(directory.resolve("file-" + i + ".bin"), new byte[size]);
+        }
+        return inputDirectory;
+    }
+
+    private int run(String... args) {
+        return run(new PrintWriter(new StringWriter()), args);
+    }
+
+    private int run(PrintWriter out, String... args) {
+        List<String> commandArgs = new ArrayList<>(List.of(args));
+        commandArgs.addAll(server.cliArgs());
+        return CdfCli.execute(commandArgs, out, out);
+    }
+}
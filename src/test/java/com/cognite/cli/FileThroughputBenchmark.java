@@ -0,0 +1,134 @@
+package com.cognite.cli;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Load tests of {@code files upload} and {@code files delete} against a {@link MockCdfServer}. Reports files/s, MB/s
+ * and the p50/p99 per-file latency at different scales, with virtual threads and with platform threads. On runtimes
+ * without virtual threads, both runs use platform threads and are reported as such.
+ *
+ * The mock server latency can be set with {@code -Dbenchmark.latencyMillis=<millis>} to approximate the round-trip
+ * to a real CDF project. Only enabled when running with {@code -Dbenchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class FileThroughputBenchmark {
+    private static final long KB = 1024L;
+    private static final long MB = 1024L * KB;
+
+    final Logger LOG = LoggerFactory.getLogger(this.getClass());
+
+    @TempDir
+    Path tempDir;
+
+    private MockCdfServer server;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = MockCdfServer.start()
+                .withLatency(Duration.ofMillis(Long.getLong("benchmark.latencyMillis", 0)));
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    @Test
+    void uploadAndDeleteThroughput() throws Exception {
+        String loggingPrefix = "Benchmark - uploadAndDeleteThroughput() -";
+
+        LOG.info(loggingPrefix + "----------------------------------------------------------------------");
+        LOG.info(loggingPrefix + "---------------  Start benchmark. Upload and delete files.  -----------------");
+        record Scale(int fileCount, long fileSize) {}
+        List<String> results = new ArrayList<>();
+        for (IoExecutors.Mode mode : IoExecutors.Mode.values()) {
+            System.setProperty(IoExecutors.THREADS_PROPERTY, mode.name());
+            String threads = IoExecutors.mode().name().toLowerCase();
+            for (Scale scale : List.of(new Scale(100, 4 * KB), new Scale(1_000, 4 * KB), new Scale(10_000, 4 * KB),
+                    new Scale(50, 10 * MB))) {
+                Path inputDirectory = writeFiles(scale.fileCount(), scale.fileSize());
+                String source = "benchmark-" + scale.fileCount() + "-" + scale.fileSize();
+                server.resetStatistics();
+
+                long startNanos = System.nanoTime();
+                assertEquals(0, run("files", "upload", "--recursive", "--source=" + source, inputDirectory.toString()));
+                results.add(report("upload", threads, scale.fileCount(), scale.fileSize(),
+                        System.nanoTime() - startNanos, server.getUploadLatencyNanos()));
+                assertEquals(scale.fileCount(), server.getFileCount());
+
+                startNanos = System.nanoTime();
+                assertEquals(0, run("files", "delete", "--filter=source=" + source));
+                results.add(report("delete", threads, scale.fileCount(), 0,
+                        System.nanoTime() - startNanos, server.getDeleteLatencyNanos()));
+                assertEquals(0, server.getFileCount());
+
+                deleteFiles(inputDirectory);
+            }
+        }
+        System.clearProperty(IoExecutors.THREADS_PROPERTY);
+
+        results.forEach(result -> LOG.info(loggingPrefix + result));
+    }
+
+    private static String report(String command, String threads, int fileCount, long fileSize, long durationNanos,
+                                 List<Long> latencyNanos) {
+        double seconds = durationNanos / 1e9;
+        Collections.sort(latencyNanos);
+        return String.format("%-6s %-8s %6d files x %8d bytes: %8.1f files/s, %8.1f MB/s, p50 %7.1f ms, p99 %7.1f ms",
+                command, threads, fileCount, fileSize,
+                fileCount / seconds,
+                fileCount * (double) fileSize / MB / seconds,
+                percentileMillis(latencyNanos, 0.50),
+                percentileMillis(latencyNanos, 0.99));
+    }
+
+    private static double percentileMillis(List<Long> sortedNanos, double percentile) {
+        if (sortedNanos.isEmpty()) {
+            return Double.NaN;
+        }
+        int index = (int) Math.ceil(percentile * sortedNanos.size()) - 1;
+        return sortedNanos.get(Math.max(0, index)) / 1e6;
+    }
+
+    private Path writeFiles(int count, long size) throws Exception {
+        Path inputDirectory = Files.createTempDirectory(tempDir, "input");
+        byte[] content = new byte[(int) size];
+        for (int i = 0; i < count; i++) {
+            Files.write(inputDirectory.resolve("file-" + i + ".bin"), content);
+        }
+        return inputDirectory;
+    }
+
+    private static void deleteFiles(Path directory) throws Exception {
+        try (var files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private int run(String... args) {
+        List<String> commandArgs = new ArrayList<>(List.of(args));
+        commandArgs.addAll(server.cliArgs());
+        PrintWriter writer = new PrintWriter(new StringWriter());
+        return CdfCli.execute(commandArgs, writer, writer);
+    }
+}
@@ -0,0 +1,102 @@
+package com.cognite.cli;
+
+import com.cognite.client.dto.FileContainer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import picocli.CommandLine;
+
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Measures the peak memory footprint of building a file container and streaming its binary from disk.
+ *
+ * The benchmark writes large (sparse) files to a temp directory, so it is only enabled when running with
+ * {@code -Dbenchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class FileUploadMemoryBenchmark {
+    private static final long MB = 1024L * 1024L;
+    private static final long GB = 1024L * MB;
+
+    final Logger LOG = LoggerFactory.getLogger(this.getClass());
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void peakRssPerFileSize() throws Exception {
+        String loggingPrefix = "Benchmark - peakRssPerFileSize() -";
+
+        LOG.info(loggingPrefix + "----------------------------------------------------------------------");
+        LOG.info(loggingPrefix + "---------------  Start benchmark. Stream file binaries.  -----------------");
+        LOG.info(loggingPrefix + "Baseline peak RSS: {} MB", peakRssBytes() / MB);
+
+        for (long size : List.of(MB, GB, 10 * GB)) {
+            Instant startInstant = Instant.now();
+            Path file = tempDir.resolve("bench-" + size + ".bin");
+            try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+                raf.setLength(size);
+            }
+
+            FileUpload fileUpload = new FileUpload();
+            new CommandLine(fileUpload).parseArgs("--source=benchmark", file.toString());
+            FileContainer container = fileUpload.buildFileContainer(
+                    FileEntry.of(file, file, Files.readAttributes(file, BasicFileAttributes.class)));
+
+            // Drain the binary the same way the SDK does when sending the request body
+            long transferred = 0;
+            try (FileChannel source = FileChannel.open(Path.of(new URI(container.getFileBinary().getBinaryUri())),
+                    StandardOpenOption.READ);
+                 WritableByteChannel sink = Channels.newChannel(OutputStream.nullOutputStream())) {
+                while (transferred < source.size()) {
+                    transferred += source.transferTo(transferred, 8 * MB, sink);
+                }
+            }
+
+            LOG.info(loggingPrefix + "File size: {} MB. Peak RSS: {} MB. Heap used: {} MB. Duration: {}",
+                    size / MB,
+                    peakRssBytes() / MB,
+                    (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()) / MB,
+                    Duration.between(startInstant, Instant.now()));
+
+            Files.delete(file);
+            assertEquals(size, transferred);
+            assertEquals(size, container.getFileBinary().getContentLength());
+        }
+
+        LOG.info(loggingPrefix + "----------------------------------------------------------------------");
+    }
+
+    /*
+    Returns the peak resident set size (VmHWM) of this process. Returns -1 if not available on the platform.
+     */
+    private static long peakRssBytes() throws Exception {
+        Path status = Path.of("/proc/self/status");
+        if (!Files.isReadable(status)) {
+            return -1;
+        }
+        for (String line : Files.readAllLines(status)) {
+            if (line.startsWith("VmHWM:")) {
+                return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024L;
+            }
+        }
+        return -1;
+    }
+}
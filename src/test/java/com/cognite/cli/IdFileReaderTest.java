@@ -0,0 +1,58 @@
+package com.cognite.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdFileReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void readsIdsFromCsv() throws Exception {
+        Path idFile = tempDir.resolve("ids.csv");
+        Files.writeString(idFile, "id,name\r\n42,a\r\n\"7\",b\r\n 42 ,c\r\n\r\nnot-an-id\r\n123456789012345678");
+
+        assertArrayEquals(new long[] {7, 42, 123456789012345678L}, IdFileReader.readIds(idFile));
+    }
+
+    @Test
+    void rejectsMalformedIds() throws Exception {
+        Path idFile = tempDir.resolve("ids.txt");
+        Files.writeString(idFile, "12 34\n9223372036854775807\n9223372036854775808\n00042\n-5\n1e3\n");
+
+        assertArrayEquals(new long[] {42, Long.MAX_VALUE}, IdFileReader.readIds(idFile));
+    }
+
+    @Test
+    void readsLargeIdFile() throws Exception {
+        Path idFile = tempDir.resolve("ids.txt");
+        StringBuilder content = new StringBuilder();
+        for (int i = 200_000; i > 0; i--) {
+            content.append(i).append('\n');
+        }
+        Files.writeString(idFile, content);
+
+        long[] ids = IdFileReader.readIds(idFile);
+        assertEquals(200_000, ids.length);
+        assertEquals(1, ids[0]);
+        assertEquals(200_000, ids[ids.length - 1]);
+    }
+
+    @Test
+    void readsExternalIds() throws Exception {
+        Path externalIdFile = tempDir.resolve("ext-ids.csv");
+        Files.writeString(externalIdFile, "externalId,name\nfile-1,a\n\"file,2\",b\nfile-1,c\n\nfile-3");
+
+        List<String> externalIds = new ArrayList<>();
+        IdFileReader.readExternalIds(externalIdFile, externalIds::add);
+        assertEquals(List.of("file-1", "file,2", "file-3"), externalIds);
+    }
+}
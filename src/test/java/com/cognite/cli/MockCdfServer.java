@@ -0,0 +1,890 @@
+package com.cognite.cli;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.KeyStore;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+
+/**
+ * An in-process stand-in for the CDF Files and Data Sets endpoints and an OAuth token endpoint, for offline
+ * end-to-end and load tests.
+ *
+ * The CDF SDK only talks https and ignores the port of the CDF host, so the server listens on a free port with a
+ * self-signed certificate for localhost from {@code mock-cdf-server.p12}, and requests to {@code https://localhost}
+ * are tunneled to it through a local proxy. {@link #start()} makes the JVM trust the certificate and use the proxy.
+ * Point the CLI at the server with {@link #cliArgs()}. Only one server should run at a time.
+ *
+ * The server keeps the file metadata in memory and counts the uploaded bytes without storing them. Files added with
+ * content by a test can be downloaded. Latency, throttling (429) and failures (500) can be injected to test how the CLI
+ * behaves against a slow or overloaded CDF project. The server records the per-file latency from the metadata
+ * request to the completed binary upload, and the latency of each delete request.
+ */
+class MockCdfServer implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(MockCdfServer.class);
+
+    static final String PROJECT = "mock-project";
+
+    private static final Pattern API_PATH = Pattern.compile("/api/v1/projects/([^/]+)/(.+)");
+    private static final Pattern UPLOAD_PATH = Pattern.compile("/upload/(\\d+)");
+    private static final Pattern UPLOAD_PART_PATH = Pattern.compile("/upload/(\\d+)/part/(\\d+)");
+    private static final Pattern DOWNLOAD_PATH = Pattern.compile("/download/(\\d+)");
+    private static final String KEY_STORE = "mock-cdf-server.p12";
+    private static final char[] KEY_STORE_PASSWORD = "changeit".toCharArray();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpsServer httpServer;
+    private final ExecutorService executorService = Executors.newCachedThreadPool();
+
+    // Fault injection
+    private volatile Duration latency = Duration.ZERO;
+    private volatile double throttleRate = 0;
+    private volatile double failureRate = 0;
+    private volatile int maxConcurrentRequests = Integer.MAX_VALUE;
+    // The status code to respond with, by failing endpoint
+    private final Map<String, Integer> failingEndpoints = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlightRequests = new AtomicInteger();
+
+    // State
+    private final Map<Long, ObjectNode> files = new ConcurrentSkipListMap<>();
+    private final Map<String, Long> fileExternalIds = new ConcurrentHashMap<>();
+    // The content of files added with addFile(), by file id. Uploaded content is counted, not stored.
+    private final Map<Long, byte[]> fileContents = new ConcurrentHashMap<>();
+    // The multipart uploads in progress, by file id
+    private final Map<Long, MultipartUpload> multipartUploads = new ConcurrentHashMap<>();
+
+    /*
+    A multipart upload in progress: the number of parts and the received part sizes by part number.
+     */
+    private record MultipartUpload(int parts, Map<Integer, Long> partSizes) {}
+    private final Map<Long, ObjectNode> dataSets = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1_000_000);
+
+    // Statistics
+    private final Map<String, AtomicLong> requestCounts = new ConcurrentHashMap<>();
+    private final AtomicLong throttledCounter = new AtomicLong();
+    private final AtomicLong failedCounter = new AtomicLong();
+    private final AtomicLong uploadedBytes = new AtomicLong();
+    private final Map<Long, Long> fileCreatedNanos = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Long> uploadLatencyNanos = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Long> deleteLatencyNanos = new ConcurrentLinkedQueue<>();
+
+    private MockCdfServer() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream inputStream = MockCdfServer.class.getClassLoader().getResourceAsStream(KEY_STORE)) {
+            keyStore.load(inputStream, KEY_STORE_PASSWORD);
+        }
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, KEY_STORE_PASSWORD);
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(keyManagerFactory.getKeyManagers(), null, null);
+
+        httpServer = HttpsServer.create(new InetSocketAddress("localhost", 0), 1024);
+        httpServer.setHttpsConfigurator(new HttpsConfigurator(sslContext));
+        httpServer.setExecutor(executorService);
+        httpServer.createContext("/", this::handle);
+    }
+
+    /**
+     * Starts a server on a free local port. Sets the JVM trust store to the certificate of the server and routes
+     * https://localhost to it.
+     */
+    static MockCdfServer start() throws Exception {
+        trustServerCertificate();
+        MockCdfServer server = new MockCdfServer();
+        server.httpServer.start();
+        MockProxy.routeTo(server.httpServer.getAddress().getPort());
+        LOG.info("Mock CDF server listening on {}", server.getHost());
+        return server;
+    }
+
+    /*
+    Adds a fixed latency to every API and upload request.
+     */
+    MockCdfServer withLatency(Duration latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    /*
+    Responds with 429 to the given fraction of API and upload requests.
+     */
+    MockCdfServer withThrottleRate(double throttleRate) {
+        this.throttleRate = throttleRate;
+        return this;
+    }
+
+    /*
+    Responds with 500 to the given fraction of API and upload requests.
+     */
+    MockCdfServer withFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+        return this;
+    }
+
+    /*
+    Responds with 500 to all requests to the endpoint, for example "upload-part" or "files/completemultipartupload".
+     */
+    MockCdfServer withFailingEndpoint(String endpoint) {
+        return withFailingEndpoint(endpoint, 500);
+    }
+
+    /*
+    Responds with the status code to all requests to the endpoint. Use a 4xx code to fail without client retries.
+     */
+    MockCdfServer withFailingEndpoint(String endpoint, int statusCode) {
+        failingEndpoints.put(endpoint, statusCode);
+        return this;
+    }
+
+    /*
+    Responds with 429 to requests above the given number of concurrent requests, like the CDF rate limiting.
+     */
+    MockCdfServer withMaxConcurrentRequests(int maxConcurrentRequests) {
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        return this;
+    }
+
+    /*
+    The CDF host to use. Requests to it are tunneled to the server.
+     */
+    String getHost() {
+        return "https://localhost";
+    }
+
+    String getTokenUrl() {
+        return getHost() + "/oauth2/token";
+    }
+
+    /*
+    The arguments pointing the CLI at this server.
+     */
+    List<String> cliArgs() {
+        return List.of(
+                "--cdf-host=" + getHost(),
+                "--cdf-project=" + PROJECT,
+                "--client-id=mock-client",
+                "--client-secret=mock-secret",
+                "--token-url=" + getTokenUrl());
+    }
+
+    /*
+    The system properties that make a CLI started as a separate process, a JVM or the native executable, trust the
+    server certificate and reach the server through the proxy. Pass them as -D arguments.
+     */
+    List<String> childProcessProperties() {
+        return List.of(
+                "-Djavax.net.ssl.trustStore=" + System.getProperty("javax.net.ssl.trustStore"),
+                "-Djavax.net.ssl.trustStorePassword=" + System.getProperty("javax.net.ssl.trustStorePassword"),
+                "-Djavax.net.ssl.trustStoreType=" + System.getProperty("javax.net.ssl.trustStoreType"),
+                "-Dhttps.proxyHost=" + MockProxy.instance.proxySocket.getInetAddress().getHostAddress(),
+                "-Dhttps.proxyPort=" + MockProxy.instance.proxySocket.getLocalPort(),
+                // localhost bypasses the proxy by default
+                "-Dhttp.nonProxyHosts=");
+    }
+
+    /*
+    Adds a data set and returns its id.
+     */
+    long addDataSet(String externalId) {
+        long id = nextId.incrementAndGet();
+        dataSets.put(id, objectMapper.createObjectNode()
+                .put("id", id)
+                .put("externalId", externalId)
+                .put("name", externalId));
+        return id;
+    }
+
+    /*
+    Adds an uploaded file and returns its id.
+     */
+    long addFile(String externalId, String source) {
+        ObjectNode file = objectMapper.createObjectNode()
+                .put("name", null == externalId ? "unnamed" : externalId)
+                .put("source", source);
+        if (null != externalId) {
+            file.put("externalId", externalId);
+        }
+        long id = storeFile(file);
+        file.put("uploaded", true).put("uploadedTime", System.currentTimeMillis());
+        return id;
+    }
+
+    /*
+    Adds an uploaded file with content that can be downloaded, and returns its id.
+     */
+    long addFile(String externalId, String source, String directory, byte[] content) {
+        long id = addFile(externalId, source);
+        files.get(id).put("directory", directory);
+        fileContents.put(id, content);
+        return id;
+    }
+
+    int getFileCount() {
+        return files.size();
+    }
+
+    Optional<JsonNode> getFile(String externalId) {
+        return Optional.ofNullable(fileExternalIds.get(externalId)).map(files::get);
+    }
+
+    List<JsonNode> getFiles() {
+        return new ArrayList<>(files.values());
+    }
+
+    long getUploadedBytes() {
+        return uploadedBytes.get();
+    }
+
+    long getRequestCount(String endpoint) {
+        return requestCounts.getOrDefault(endpoint, new AtomicLong()).get();
+    }
+
+    long getThrottledCount() {
+        return throttledCounter.get();
+    }
+
+    long getFailedCount() {
+        return failedCounter.get();
+    }
+
+    /*
+    The latency per file, from the metadata request to the completed binary upload.
+     */
+    List<Long> getUploadLatencyNanos() {
+        return new ArrayList<>(uploadLatencyNanos);
+    }
+
+    /*
+    The latency per deleted file, i.e. the latency of the delete request that deleted it.
+     */
+    List<Long> getDeleteLatencyNanos() {
+        return new ArrayList<>(deleteLatencyNanos);
+    }
+
+    /*
+    Clears the recorded latencies and request counts, keeping the stored files.
+     */
+    void resetStatistics() {
+        requestCounts.clear();
+        throttledCounter.set(0);
+        failedCounter.set(0);
+        uploadedBytes.set(0);
+        uploadLatencyNanos.clear();
+        deleteLatencyNanos.clear();
+    }
+
+    @Override
+    public void close() {
+        httpServer.stop(0);
+        executorService.shutdownNow();
+    }
+
+    /*
+    The SDK builds its trust manager from the default trust store, so point the trust store at the key store of the
+    server. The key store is copied to a file, since the trust store cannot be a class path resource.
+     */
+    private static synchronized void trustServerCertificate() throws IOException {
+        if (null != System.getProperty("javax.net.ssl.trustStore")) {
+            return;
+        }
+        Path trustStore = Files.createTempFile("mock-cdf-server", ".p12");
+        trustStore.toFile().deleteOnExit();
+        try (InputStream inputStream = MockCdfServer.class.getClassLoader().getResourceAsStream(KEY_STORE)) {
+            Files.copy(inputStream, trustStore, StandardCopyOption.REPLACE_EXISTING);
+        }
+        System.setProperty("javax.net.ssl.trustStore", trustStore.toString());
+        System.setProperty("javax.net.ssl.trustStorePassword", new String(KEY_STORE_PASSWORD));
+        System.setProperty("javax.net.ssl.trustStoreType", "PKCS12");
+    }
+
+    /*
+    A minimal HTTP CONNECT proxy that tunnels https://localhost on the default port to the running server. There is
+    one proxy per JVM on a fixed port, since the SDK clients are cached across commands and the http client retries
+    failed connections on the route it used before.
+     */
+    private static class MockProxy extends ProxySelector {
+        private static MockProxy instance;
+
+        private final ServerSocket proxySocket;
+        private final Proxy proxy;
+        private final ProxySelector delegate = ProxySelector.getDefault();
+        private final ExecutorService executorService = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "mock-cdf-proxy");
+            thread.setDaemon(true);
+            return thread;
+        });
+        private volatile int targetPort;
+
+        private MockProxy() throws IOException {
+            proxySocket = new ServerSocket(0, 1024, InetAddress.getLoopbackAddress());
+            proxy = new Proxy(Proxy.Type.HTTP, proxySocket.getLocalSocketAddress());
+            executorService.execute(this::acceptConnections);
+        }
+
+        static synchronized void routeTo(int port) throws IOException {
+            if (null == instance) {
+                instance = new MockProxy();
+                ProxySelector.setDefault(instance);
+            }
+            instance.targetPort = port;
+        }
+
+        @Override
+        public List<Proxy> select(URI uri) {
+            if ("https".equals(uri.getScheme()) && "localhost".equals(uri.getHost())
+                    && (uri.getPort() == -1 || uri.getPort() == 443)) {
+                return List.of(proxy);
+            }
+            return null == delegate ? List.of(Proxy.NO_PROXY) : delegate.select(uri);
+        }
+
+        @Override
+        public void connectFailed(URI uri, SocketAddress socketAddress, IOException e) {
+            LOG.warn("Failed to connect to {} via the mock proxy: {}", uri, e.toString());
+        }
+
+        private void acceptConnections() {
+            while (true) {
+                try {
+                    Socket client = proxySocket.accept();
+                    executorService.execute(() -> tunnel(client));
+                } catch (IOException e) {
+                    LOG.warn("Mock proxy error: {}", e.toString());
+                }
+            }
+        }
+
+        private void tunnel(Socket client) {
+            try (client; Socket server = new Socket(InetAddress.getLoopbackAddress(), targetPort)) {
+                // Skip the CONNECT request line and headers, up to the empty line
+                InputStream clientInput = client.getInputStream();
+                int matched = 0;
+                while (matched < 4) {
+                    int b = clientInput.read();
+                    if (b == -1) {
+                        return;
+                    }
+                    matched = (b == '\r' && matched % 2 == 0) || (b == '\n' && matched % 2 == 1) ? matched + 1
+                            : b == '\r' ? 1 : 0;
+                }
+                client.getOutputStream().write("HTTP/1.1 200 Connection established\r\n\r\n"
+                        .getBytes(StandardCharsets.US_ASCII));
+                client.getOutputStream().flush();
+
+                executorService.execute(() -> {
+                    try {
+                        server.getInputStream().transferTo(client.getOutputStream());
+                    } catch (IOException e) {
+                        // The tunnel is closed
+                    } finally {
+                        closeQuietly(client);
+                    }
+                });
+                clientInput.transferTo(server.getOutputStream());
+            } catch (IOException e) {
+                // The tunnel is closed
+            }
+        }
+
+        private static void closeQuietly(Socket socket) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Closing anyway
+            }
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long startNanos = System.nanoTime();
+        String path = exchange.getRequestURI().getPath();
+        try (exchange) {
+            if (path.equals("/oauth2/token")) {
+                exchange.getRequestBody().readAllBytes();
+                count("token");
+                sendJson(exchange, 200, objectMapper.createObjectNode()
+                        .put("access_token", "mock-token")
+                        .put("token_type", "Bearer")
+                        .put("expires_in", 3600));
+                return;
+            }
+
+            inFlightRequests.incrementAndGet();
+            try {
+                if (!injectFaults(exchange)) {
+                    route(exchange, path, startNanos);
+                }
+            } finally {
+                inFlightRequests.decrementAndGet();
+            }
+        } catch (Exception e) {
+            LOG.warn("Mock CDF server error for {} {}: {}", exchange.getRequestMethod(), path, e.toString());
+        }
+    }
+
+    /*
+    Applies latency, throttling and failures. Returns true if the request was answered with an error.
+     */
+    private boolean injectFaults(HttpExchange exchange) throws Exception {
+        if (!latency.isZero()) {
+            Thread.sleep(latency.toMillis());
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (inFlightRequests.get() > maxConcurrentRequests || random.nextDouble() < throttleRate) {
+            exchange.getRequestBody().readAllBytes();
+            throttledCounter.incrementAndGet();
+            sendError(exchange, 429, "Too many requests", null);
+            return true;
+        }
+        if (random.nextDouble() < failureRate) {
+            exchange.getRequestBody().readAllBytes();
+            failedCounter.incrementAndGet();
+            sendError(exchange, 500, "Internal server error", null);
+            return true;
+        }
+        return false;
+    }
+
+    private void route(HttpExchange exchange, String path, long startNanos) throws Exception {
+        Matcher uploadMatcher = UPLOAD_PATH.matcher(path);
+        if (uploadMatcher.matches() && exchange.getRequestMethod().equals("PUT")) {
+            count("upload");
+            uploadBinary(exchange, Long.parseLong(uploadMatcher.group(1)));
+            return;
+        }
+        Matcher uploadPartMatcher = UPLOAD_PART_PATH.matcher(path);
+        if (uploadPartMatcher.matches() && exchange.getRequestMethod().equals("PUT")) {
+            count("upload-part");
+            if (failEndpoint(exchange, "upload-part")) {
+                return;
+            }
+            uploadPart(exchange, Long.parseLong(uploadPartMatcher.group(1)), Integer.parseInt(uploadPartMatcher.group(2)));
+            return;
+        }
+
+        Matcher downloadMatcher = DOWNLOAD_PATH.matcher(path);
+        if (downloadMatcher.matches() && exchange.getRequestMethod().equals("GET")) {
+            count("download");
+            downloadBinary(exchange, Long.parseLong(downloadMatcher.group(1)));
+            return;
+        }
+
+        Matcher apiMatcher = API_PATH.matcher(path);
+        if (!apiMatcher.matches() || !exchange.getRequestMethod().equals("POST")) {
+            sendError(exchange, 404, "Not found: " + path, null);
+            return;
+        }
+        String endpoint = apiMatcher.group(2);
+        count(endpoint);
+        if (failEndpoint(exchange, endpoint)) {
+            return;
+        }
+        JsonNode body = objectMapper.readTree(exchange.getRequestBody());
+        switch (endpoint) {
+            case "files" -> createFile(exchange, (ObjectNode) body);
+            case "files/initmultipartupload" -> initMultipartUpload(exchange, (ObjectNode) body);
+            case "files/completemultipartupload" -> completeMultipartUpload(exchange, body);
+            case "files/downloadlink" -> downloadLinks(exchange, body);
+            case "files/byids" -> retrieve(exchange, body, files, fileExternalIds);
+            case "files/list" -> listFiles(exchange, body);
+            case "files/aggregate" -> aggregateFiles(exchange, body);
+            case "files/delete" -> deleteFiles(exchange, body, startNanos);
+            case "datasets/byids" -> retrieve(exchange, body, dataSets, dataSetExternalIds());
+            default -> sendError(exchange, 404, "Not found: " + path, null);
+        }
+    }
+
+    /*
+    Answers the request with an error if the endpoint is set to fail. Returns true if it did.
+     */
+    private boolean failEndpoint(HttpExchange exchange, String endpoint) throws IOException {
+        Integer statusCode = failingEndpoints.get(endpoint);
+        if (null == statusCode) {
+            return false;
+        }
+        exchange.getRequestBody().readAllBytes();
+        failedCounter.incrementAndGet();
+        sendError(exchange, statusCode, statusCode >= 500 ? "Internal server error" : "Bad request", null);
+        return true;
+    }
+
+    private void createFile(HttpExchange exchange, ObjectNode file) throws IOException {
+        Long id = storeNewFile(exchange, file);
+        if (null == id) {
+            return;
+        }
+        ObjectNode response = file.deepCopy();
+        response.put("uploadUrl", getHost() + "/upload/" + id);
+        sendJson(exchange, 201, response);
+    }
+
+    private void initMultipartUpload(HttpExchange exchange, ObjectNode file) throws IOException {
+        Matcher partsMatcher = Pattern.compile("parts=(\\d+)").matcher(String.valueOf(exchange.getRequestURI().getQuery()));
+        int parts = partsMatcher.find() ? Integer.parseInt(partsMatcher.group(1)) : 0;
+        if (parts < 1 || parts > 250) {
+            sendError(exchange, 400, "The number of parts must be between 1 and 250", null);
+            return;
+        }
+        Long id = storeNewFile(exchange, file);
+        if (null == id) {
+            return;
+        }
+        multipartUploads.put(id, new MultipartUpload(parts, new ConcurrentHashMap<>()));
+
+        ObjectNode response = file.deepCopy();
+        response.put("uploadId", "multipart-" + id);
+        ArrayNode uploadUrls = response.putArray("uploadUrls");
+        for (int i = 0; i < parts; i++) {
+            uploadUrls.add(getHost() + "/upload/" + id + "/part/" + i);
+        }
+        sendJson(exchange, 201, response);
+    }
+
+    private void completeMultipartUpload(HttpExchange exchange, JsonNode body) throws IOException {
+        long id = body.path("id").asLong();
+        ObjectNode file = files.get(id);
+        MultipartUpload multipartUpload = multipartUploads.get(id);
+        if (null == file || null == multipartUpload || !body.path("uploadId").asText().equals("multipart-" + id)) {
+            sendError(exchange, 400, "Unknown multipart upload", null);
+            return;
+        }
+        if (multipartUpload.partSizes().size() != multipartUpload.parts()) {
+            sendError(exchange, 400, "Not all parts have been uploaded", null);
+            return;
+        }
+        multipartUploads.remove(id);
+        file.put("uploaded", true).put("uploadedTime", System.currentTimeMillis());
+        Long createdNanos = fileCreatedNanos.remove(id);
+        if (null != createdNanos) {
+            uploadLatencyNanos.add(System.nanoTime() - createdNanos);
+        }
+        sendJson(exchange, 200, objectMapper.createObjectNode());
+    }
+
+    private void uploadPart(HttpExchange exchange, long id, int part) throws IOException {
+        long size = readBody(exchange);
+        MultipartUpload multipartUpload = multipartUploads.get(id);
+        if (null == multipartUpload || part >= multipartUpload.parts()) {
+            sendError(exchange, 404, "Unknown upload url", null);
+            return;
+        }
+        // A retried part replaces the earlier attempt
+        Long previousSize = multipartUpload.partSizes().put(part, size);
+        uploadedBytes.addAndGet(size - (null == previousSize ? 0 : previousSize));
+        exchange.sendResponseHeaders(200, -1);
+    }
+
+    /*
+    Stores a new file, replacing an existing file with the same external id when overwrite is requested. Returns null
+    if the request was answered with an error.
+     */
+    private Long storeNewFile(HttpExchange exchange, ObjectNode file) throws IOException {
+        boolean overwrite = String.valueOf(exchange.getRequestURI().getQuery()).contains("overwrite=true");
+        if (file.hasNonNull("externalId") && fileExternalIds.containsKey(file.get("externalId").asText())) {
+            if (!overwrite) {
+                ObjectNode duplicate = objectMapper.createObjectNode().put("externalId", file.get("externalId").asText());
+                sendError(exchange, 409, "Duplicate external ids", duplicate);
+                return null;
+            }
+            removeFile(fileExternalIds.get(file.get("externalId").asText()));
+        }
+
+        long id = storeFile(file);
+        fileCreatedNanos.put(id, System.nanoTime());
+        return id;
+    }
+
+    private void uploadBinary(HttpExchange exchange, long id) throws IOException {
+        uploadedBytes.addAndGet(readBody(exchange));
+
+        ObjectNode file = files.get(id);
+        if (null == file) {
+            sendError(exchange, 404, "Unknown upload url", null);
+            return;
+        }
+        file.put("uploaded", true).put("uploadedTime", System.currentTimeMillis());
+        Long createdNanos = fileCreatedNanos.remove(id);
+        if (null != createdNanos) {
+            uploadLatencyNanos.add(System.nanoTime() - createdNanos);
+        }
+        exchange.sendResponseHeaders(200, -1);
+    }
+
+    private void downloadLinks(HttpExchange exchange, JsonNode body) throws IOException {
+        ArrayNode items = objectMapper.createArrayNode();
+        ArrayNode missing = objectMapper.createArrayNode();
+        for (JsonNode item : body.path("items")) {
+            Long id = item.has("id") ? Long.valueOf(item.get("id").asLong()) : fileExternalIds.get(item.path("externalId").asText());
+            if (null == id || !files.containsKey(id)) {
+                missing.add(item);
+            } else {
+                items.addObject().put("id", id).put("downloadUrl", getHost() + "/download/" + id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            sendError(exchange, 400, "Files not found", missing);
+            return;
+        }
+        sendItems(exchange, items, null);
+    }
+
+    private void downloadBinary(HttpExchange exchange, long id) throws IOException {
+        byte[] content = fileContents.get(id);
+        if (null == content) {
+            sendError(exchange, 404, "Unknown download url", null);
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+        exchange.sendResponseHeaders(200, content.length == 0 ? -1 : content.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(content);
+        }
+    }
+
+    /*
+    Reads and discards the request body. Returns its size.
+     */
+    private static long readBody(HttpExchange exchange) throws IOException {
+        long size = 0;
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream inputStream = exchange.getRequestBody()) {
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                size += read;
+            }
+        }
+        return size;
+    }
+
+    private void retrieve(HttpExchange exchange, JsonNode body, Map<Long, ObjectNode> resources,
+                          Map<String, Long> externalIds) throws IOException {
+        ArrayNode items = objectMapper.createArrayNode();
+        ArrayNode missing = objectMapper.createArrayNode();
+        for (JsonNode item : body.path("items")) {
+            Long id = item.has("id") ? Long.valueOf(item.get("id").asLong()) : externalIds.get(item.path("externalId").asText());
+            if (null != id && resources.containsKey(id)) {
+                items.add(resources.get(id));
+            } else {
+                missing.add(item);
+            }
+        }
+
+        if (!missing.isEmpty() && !body.path("ignoreUnknownIds").asBoolean(false)) {
+            sendError(exchange, 400, "Ids not found", missing);
+            return;
+        }
+        sendItems(exchange, items, null);
+    }
+
+    private void listFiles(HttpExchange exchange, JsonNode body) throws IOException {
+        JsonNode filter = body.path("filter");
+        int limit = Math.min(1000, body.path("limit").asInt(100));
+        long cursor = body.path("cursor").isTextual() ? Long.parseLong(body.path("cursor").asText()) : Long.MIN_VALUE;
+        int partition = 0;
+        int partitionCount = 1;
+        if (body.path("partition").isTextual()) {
+            String[] parts = body.path("partition").asText().split("/");
+            partition = Integer.parseInt(parts[0]) - 1;
+            partitionCount = Integer.parseInt(parts[1]);
+        }
+
+        ArrayNode items = objectMapper.createArrayNode();
+        String nextCursor = null;
+        Iterator<ObjectNode> iterator = ((ConcurrentSkipListMap<Long, ObjectNode>) files)
+                .tailMap(cursor, false).values().iterator();
+        while (iterator.hasNext()) {
+            ObjectNode file = iterator.next();
+            long id = file.get("id").asLong();
+            if (Math.floorMod(id, partitionCount) != partition || !matches(file, filter)) {
+                continue;
+            }
+            if (items.size() == limit) {
+                nextCursor = String.valueOf(items.get(items.size() - 1).get("id").asLong());
+                break;
+            }
+            items.add(file);
+        }
+        sendItems(exchange, items, nextCursor);
+    }
+
+    private void aggregateFiles(HttpExchange exchange, JsonNode body) throws IOException {
+        JsonNode filter = body.path("filter");
+        long count = files.values().stream()
+                .filter(file -> matches(file, filter))
+                .count();
+        ArrayNode items = objectMapper.createArrayNode();
+        items.addObject().put("count", count);
+        sendItems(exchange, items, null);
+    }
+
+    private void deleteFiles(HttpExchange exchange, JsonNode body, long startNanos) throws IOException {
+        List<Long> ids = new ArrayList<>();
+        ArrayNode missing = objectMapper.createArrayNode();
+        for (JsonNode item : body.path("items")) {
+            Long id = item.has("id") ? Long.valueOf(item.get("id").asLong()) : fileExternalIds.get(item.path("externalId").asText());
+            if (null != id && files.containsKey(id)) {
+                ids.add(id);
+            } else {
+                missing.add(item);
+            }
+        }
+
+        if (!missing.isEmpty() && !body.path("ignoreUnknownIds").asBoolean(false)) {
+            sendError(exchange, 400, "Files not found", missing);
+            return;
+        }
+        ids.forEach(this::removeFile);
+        long latencyNanos = System.nanoTime() - startNanos;
+        ids.forEach(id -> deleteLatencyNanos.add(latencyNanos));
+        sendJson(exchange, 200, objectMapper.createObjectNode());
+    }
+
+    /*
+    Supports the file filters used by the CLI: exact matches on the top-level fields, metadata, data set ids,
+    external id prefix and time ranges.
+     */
+    private static boolean matches(ObjectNode file, JsonNode filter) {
+        Iterator<Map.Entry<String, JsonNode>> fields = filter.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            JsonNode expected = field.getValue();
+            boolean match = switch (field.getKey()) {
+                case "metadata" -> {
+                    boolean metadataMatch = true;
+                    Iterator<Map.Entry<String, JsonNode>> metadata = expected.fields();
+                    while (metadata.hasNext()) {
+                        Map.Entry<String, JsonNode> entry = metadata.next();
+                        metadataMatch &= entry.getValue().equals(file.path("metadata").path(entry.getKey()));
+                    }
+                    yield metadataMatch;
+                }
+                case "dataSetIds" -> {
+                    boolean dataSetMatch = false;
+                    for (JsonNode dataSetId : expected) {
+                        dataSetMatch |= dataSetId.path("id").asLong() == file.path("dataSetId").asLong(-1);
+                    }
+                    yield dataSetMatch;
+                }
+                case "externalIdPrefix" -> file.path("externalId").asText().startsWith(expected.asText());
+                case "directoryPrefix" -> file.has("directory")
+                        && file.path("directory").asText().startsWith(expected.asText());
+                case "createdTime", "lastUpdatedTime", "uploadedTime" -> {
+                    long value = file.path(field.getKey()).asLong(Long.MIN_VALUE);
+                    yield value >= expected.path("min").asLong(Long.MIN_VALUE)
+                            && value <= expected.path("max").asLong(Long.MAX_VALUE);
+                }
+                default -> expected.asText().equals(file.path(field.getKey()).asText());
+            };
+            if (!match) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long storeFile(ObjectNode file) {
+        long id = nextId.incrementAndGet();
+        long now = System.currentTimeMillis();
+        file.put("id", id)
+                .put("uploaded", false)
+                .put("createdTime", now)
+                .put("lastUpdatedTime", now);
+        files.put(id, file);
+        if (file.hasNonNull("externalId")) {
+            fileExternalIds.put(file.get("externalId").asText(), id);
+        }
+        return id;
+    }
+
+    private void removeFile(long id) {
+        ObjectNode file = files.remove(id);
+        if (null != file && file.hasNonNull("externalId")) {
+            fileExternalIds.remove(file.get("externalId").asText(), id);
+        }
+        fileCreatedNanos.remove(id);
+        fileContents.remove(id);
+        multipartUploads.remove(id);
+    }
+
+    private Map<String, Long> dataSetExternalIds() {
+        Map<String, Long> externalIds = new ConcurrentHashMap<>();
+        dataSets.forEach((id, dataSet) -> externalIds.put(dataSet.get("externalId").asText(), id));
+        return externalIds;
+    }
+
+    private void count(String endpoint) {
+        requestCounts.computeIfAbsent(endpoint, key -> new AtomicLong()).incrementAndGet();
+    }
+
+    private void sendItems(HttpExchange exchange, ArrayNode items, String nextCursor) throws IOException {
+        ObjectNode response = objectMapper.createObjectNode();
+        response.set("items", items);
+        if (null != nextCursor) {
+            response.put("nextCursor", nextCursor);
+        }
+        sendJson(exchange, 200, response);
+    }
+
+    private void sendError(HttpExchange exchange, int code, String message, JsonNode missingOrDuplicated)
+            throws IOException {
+        ObjectNode response = objectMapper.createObjectNode();
+        ObjectNode error = response.putObject("error")
+                .put("code", code)
+                .put("message", message);
+        if (null != missingOrDuplicated) {
+            error.set(code == 409 ? "duplicated" : "missing",
+                    missingOrDuplicated.isArray() ? missingOrDuplicated : objectMapper.createArrayNode().add(missingOrDuplicated));
+        }
+        sendJson(exchange, code, response);
+    }
+
+    private void sendJson(HttpExchange exchange, int status, JsonNode body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+}
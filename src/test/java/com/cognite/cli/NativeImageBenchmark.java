@@ -0,0 +1,146 @@
+package com.cognite.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Compares the JVM and the native executable: the start-up time and peak RSS of a delete without input, which does no
+ * CDF API work, and of an upload of small files against the {@link MockCdfServer}. Both builds run as separate
+ * processes with the same arguments, and the peak RSS is sampled from {@code /proc/<pid>/status} while the process
+ * runs.
+ *
+ * Build the native executable first with {@code mvn -Pnative package}. Its path is read from
+ * {@code -Dbenchmark.nativeExecutable}, default {@code target/cdf}. Without it, only the JVM is measured and the native
+ * run is reported as skipped. Only enabled when running with {@code -Dbenchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class NativeImageBenchmark {
+    private static final long MB = 1024L * 1024L;
+    private static final int RUNS = 5;
+    private static final int UPLOAD_FILES = 200;
+    private static final int UPLOAD_FILE_SIZE = 64 * 1024;
+    private static final List<String> STARTUP_COMMAND = List.of("files", "delete");
+
+    final Logger LOG = LoggerFactory.getLogger(this.getClass());
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void jvmVersusNative() throws Exception {
+        String loggingPrefix = "Benchmark - jvmVersusNative() -";
+
+        LOG.info(loggingPrefix + "----------------------------------------------------------------------");
+        LOG.info(loggingPrefix + "---------------  Start benchmark. JVM versus native executable.  -----------------");
+        Path inputDirectory = tempDir.resolve("input");
+        Files.createDirectories(inputDirectory);
+        for (int i = 0; i < UPLOAD_FILES; i++) {
+            Files.write(inputDirectory.resolve("file-" + i + ".bin"), new byte[UPLOAD_FILE_SIZE]);
+        }
+
+        String javaBinary = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        List<String> jvmCommand = List.of(javaBinary, "-cp", System.getProperty("java.class.path"),
+                CdfCli.class.getName());
+        Path nativeExecutable = Path.of(System.getProperty("benchmark.nativeExecutable", "target/cdf"));
+
+        try (MockCdfServer server = MockCdfServer.start()) {
+            measure(loggingPrefix, "JVM", jvmCommand, server, inputDirectory);
+
+            if (!Files.isExecutable(nativeExecutable)) {
+                LOG.warn(loggingPrefix + "No native executable at {}. Build it with mvn -Pnative package.",
+                        nativeExecutable);
+            }
+            assumeTrue(Files.isExecutable(nativeExecutable), "No native executable at " + nativeExecutable);
+            measure(loggingPrefix, "native", List.of(nativeExecutable.toString()), server, inputDirectory);
+        }
+    }
+
+    /*
+    Runs the start-up command and the upload with one build, and logs the median elapsed time and peak RSS.
+     */
+    private void measure(String loggingPrefix, String build, List<String> command, MockCdfServer server,
+                         Path inputDirectory) throws Exception {
+        long[] startupNanos = new long[RUNS];
+        long[] startupRss = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long[] result = run(command, List.of(), STARTUP_COMMAND);
+            startupNanos[i] = result[0];
+            startupRss[i] = result[1];
+        }
+
+        long[] uploadNanos = new long[RUNS];
+        long[] uploadRss = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            List<String> args = new ArrayList<>(List.of("files", "upload", "--source=benchmark",
+                    "--ext-id-prefix=" + build + "-" + i + "/", inputDirectory.toString()));
+            args.addAll(server.cliArgs());
+            int filesBefore = server.getFileCount();
+            long[] result = run(command, server.childProcessProperties(), args);
+            assertEquals(filesBefore + UPLOAD_FILES, server.getFileCount());
+            uploadNanos[i] = result[0];
+            uploadRss[i] = result[1];
+        }
+
+        LOG.info(loggingPrefix + "{} {}: median {} ms, peak RSS {} MB",
+                build, String.join(" ", STARTUP_COMMAND), median(startupNanos) / 1_000_000.0, median(startupRss) / MB);
+        LOG.info(loggingPrefix + "{} upload of {} files of {} KB: median {} ms, peak RSS {} MB",
+                build, UPLOAD_FILES, UPLOAD_FILE_SIZE / 1024, median(uploadNanos) / 1_000_000.0,
+                median(uploadRss) / MB);
+    }
+
+    /*
+    Runs the command to completion. Returns the elapsed nanos and the peak RSS in bytes, or -1 if it is not available.
+     */
+    private static long[] run(List<String> command, List<String> properties, List<String> args) throws Exception {
+        List<String> commandLine = new ArrayList<>(command.subList(0, 1));
+        commandLine.addAll(properties);
+        commandLine.addAll(command.subList(1, command.size()));
+        commandLine.addAll(args);
+
+        long startNanos = System.nanoTime();
+        Process process = new ProcessBuilder(commandLine)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        Path status = Path.of("/proc", String.valueOf(process.pid()), "status");
+        long peakRss = -1;
+        while (process.isAlive()) {
+            peakRss = Math.max(peakRss, peakRssBytes(status));
+            Thread.sleep(5);
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        assertEquals(0, process.exitValue(), "Exit code of " + args);
+        return new long[] {elapsedNanos, peakRss};
+    }
+
+    private static long peakRssBytes(Path status) {
+        try {
+            for (String line : Files.readAllLines(status)) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024L;
+                }
+            }
+        } catch (Exception e) {
+            // The process has exited, or /proc is not available
+        }
+        return -1;
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
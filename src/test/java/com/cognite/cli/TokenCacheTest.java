@@ -0,0 +1,87 @@
+package com.cognite.cli;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private HttpServer tokenServer;
+    private final AtomicInteger tokenRequests = new AtomicInteger();
+    private URL tokenUrl;
+
+    @BeforeEach
+    void startTokenServer() throws Exception {
+        tokenServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        tokenServer.createContext("/token", exchange -> {
+            int requestNumber = tokenRequests.incrementAndGet();
+            byte[] body = String.format("{\"access_token\":\"token-%d\",\"expires_in\":3600}", requestNumber)
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        tokenServer.start();
+        tokenUrl = new URL("http://localhost:" + tokenServer.getAddress().getPort() + "/token");
+    }
+
+    @AfterEach
+    void stopTokenServer() {
+        tokenServer.stop(0);
+    }
+
+    @Test
+    void reusesCachedTokenAcrossInstances() throws Exception {
+        Path cacheDirectory = tempDir.resolve("token-cache");
+        TokenCache first = new TokenCache(cacheDirectory, tokenUrl, "client", "secret", "https://api.cognitedata.com");
+        assertEquals("Bearer token-1", first.get());
+        assertEquals("Bearer token-1", first.get());
+
+        // A new instance, as in a later invocation of the CLI, reads the token from disk
+        TokenCache second = new TokenCache(cacheDirectory, tokenUrl, "client", "secret", "https://api.cognitedata.com");
+        assertEquals("Bearer token-1", second.get());
+        assertEquals(1, tokenRequests.get());
+
+        // A different client gets its own token
+        TokenCache other = new TokenCache(cacheDirectory, tokenUrl, "other", "secret", "https://api.cognitedata.com");
+        assertEquals("Bearer token-2", other.get());
+
+        try (var files = Files.list(cacheDirectory)) {
+            files.forEach(file -> {
+                try {
+                    assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(file)));
+                } catch (Exception e) {
+                    fail(e);
+                }
+            });
+        }
+    }
+
+    @Test
+    void fetchesNewTokenWhenCachedTokenExpires() throws Exception {
+        Path cacheDirectory = tempDir.resolve("token-cache");
+        new TokenCache(cacheDirectory, tokenUrl, "client", "secret", "https://api.cognitedata.com").get();
+        try (var files = Files.list(cacheDirectory)) {
+            Path cacheFile = files.findFirst().orElseThrow();
+            Files.writeString(cacheFile, "{\"accessToken\":\"old\",\"expiresAt\":1}");
+        }
+
+        TokenCache tokenCache = new TokenCache(cacheDirectory, tokenUrl, "client", "secret", "https://api.cognitedata.com");
+        assertEquals("Bearer token-2", tokenCache.get());
+    }
+}
@@ -0,0 +1,64 @@
+package com.cognite.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UploadJournalTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void reloadsConfirmedUploads() throws Exception {
+        Path journalFile = tempDir.resolve("upload.journal");
+        try (UploadJournal journal = UploadJournal.open(journalFile)) {
+            for (int i = 0; i < 10_000; i++) {
+                journal.append(new UploadJournal.Record("ext-" + i, "/data/file-" + i, i, 1000L + i, new byte[32]));
+            }
+            journal.flush();
+        }
+
+        try (UploadJournal journal = UploadJournal.open(journalFile)) {
+            assertEquals(10_000, journal.size());
+            assertTrue(journal.isUnchanged("ext-42", 42, 1042L));
+            assertFalse(journal.isUnchanged("ext-42", 42, 2042L));
+            assertFalse(journal.isUnchanged("ext-42", 43, 1042L));
+            assertFalse(journal.isUnchanged("ext-10000", 10_000, 11_000L));
+        }
+    }
+
+    @Test
+    void truncatesIncompleteRecord() throws Exception {
+        Path journalFile = tempDir.resolve("upload.journal");
+        try (UploadJournal journal = UploadJournal.open(journalFile)) {
+            journal.append(new UploadJournal.Record("a", "/data/a", 1, 1, null));
+            journal.append(new UploadJournal.Record("b", "/data/b", 2, 2, null));
+        }
+
+        // Simulate a crash in the middle of writing the last record
+        try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+        long truncatedSize = Files.size(journalFile);
+
+        try (UploadJournal journal = UploadJournal.open(journalFile)) {
+            assertEquals(1, journal.size());
+            assertTrue(journal.isUnchanged("a", 1, 1));
+            assertFalse(journal.isUnchanged("b", 2, 2));
+            journal.append(new UploadJournal.Record("c", "/data/c", 3, 3, null));
+        }
+        assertTrue(Files.size(journalFile) < truncatedSize + 30);
+
+        try (UploadJournal journal = UploadJournal.open(journalFile)) {
+            assertEquals(2, journal.size());
+            assertTrue(journal.isUnchanged("c", 3, 3));
+        }
+    }
+}